@@ -0,0 +1,140 @@
+package fr.techgp.nimbus.server;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.JsonObject;
+
+/**
+ * This class is a simple registry of named {@link Counter} and {@link Histogram}, updated by the server and exposed
+ * to the application, for instance as JSON :
+ * <pre>
+ * router.get("/metrics", (req, res) -> Render.json(server.metrics().toJSON()));
+ * </pre>
+ * Metrics are lock-free ({@link LongAdder}) so that they can be updated on every request or message.
+ */
+public class Metrics {
+
+	/** This class is a counter that can also be decremented to be used as a gauge (opened sessions for instance) */
+	public static final class Counter {
+
+		private final LongAdder value = new LongAdder();
+
+		public void increment() {
+			this.value.increment();
+		}
+
+		public void decrement() {
+			this.value.decrement();
+		}
+
+		public void add(long delta) {
+			this.value.add(delta);
+		}
+
+		public long value() {
+			return this.value.sum();
+		}
+
+	}
+
+	/** This class is a histogram of positive values (durations in nanoseconds for instance) using power-of-2 buckets */
+	public static final class Histogram {
+
+		private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		public Histogram() {
+			for (int i = 0; i < this.buckets.length; i++) {
+				this.buckets[i] = new LongAdder();
+			}
+		}
+
+		/** records a new value, where bucket i contains values in [2^(i-1), 2^i[ and bucket 0 contains 0 */
+		public void record(long value) {
+			long v = Math.max(0, value);
+			this.buckets[Long.SIZE - Long.numberOfLeadingZeros(v)].increment();
+			this.count.increment();
+			this.sum.add(v);
+			long m;
+			while (v > (m = this.max.get()) && !this.max.compareAndSet(m, v)) {
+				// retry
+			}
+		}
+
+		public long count() {
+			return this.count.sum();
+		}
+
+		public long sum() {
+			return this.sum.sum();
+		}
+
+		public long max() {
+			return this.max.get();
+		}
+
+		public long mean() {
+			long count = this.count();
+			return count == 0 ? 0 : this.sum() / count;
+		}
+
+		/** returns an upper bound of the "percentile" (between 0 and 1), limited to the bucket resolution */
+		public long percentile(double percentile) {
+			long total = this.count();
+			if (total == 0)
+				return 0;
+			long threshold = (long) Math.ceil(total * percentile);
+			long cumulated = 0;
+			for (int i = 0; i < this.buckets.length; i++) {
+				cumulated += this.buckets[i].sum();
+				if (cumulated >= threshold)
+					return Math.min(i == 0 ? 0 : (1L << i) - 1, this.max());
+			}
+			return this.max();
+		}
+
+	}
+
+	private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+	private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+	public Metrics() {
+		super();
+	}
+
+	/** returns the {@link Counter} with the specified name, creating it if needed */
+	public Counter counter(String name) {
+		return this.counters.computeIfAbsent(name, (n) -> new Counter());
+	}
+
+	/** returns the {@link Histogram} with the specified name, creating it if needed */
+	public Histogram histogram(String name) {
+		return this.histograms.computeIfAbsent(name, (n) -> new Histogram());
+	}
+
+	/** returns a snapshot of the counters and histograms (count, mean, p50, p99, max), sorted by name */
+	public JsonObject toJSON() {
+		JsonObject result = new JsonObject();
+		for (Map.Entry<String, Counter> entry : new TreeMap<>(this.counters).entrySet()) {
+			result.addProperty(entry.getKey(), entry.getValue().value());
+		}
+		for (Map.Entry<String, Histogram> entry : new TreeMap<>(this.histograms).entrySet()) {
+			Histogram h = entry.getValue();
+			JsonObject o = new JsonObject();
+			o.addProperty("count", h.count());
+			o.addProperty("mean", h.mean());
+			o.addProperty("p50", h.percentile(0.5));
+			o.addProperty("p99", h.percentile(0.99));
+			o.addProperty("max", h.max());
+			result.add(entry.getKey(), o);
+		}
+		return result;
+	}
+
+}
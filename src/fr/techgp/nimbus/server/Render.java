@@ -16,12 +16,17 @@ import com.google.gson.JsonElement;
 import fr.techgp.nimbus.server.render.RenderBytes;
 import fr.techgp.nimbus.server.render.RenderFile;
 import fr.techgp.nimbus.server.render.RenderJSON;
+import fr.techgp.nimbus.server.render.RenderJSONElement;
 import fr.techgp.nimbus.server.render.RenderRedirect;
 import fr.techgp.nimbus.server.render.RenderSamePage;
 import fr.techgp.nimbus.server.render.RenderStatic;
 import fr.techgp.nimbus.server.render.RenderStatus;
 import fr.techgp.nimbus.server.render.RenderString;
 import fr.techgp.nimbus.server.render.RenderThrowable;
+import fr.techgp.nimbus.server.render.RenderThumbnail;
+import fr.techgp.nimbus.utils.ThumbnailCache;
+import fr.techgp.nimbus.utils.ThumbnailService;
+import fr.techgp.nimbus.utils.json.JSONElement;
 
 /**
  * A {@link Render} is used to write the response when routing is over, including all "before" and "after" filters.
@@ -111,6 +116,16 @@ public interface Render {
 		return new RenderFile(file, mimeType, fileName, download, deleteAfter);
 	}
 
+	/** returns a new {@link Render} that will write a thumbnail of this image file, created on the "service" pool if not null, or a 503 status if the pool is busy */
+	public static Render thumbnail(File file, Integer targetWidth, Integer targetHeight, ThumbnailService service) {
+		return new RenderThumbnail(file, targetWidth, targetHeight, service);
+	}
+
+	/** returns a new {@link Render} that will write a thumbnail of this image file from the "cache", with proper caching using the "Etag" header */
+	public static Render thumbnail(File file, Integer targetWidth, Integer targetHeight, boolean autoOrient, ThumbnailCache cache) {
+		return new RenderThumbnail(file, targetWidth, targetHeight, autoOrient, cache);
+	}
+
 	/** returns a new {@link Render} that will send an "Internal Server Error" status code and the "throwable" stacktrace as response body */
 	public static Render throwable(java.lang.Throwable throwable) {
 		return new RenderThrowable(throwable);
@@ -176,6 +191,11 @@ public interface Render {
 		return new RenderJSON(object);
 	}
 
+	/** returns a new {@link Render} that will stream the specified {@link JSONElement} as the JSON response body */
+	public static Render json(JSONElement element) {
+		return new RenderJSONElement(element);
+	}
+
 	/** returns a new {@link Render} that will transform the specified "objects" to a {@link JsonArray} as the JSON response body */
 	public static <T> Render json(List<T> objects, Function<T, JsonElement> transformer) {
 		return new RenderJSON(objects, transformer);
@@ -109,9 +109,9 @@ public interface Request {
 	/** returns the list of {@link Upload} parts extracted from the request body */
 	public List<? extends Upload> uploads();
 
-	/** returns the current {@link Session} associated with this request, or if the request does not have a session, creates one */
+	/** returns the current {@link Session} associated with this request, or if the request does not have a session, creates one (throws {@link IllegalStateException} if server sessions are disabled) */
 	public ServerSession session();
-	/** returns the current {@link Session} associated with this request, or if there is no current session and create is true, returns a new session */
+	/** returns the current {@link Session} associated with this request, or if there is no current session and create is true, returns a new session (returns null if server sessions are disabled, or throws {@link IllegalStateException} if create is true) */
 	public ServerSession session(boolean create);
 
 	/** returns the current client {@link Session} associated with this request, or if the request does not have a session, creates one */
@@ -142,6 +142,30 @@ public class WebSocket {
 		return ws;
 	}
 
+	/**
+	 * This method creates a WebSocket whose main purpose is to exchange JSON message as UTF-8 binary frames.
+	 * <br />Compared to {@link WebSocket#json(BiFunction)}, messages are decoded straight from the frame payload and
+	 * answers are encoded into a buffer reused by the current thread, using either {@link WebSocketJSON#GSON} or
+	 * {@link WebSocketJSON#NIMBUS} as "codec".
+	 */
+	public static <T> WebSocket json(WebSocketJSON.Codec<T> codec, BiFunction<Session, T, T> handler) {
+		WebSocket ws = new WebSocket();
+		ws.onBinary((session, message) -> {
+			T input;
+			if (message.hasArray()) {
+				input = codec.decode(message.array(), message.arrayOffset() + message.position(), message.remaining());
+			} else {
+				byte[] bytes = new byte[message.remaining()];
+				message.get(bytes);
+				input = codec.decode(bytes, 0, bytes.length);
+			}
+			T output = handler.apply(session, input);
+			if (output != null)
+				session.sendBinary(WebSocketJSON.encode(codec, output));
+		});
+		return ws;
+	}
+
 	/** This method creates a WebSocket whose main purpose is to exchange binary message */
 	public static WebSocket binary(BiFunction<Session, ByteBuffer, ByteBuffer> handler) {
 		WebSocket ws = new WebSocket();
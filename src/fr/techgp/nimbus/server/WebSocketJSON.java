@@ -0,0 +1,288 @@
+package fr.techgp.nimbus.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Arrays;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import fr.techgp.nimbus.utils.json.JSONDecoder;
+import fr.techgp.nimbus.utils.json.JSONElement;
+import fr.techgp.nimbus.utils.json.JSONEncoder;
+
+/**
+ * This class contains the JSON codecs used by {@link WebSocket#json(Codec, java.util.function.BiFunction)}.
+ * <br />Messages are exchanged as UTF-8 binary frames so that :
+ * <ul>
+ * <li>incoming messages are decoded straight from the frame payload without intermediate {@link String}</li>
+ * <li>outgoing messages are encoded into a {@link ByteBuffer} reused by the current thread (no intermediate {@link String} either)</li>
+ * </ul>
+ * Two codecs are available, {@link WebSocketJSON#GSON} for Gson's model and {@link WebSocketJSON#NIMBUS} for the
+ * {@link fr.techgp.nimbus.utils.json} model.
+ */
+public final class WebSocketJSON {
+
+	private WebSocketJSON() {
+		//
+	}
+
+	/** The Gson instance used to write {@link JsonElement} to a {@link JsonWriter} */
+	private static final Gson GSON_INSTANCE = new Gson();
+
+	/** This interface converts JSON messages of type T from and to UTF-8 bytes */
+	public static interface Codec<T> {
+		/** decodes a message from the UTF-8 bytes available in "payload", returning null for empty payloads */
+		public T decode(byte[] payload, int offset, int length) throws IOException;
+		/** encodes the "message" as UTF-8 bytes into "output" */
+		public void encode(T message, OutputStream output) throws IOException;
+	}
+
+	/** A {@link Codec} using Gson's {@link JsonReader} and {@link JsonWriter} */
+	public static final Codec<JsonElement> GSON = new Codec<>() {
+
+		@Override
+		public JsonElement decode(byte[] payload, int offset, int length) throws IOException {
+			if (length == 0)
+				return null;
+			// parseReader(Reader), unlike parseReader(JsonReader), rejects content after the value
+			try (Reader reader = new UTF8Reader(payload, offset, length)) {
+				return JsonParser.parseReader(reader);
+			}
+		}
+
+		@Override
+		public void encode(JsonElement message, OutputStream output) throws IOException {
+			try (JsonWriter writer = writer(output)) {
+				GSON_INSTANCE.toJson(message, writer);
+			}
+		}
+	};
+
+	/** A {@link Codec} using the {@link JSONElement} model, decoded by {@link JSONDecoder} and encoded by {@link JSONEncoder} */
+	public static final Codec<JSONElement> NIMBUS = new Codec<>() {
+
+		@Override
+		public JSONElement decode(byte[] payload, int offset, int length) throws IOException {
+			if (length == 0)
+				return null;
+			try {
+				return new JSONDecoder().decode(payload, offset, length);
+			} catch (ParseException ex) {
+				throw new IOException(ex.getMessage(), ex);
+			}
+		}
+
+		@Override
+		public void encode(JSONElement message, OutputStream output) throws IOException {
+			new JSONEncoder().encode(message, output);
+		}
+	};
+
+	/** returns the {@link ByteBuffer} containing "message" encoded by "codec", backed by a byte array reused by the current thread (up to 64 KB) */
+	public static <T> ByteBuffer encode(Codec<T> codec, T message) throws IOException {
+		PooledOutputStream os = BUFFERS.get();
+		os.reset();
+		codec.encode(message, os);
+		ByteBuffer result = os.toByteBuffer();
+		// A large array is handed over to the result only, so that one large message does not stay pinned to the thread
+		if (os.buffer.length > BUFFER_LIMIT)
+			os.buffer = new byte[BUFFER_SIZE];
+		return result;
+	}
+
+	private static final JsonWriter writer(OutputStream output) {
+		Writer writer = (output instanceof PooledOutputStream) ? ((PooledOutputStream) output).writer : new OutputStreamWriter(output, StandardCharsets.UTF_8);
+		JsonWriter jsonWriter = new JsonWriter(writer);
+		jsonWriter.setSerializeNulls(true);
+		return jsonWriter;
+	}
+
+	/**
+	 * This {@link Reader} decodes UTF-8 characters straight from a byte array, without intermediate buffer. Like
+	 * {@link JSONDecoder}, it rejects overlong encodings, encoded surrogates and code points above U+10FFFF.
+	 */
+	private static final class UTF8Reader extends Reader {
+
+		private final byte[] bytes;
+		private int position;
+		private final int limit;
+		private char pendingLowSurrogate = 0;
+
+		public UTF8Reader(byte[] bytes, int offset, int length) {
+			this.bytes = bytes;
+			this.position = offset;
+			this.limit = offset + length;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			int n = 0;
+			if (this.pendingLowSurrogate != 0) {
+				cbuf[off + n++] = this.pendingLowSurrogate;
+				this.pendingLowSurrogate = 0;
+			}
+			while (n < len && this.position < this.limit) {
+				int b = this.bytes[this.position];
+				if (b >= 0) {
+					// ASCII fast path
+					cbuf[off + n++] = (char) b;
+					this.position++;
+					continue;
+				}
+				int codePoint;
+				int size;
+				if ((b & 0xE0) == 0xC0) {
+					codePoint = b & 0x1F;
+					size = 2;
+				} else if ((b & 0xF0) == 0xE0) {
+					codePoint = b & 0x0F;
+					size = 3;
+				} else if ((b & 0xF8) == 0xF0 && (b & 0xFF) < 0xF5) {
+					codePoint = b & 0x07;
+					size = 4;
+				} else {
+					throw new IOException("Invalid UTF-8 byte at " + this.position);
+				}
+				if (this.position + size > this.limit)
+					throw new IOException("Truncated UTF-8 sequence at " + this.position);
+				for (int i = 1; i < size; i++) {
+					int c = this.bytes[this.position + i];
+					if ((c & 0xC0) != 0x80)
+						throw new IOException("Invalid UTF-8 sequence at " + this.position);
+					codePoint = (codePoint << 6) | (c & 0x3F);
+				}
+				if (codePoint < (size == 2 ? 0x80 : size == 3 ? 0x800 : 0x10000) || (codePoint >= 0xD800 && codePoint <= 0xDFFF) || codePoint > 0x10FFFF)
+					throw new IOException("Invalid UTF-8 sequence at " + this.position);
+				this.position += size;
+				if (Character.isBmpCodePoint(codePoint)) {
+					cbuf[off + n++] = (char) codePoint;
+				} else {
+					cbuf[off + n++] = Character.highSurrogate(codePoint);
+					if (n < len)
+						cbuf[off + n++] = Character.lowSurrogate(codePoint);
+					else
+						this.pendingLowSurrogate = Character.lowSurrogate(codePoint);
+				}
+			}
+			return n == 0 ? -1 : n;
+		}
+
+		@Override
+		public void close() {
+			//
+		}
+
+	}
+
+	/** The initial size of the buffer of each thread */
+	private static final int BUFFER_SIZE = 4096;
+	/** The maximal size of the buffer kept by each thread, larger buffers being used for one message only */
+	private static final int BUFFER_LIMIT = 64 * 1024;
+	/** One growable buffer per thread, reused for each encoded message as long as it is sent synchronously */
+	private static final ThreadLocal<PooledOutputStream> BUFFERS = ThreadLocal.withInitial(PooledOutputStream::new);
+
+	/** A simple {@link OutputStream} writing into a growable byte array, exposed as a {@link ByteBuffer} without copy */
+	private static final class PooledOutputStream extends OutputStream {
+
+		private byte[] buffer = new byte[BUFFER_SIZE];
+		private int count = 0;
+		/** A {@link Writer} view of this stream, encoding characters as UTF-8 directly into the buffer */
+		private final Writer writer = new Writer() {
+
+			@Override
+			public void write(int c) {
+				this.write(String.valueOf((char) c), 0, 1);
+			}
+
+			@Override
+			public void write(char[] cbuf, int off, int len) {
+				this.write(java.nio.CharBuffer.wrap(cbuf), off, len);
+			}
+
+			@Override
+			public void write(String str, int off, int len) {
+				this.write((CharSequence) str, off, len);
+			}
+
+			private void write(CharSequence chars, int off, int len) {
+				// Reserve the worst case (3 bytes per char) once, to keep the loop simple
+				PooledOutputStream.this.ensureCapacity(PooledOutputStream.this.count + len * 3);
+				byte[] b = PooledOutputStream.this.buffer;
+				int j = PooledOutputStream.this.count;
+				int end = off + len;
+				for (int i = off; i < end; i++) {
+					char c = chars.charAt(i);
+					if (c < 0x80) {
+						b[j++] = (byte) c;
+					} else if (c < 0x800) {
+						b[j++] = (byte) (0xC0 | (c >> 6));
+						b[j++] = (byte) (0x80 | (c & 0x3F));
+					} else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(chars.charAt(i + 1))) {
+						int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+						b[j++] = (byte) (0xF0 | (codePoint >> 18));
+						b[j++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+						b[j++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+						b[j++] = (byte) (0x80 | (codePoint & 0x3F));
+					} else if (Character.isSurrogate(c)) {
+						b[j++] = '?';
+					} else {
+						b[j++] = (byte) (0xE0 | (c >> 12));
+						b[j++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+						b[j++] = (byte) (0x80 | (c & 0x3F));
+					}
+				}
+				PooledOutputStream.this.count = j;
+			}
+
+			@Override
+			public void flush() {
+				//
+			}
+
+			@Override
+			public void close() {
+				//
+			}
+		};
+
+		public void reset() {
+			this.count = 0;
+		}
+
+		public ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap(this.buffer, 0, this.count);
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > this.buffer.length)
+				this.buffer = Arrays.copyOf(this.buffer, Math.max(capacity, this.buffer.length << 1));
+		}
+
+		@Override
+		public void write(int b) {
+			this.ensureCapacity(this.count + 1);
+			this.buffer[this.count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			this.ensureCapacity(this.count + len);
+			System.arraycopy(b, off, this.buffer, this.count, len);
+			this.count += len;
+		}
+
+	}
+
+}
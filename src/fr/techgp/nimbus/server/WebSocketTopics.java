@@ -0,0 +1,252 @@
+package fr.techgp.nimbus.server;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+import fr.techgp.nimbus.server.WebSocket.Session;
+
+/**
+ * This class implements a topic-based publish/subscribe hub for {@link WebSocket} sessions.
+ * <br />The expected usage is :
+ * <pre>
+ * WebSocketTopics topics = new WebSocketTopics();
+ * router.websocket("/ws/news", topics.attach(new WebSocket()
+ * 	.onConnect((session) -> topics.subscribe(session, "news"))
+ * 	.onText((session, message) -> topics.publish("news", message))));
+ * </pre>
+ * Topics and sessions are distributed over lock stripes so that there is no global lock :
+ * <ul>
+ * <li>a topic stripe holds the subscribers of the topics whose hash falls into this stripe</li>
+ * <li>a session stripe holds the subscriptions of the sessions whose hash falls into this stripe, for fast cleanup</li>
+ * </ul>
+ * Subscriptions update both stripes at once, locked in a fixed order, so that {@link #unsubscribeAll(Session)} on close
+ * always sees them entirely or not at all.
+ * <br />Publication takes a snapshot of the subscribers under the read lock, then sends messages asynchronously outside of
+ * any lock, so publishing costs one pass over the subscribers of the topic.
+ */
+public class WebSocketTopics {
+
+	/** This class is a lock stripe, holding part of the topics and part of the sessions */
+	private static final class Stripe {
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		private final Map<String, Set<Session>> subscribers = new HashMap<>();
+		private final Map<Session, Set<String>> subscriptions = new HashMap<>();
+	}
+
+	private static final Session[] NO_SESSIONS = new Session[0];
+
+	private final Stripe[] stripes;
+	private final int mask;
+	private BiConsumer<Session, Throwable> error = (session, throwable) -> { /* ignored, the session will be closed */ };
+
+	/** creates a hub with 64 lock stripes */
+	public WebSocketTopics() {
+		this(64);
+	}
+
+	/** creates a hub with "stripeCount" lock stripes, rounded up to the next power of 2 */
+	public WebSocketTopics(int stripeCount) {
+		int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+		this.stripes = new Stripe[count];
+		for (int i = 0; i < count; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		this.mask = count - 1;
+	}
+
+	/** sets the handler called when an asynchronous send fails during publication */
+	public WebSocketTopics onError(BiConsumer<Session, Throwable> error) {
+		this.error = error;
+		return this;
+	}
+
+	/** wraps the {@link WebSocket.OnClose} of "ws" to unsubscribe sessions automatically when they are closed */
+	public WebSocket attach(WebSocket ws) {
+		WebSocket.OnClose close = ws.onClose();
+		return ws.onClose((session, statusCode, reason) -> {
+			this.unsubscribeAll(session);
+			if (close != null)
+				close.close(session, statusCode, reason);
+		});
+	}
+
+	/** subscribes the "session" to the "topic", returning false if it was already subscribed or if it is closed */
+	public boolean subscribe(Session session, String topic) {
+		int t = this.index(topic);
+		int s = this.index(session);
+		this.lock(t, s);
+		try {
+			// A closed session has already been (or is being) cleaned by unsubscribeAll and must not come back
+			if (!session.opened())
+				return false;
+			if (!this.stripes[t].subscribers.computeIfAbsent(topic, (k) -> new HashSet<>()).add(session))
+				return false;
+			this.stripes[s].subscriptions.computeIfAbsent(session, (k) -> new HashSet<>()).add(topic);
+			return true;
+		} finally {
+			this.unlock(t, s);
+		}
+	}
+
+	/** unsubscribes the "session" from the "topic", returning false if it was not subscribed */
+	public boolean unsubscribe(Session session, String topic) {
+		int t = this.index(topic);
+		int s = this.index(session);
+		this.lock(t, s);
+		try {
+			Set<String> topics = this.stripes[s].subscriptions.get(session);
+			if (topics != null && topics.remove(topic) && topics.isEmpty())
+				this.stripes[s].subscriptions.remove(session);
+			Set<Session> sessions = this.stripes[t].subscribers.get(topic);
+			if (sessions == null || !sessions.remove(session))
+				return false;
+			if (sessions.isEmpty())
+				this.stripes[t].subscribers.remove(topic);
+			return true;
+		} finally {
+			this.unlock(t, s);
+		}
+	}
+
+	/** unsubscribes the "session" from all its topics, returning the number of removed subscriptions */
+	public int unsubscribeAll(Session session) {
+		Set<String> topics;
+		Stripe stripe = this.stripe(session);
+		stripe.lock.writeLock().lock();
+		try {
+			topics = stripe.subscriptions.remove(session);
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+		if (topics == null)
+			return 0;
+		int count = 0;
+		for (String topic : topics) {
+			if (this.removeSubscriber(session, topic))
+				count++;
+		}
+		return count;
+	}
+
+	/** returns the topics the "session" is subscribed to */
+	public Set<String> topics(Session session) {
+		Stripe stripe = this.stripe(session);
+		stripe.lock.readLock().lock();
+		try {
+			Set<String> topics = stripe.subscriptions.get(session);
+			return topics == null ? Collections.emptySet() : new HashSet<>(topics);
+		} finally {
+			stripe.lock.readLock().unlock();
+		}
+	}
+
+	/** returns the number of sessions subscribed to the "topic" */
+	public int count(String topic) {
+		Stripe stripe = this.stripe(topic);
+		stripe.lock.readLock().lock();
+		try {
+			Set<Session> sessions = stripe.subscribers.get(topic);
+			return sessions == null ? 0 : sessions.size();
+		} finally {
+			stripe.lock.readLock().unlock();
+		}
+	}
+
+	/** sends the text "message" to the opened sessions subscribed to "topic", returning the number of recipients */
+	public int publish(String topic, String message) {
+		Session[] sessions = this.snapshot(topic);
+		int count = 0;
+		for (Session session : sessions) {
+			if (session.opened()) {
+				session.sendTextAsync(message, () -> { /* */ }, (throwable) -> this.error.accept(session, throwable));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** sends the binary "message" to the opened sessions subscribed to "topic", returning the number of recipients */
+	public int publish(String topic, ByteBuffer message) {
+		Session[] sessions = this.snapshot(topic);
+		int count = 0;
+		for (Session session : sessions) {
+			if (session.opened()) {
+				// Each send consumes its own view of the buffer
+				session.sendBinaryAsync(message.duplicate(), () -> { /* */ }, (throwable) -> this.error.accept(session, throwable));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** sends the text "messages", in order, to the opened sessions subscribed to "topic" using a single snapshot, returning the number of recipients */
+	public int publish(String topic, List<String> messages) {
+		Session[] sessions = this.snapshot(topic);
+		int count = 0;
+		for (Session session : sessions) {
+			if (session.opened()) {
+				for (String message : messages) {
+					session.sendTextAsync(message, () -> { /* */ }, (throwable) -> this.error.accept(session, throwable));
+				}
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private int index(Object key) {
+		int h = key.hashCode();
+		return (h ^ (h >>> 16)) & this.mask;
+	}
+
+	private Stripe stripe(Object key) {
+		return this.stripes[this.index(key)];
+	}
+
+	/** locks the stripes "i" and "j" for writing, always in the same order to avoid deadlocks */
+	private void lock(int i, int j) {
+		this.stripes[Math.min(i, j)].lock.writeLock().lock();
+		if (i != j)
+			this.stripes[Math.max(i, j)].lock.writeLock().lock();
+	}
+
+	private void unlock(int i, int j) {
+		if (i != j)
+			this.stripes[Math.max(i, j)].lock.writeLock().unlock();
+		this.stripes[Math.min(i, j)].lock.writeLock().unlock();
+	}
+
+	private Session[] snapshot(String topic) {
+		Stripe stripe = this.stripe(topic);
+		stripe.lock.readLock().lock();
+		try {
+			Set<Session> sessions = stripe.subscribers.get(topic);
+			return sessions == null ? NO_SESSIONS : sessions.toArray(NO_SESSIONS);
+		} finally {
+			stripe.lock.readLock().unlock();
+		}
+	}
+
+	private boolean removeSubscriber(Session session, String topic) {
+		Stripe stripe = this.stripe(topic);
+		stripe.lock.writeLock().lock();
+		try {
+			Set<Session> sessions = stripe.subscribers.get(topic);
+			if (sessions == null || !sessions.remove(session))
+				return false;
+			if (sessions.isEmpty())
+				stripe.subscribers.remove(topic);
+			return true;
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+package fr.techgp.nimbus.server.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import fr.techgp.nimbus.server.Session.ClientSession;
+import fr.techgp.nimbus.utils.ConversionUtils;
+import fr.techgp.nimbus.utils.RandomUtils;
+import fr.techgp.nimbus.utils.RandomUtils.TokenGenerator;
+
+/**
+ * Base class of the sessions stored in a cookie on the client side, like {@link JWTClientSession} and
+ * {@link BinaryClientSession}, keeping track of changes so that the cookie is issued again only when needed.
+ *
+ * @param <S> the type of the session, returned by methods for chaining
+ */
+public abstract class AbstractClientSession<S extends AbstractClientSession<S>> implements ClientSession {
+
+	/** The name of the cookie storing session on the client-side */
+	protected static final String CLIENT_SESSION_COOKIE_NAME = "nimbus-client-session";
+	/** The generator of random session ids */
+	private static final TokenGenerator IDS = RandomUtils.tokenGenerator(RandomUtils.ALPHANUMERIC, 32);
+
+	protected final ServletRequest request;
+	protected String id;
+	protected long creationTime;
+	protected long lastAccessedTime;
+	protected boolean isNew;
+	protected int maxInactiveInterval;
+	protected HashMap<String, Object> attributes;
+	/** The time when the current cookie was issued, to know when its expiration should be extended */
+	protected long issuedTime;
+	/** The modification flag, telling that the cookie has to be issued again */
+	protected boolean dirty;
+
+	protected AbstractClientSession(ServletRequest request) {
+		this.request = request;
+		this.initDefaults();
+	}
+
+	protected AbstractClientSession(ServletRequest request, String id, long creationTime, long lastAccessedTime, int maxInactiveInterval, Map<String, Object> attributes, long issuedTime) {
+		this.request = request;
+		this.id = id;
+		this.creationTime = creationTime;
+		this.lastAccessedTime = lastAccessedTime;
+		this.isNew = false;
+		this.maxInactiveInterval = maxInactiveInterval;
+		this.attributes = new HashMap<>(attributes);
+		this.issuedTime = issuedTime;
+		this.dirty = false;
+	}
+
+	@Override
+	public String id() {
+		return this.id;
+	}
+
+	@Override
+	public long creationTime() {
+		return this.creationTime;
+	}
+
+	@Override
+	public long lastAccessedTime() {
+		return this.lastAccessedTime;
+	}
+
+	@Override
+	public boolean isNew() {
+		return this.isNew;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T attribute(String name) {
+		return (T) this.attributes.get(name);
+	}
+
+	@Override
+	public S attribute(String name, Object value) {
+		Object previous = value == null ? this.attributes.remove(name) : this.attributes.put(name, value);
+		// Setting an equal value does not need a new cookie, but setting the same instance again may signal a change made in place
+		if (previous == value ? value != null : !Objects.equals(previous, value))
+			this.dirty = true;
+		return this.self();
+	}
+
+	@Override
+	public S removeAttribute(String name) {
+		if (this.attributes.remove(name) != null)
+			this.dirty = true;
+		return this.self();
+	}
+
+	@Override
+	public int maxInactiveInterval() {
+		return this.maxInactiveInterval;
+	}
+
+	@Override
+	public S maxInactiveInterval(int interval) {
+		if (this.maxInactiveInterval != interval)
+			this.dirty = true;
+		this.maxInactiveInterval = interval;
+		return this.self();
+	}
+
+	@Override
+	public void invalidate() {
+		this.initDefaults();
+	}
+
+	protected void initDefaults() {
+		this.id = IDS.next();
+		this.creationTime = System.currentTimeMillis();
+		this.lastAccessedTime = this.creationTime;
+		this.isNew = true;
+		this.maxInactiveInterval = this.request.getSessionConfig().getTimeout();
+		this.attributes = new HashMap<>();
+		this.issuedTime = this.creationTime;
+		this.dirty = true;
+	}
+
+	/** returns true if the session has been modified (new, invalidated, updated) since it was loaded */
+	public boolean isDirty() {
+		return this.dirty;
+	}
+
+	/** returns true if the session should be issued again, either because it changed or because its expiration should be extended */
+	protected boolean needsSave() {
+		if (this.dirty)
+			return true;
+		// Refresh after "refreshInterval", or after half the lifetime for short sessions, to keep a sliding expiration
+		long refresh = Math.min(this.request.getSessionConfig().getRefreshInterval(), this.maxInactiveInterval / 2) * 1000L;
+		return this.lastAccessedTime - this.issuedTime >= refresh;
+	}
+
+	/** adds the client session cookie, containing "value", to the "response" */
+	protected void writeCookie(ServletResponse response, String value) {
+		SessionConfig config = this.request.getSessionConfig();
+		response.cookie(
+				CLIENT_SESSION_COOKIE_NAME,
+				config.getCookiePath(),
+				value,
+				config.getCookieDomain(),
+				this.maxInactiveInterval(),
+				true,
+				true);
+	}
+
+	@SuppressWarnings("unchecked")
+	private S self() {
+		return (S) this;
+	}
+
+	/** returns the secret key of "config", created by "generator" the first time if none has been configured */
+	protected static byte[] secretKey(SessionConfig config, Supplier<byte[]> generator) {
+		byte[] secretKey = config.getSecretKey();
+		if (secretKey == null) {
+			synchronized (config) {
+				if (config.getSecretKey() == null) {
+					secretKey = generator.get();
+					config.setSecretKey(secretKey);
+					System.out.println("Generated new secret key " + ConversionUtils.bytes2hex(secretKey));
+				}
+			}
+			secretKey = config.getSecretKey();
+		}
+		return secretKey;
+	}
+
+}
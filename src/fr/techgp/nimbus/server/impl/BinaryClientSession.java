@@ -0,0 +1,396 @@
+package fr.techgp.nimbus.server.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import fr.techgp.nimbus.utils.RandomUtils;
+
+/**
+ * Implementation of a session stored in a compact binary cookie on the client side.
+ *
+ * The cookie value is the base64url encoding (without padding) of :
+ * <ul>
+ * <li>a 15 bytes header : version (1 byte), key id (1 byte), flags (1 byte), GCM nonce (12 bytes)</li>
+ * <li>the body, encrypted and authenticated with AES-GCM, using the header as additional authenticated data</li>
+ * </ul>
+ * The body contains creationTime, lastAccessedTime, maxInactiveInterval, id and attributes, using varints and a tag
+ * per attribute type. If {@link SessionConfig#isClientSessionCompression()} is enabled, it is deflated when it gets
+ * large enough for compression to pay off (flag 1). This is disabled by default because the length of a compressed
+ * cookie leaks information about its content.
+ *
+ * The key id is derived from the secret key, so that sessions encrypted with one of the previous keys of
+ * {@link SessionConfig#getPreviousSecretKeys()} are still accepted, then encrypted again with the current key.
+ */
+public class BinaryClientSession extends AbstractClientSession<BinaryClientSession> {
+
+	/** The version of the binary format, stored as first byte */
+	private static final byte VERSION = 1;
+	/** The flag telling that the body is deflated */
+	private static final byte FLAG_DEFLATE = 1;
+	/** The size of the GCM nonce, in bytes */
+	private static final int NONCE_LENGTH = 12;
+	/** The size of the GCM authentication tag, in bits */
+	private static final int TAG_LENGTH = 128;
+	/** The size of the header (version, key id, flags and nonce), in bytes */
+	private static final int HEADER_LENGTH = 3 + NONCE_LENGTH;
+	/** The minimal body size, in bytes, before trying compression */
+	private static final int DEFLATE_THRESHOLD = 64;
+	/** The maximal body size, in bytes, accepted when inflating a cookie */
+	private static final int INFLATE_LIMIT = 64 * 1024;
+	/** The source of randomness for nonces and keys */
+	private static final SecureRandom RANDOM = new SecureRandom();
+	/** The AES-GCM cipher, reused by each thread */
+	private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+		try {
+			return Cipher.getInstance("AES/GCM/NoPadding");
+		} catch (GeneralSecurityException ex) {
+			throw new RuntimeException("Expected algorithm is not supported", ex);
+		}
+	});
+
+	/** The attribute type tags */
+	private static final byte TAG_STRING = 0;
+	private static final byte TAG_TRUE = 1;
+	private static final byte TAG_FALSE = 2;
+	private static final byte TAG_INTEGER = 3;
+	private static final byte TAG_LONG = 4;
+	private static final byte TAG_DOUBLE = 5;
+	private static final byte TAG_FLOAT = 6;
+	private static final byte TAG_SHORT = 7;
+	private static final byte TAG_BYTE = 8;
+	private static final byte TAG_BYTES = 9;
+
+	public BinaryClientSession(ServletRequest request) {
+		super(request);
+	}
+
+	public BinaryClientSession(ServletRequest request, String id, long creationTime, long lastAccessedTime, int maxInactiveInterval, Map<String, Object> attributes, long issuedTime) {
+		super(request, id, creationTime, lastAccessedTime, maxInactiveInterval, attributes, issuedTime);
+	}
+
+	@Override
+	public BinaryClientSession attribute(String name, Object value) {
+		if (value != null && !(value instanceof String || value instanceof Boolean || value instanceof Integer || value instanceof Long
+				|| value instanceof Double || value instanceof Float || value instanceof Short || value instanceof Byte
+				|| value instanceof byte[]))
+			throw new IllegalArgumentException("Unsupported attribute type " + value.getClass().getName() + " (only String, Boolean, Number primitives and byte[] are supported)");
+		return super.attribute(name, value);
+	}
+
+	/** returns the cookie value for this session, encrypted with the specified secret key */
+	public String encode(byte[] secretKey) {
+		// Write body
+		ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+		writeVarLong(body, this.creationTime);
+		writeVarLong(body, this.lastAccessedTime);
+		writeVarLong(body, zigzag(this.maxInactiveInterval));
+		writeString(body, this.id);
+		writeVarLong(body, this.attributes.size());
+		for (Map.Entry<String, Object> entry : this.attributes.entrySet()) {
+			writeString(body, entry.getKey());
+			writeValue(body, entry.getValue());
+		}
+		byte[] data = body.toByteArray();
+
+		// Deflate if enabled and if it helps
+		byte flags = 0;
+		if (data.length >= DEFLATE_THRESHOLD && this.request.getSessionConfig().isClientSessionCompression()) {
+			byte[] deflated = deflate(data);
+			if (deflated.length < data.length) {
+				data = deflated;
+				flags |= FLAG_DEFLATE;
+			}
+		}
+
+		// Encrypt as AES-GCM(secretKey, random nonce, data) authenticating the header
+		byte[] result = new byte[HEADER_LENGTH + data.length + TAG_LENGTH / 8];
+		result[0] = VERSION;
+		result[1] = keyId(secretKey);
+		result[2] = flags;
+		byte[] nonce = RandomUtils.randomBytes(RANDOM, NONCE_LENGTH);
+		System.arraycopy(nonce, 0, result, 3, NONCE_LENGTH);
+		try {
+			Cipher cipher = CIPHER.get();
+			cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(secretKey, "AES"), new GCMParameterSpec(TAG_LENGTH, nonce));
+			cipher.updateAAD(result, 0, HEADER_LENGTH);
+			cipher.doFinal(data, 0, data.length, result, HEADER_LENGTH);
+		} catch (GeneralSecurityException ex) {
+			throw new RuntimeException("Expected algorithm is not supported", ex);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(result);
+	}
+
+	/** returns the session stored in the cookie "value", or null if it is invalid, expired or encrypted with an unknown key */
+	public static BinaryClientSession decode(ServletRequest request, String value) {
+		SessionConfig config = request.getSessionConfig();
+		byte[] secretKey = config.getSecretKey();
+		if (secretKey == null)
+			return null;
+		try {
+			byte[] bytes = Base64.getUrlDecoder().decode(value);
+			if (bytes.length < HEADER_LENGTH + TAG_LENGTH / 8 || bytes[0] != VERSION)
+				return null;
+
+			// Decrypt with the current key or, during rotation, with a previous one
+			byte[] data = decrypt(secretKey, bytes);
+			boolean rotated = false;
+			if (data == null) {
+				for (byte[] previousKey : config.getPreviousSecretKeys()) {
+					data = decrypt(previousKey, bytes);
+					if (data != null)
+						break;
+				}
+				if (data == null)
+					return null;
+				rotated = true;
+			}
+			if ((bytes[2] & FLAG_DEFLATE) != 0)
+				data = inflate(data);
+			if (data == null)
+				return null;
+
+			// Read body and check if session has expired
+			ByteBuffer body = ByteBuffer.wrap(data);
+			long creationTime = readVarLong(body);
+			long issuedTime = readVarLong(body);
+			int maxInactiveInterval = (int) unzigzag(readVarLong(body));
+			long now = System.currentTimeMillis();
+			if (maxInactiveInterval > 0 && (now - issuedTime) > maxInactiveInterval * 1000L)
+				return null;
+			String id = readString(body);
+			int count = (int) readVarLong(body);
+			HashMap<String, Object> attributes = new HashMap<>();
+			for (int i = 0; i < count; i++) {
+				String name = readString(body);
+				attributes.put(name, readValue(body));
+			}
+
+			// Restore session, update "lastAccessedTime" and keep current "maxInactiveInterval"
+			BinaryClientSession session = new BinaryClientSession(request, id, creationTime, now, maxInactiveInterval, attributes, issuedTime);
+			// Encrypt again with the current key
+			session.dirty = rotated;
+			return session;
+		} catch (IllegalArgumentException | BufferUnderflowException ex) {
+			// Invalid base64 or truncated body
+			return null;
+		}
+	}
+
+	protected static BinaryClientSession load(ServletRequest request, boolean create) {
+		// Get the client-session cookie (no cookie => no session yet)
+		ServletCookie cookie = request.cookie(CLIENT_SESSION_COOKIE_NAME);
+		if (cookie == null)
+			return create ? new BinaryClientSession(request) : null;
+
+		// Decode the cookie value (no secret key, expired or altered => no session)
+		BinaryClientSession session = decode(request, cookie.value());
+		if (session == null)
+			return create ? new BinaryClientSession(request) : null;
+		return session;
+	}
+
+	protected static void save(BinaryClientSession session, ServletResponse response) {
+		// Skip saving if no client-session is used, or if the current cookie is still up-to-date
+		if (session == null || !session.needsSave())
+			return;
+
+		// Get (or create) secret key for client session encryption
+		byte[] secretKey = secretKey(session.request.getSessionConfig(), BinaryClientSession::generateClientSessionSecretKey);
+
+		// Encode cookie
+		String value = session.encode(secretKey);
+
+		// Add cookie to response
+		session.writeCookie(response, value);
+	}
+
+	/** returns a new random AES-256 key, also usable by {@link JWTClientSession} */
+	public static final byte[] generateClientSessionSecretKey() {
+		return RandomUtils.randomBytes(RANDOM, 32);
+	}
+
+	/** returns the key id stored in the header, derived from the secret key */
+	private static final byte keyId(byte[] secretKey) {
+		int h = 1;
+		for (byte b : secretKey) {
+			h = 31 * h + b;
+		}
+		return (byte) (h ^ (h >>> 8) ^ (h >>> 16) ^ (h >>> 24));
+	}
+
+	/** returns the decrypted body, or null if the key id does not match or if authentication fails */
+	private static final byte[] decrypt(byte[] secretKey, byte[] bytes) {
+		if (bytes[1] != keyId(secretKey))
+			return null;
+		try {
+			Cipher cipher = CIPHER.get();
+			cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(secretKey, "AES"), new GCMParameterSpec(TAG_LENGTH, bytes, 3, NONCE_LENGTH));
+			cipher.updateAAD(bytes, 0, HEADER_LENGTH);
+			return cipher.doFinal(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+		} catch (AEADBadTagException ex) {
+			// Altered cookie or key id collision
+			return null;
+		} catch (GeneralSecurityException ex) {
+			throw new RuntimeException("Expected algorithm is not supported", ex);
+		}
+	}
+
+	private static final byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			byte[] buffer = new byte[data.length];
+			int length = 0;
+			while (!deflater.finished() && length < buffer.length) {
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			// Not finished means that compressed data is not smaller
+			return deflater.finished() ? Arrays.copyOf(buffer, length) : data;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static final byte[] inflate(byte[] data) {
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(data);
+			ByteArrayOutputStream result = new ByteArrayOutputStream(data.length * 4);
+			byte[] buffer = new byte[1024];
+			while (!inflater.finished()) {
+				int length = inflater.inflate(buffer);
+				if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					return null;
+				result.write(buffer, 0, length);
+				if (result.size() > INFLATE_LIMIT)
+					return null;
+			}
+			return result.toByteArray();
+		} catch (DataFormatException ex) {
+			return null;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static final long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static final long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static final void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static final long readVarLong(ByteBuffer in) {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			result |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return result;
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	private static final void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+		writeVarLong(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static final byte[] readBytes(ByteBuffer in) {
+		long length = readVarLong(in);
+		if (length < 0 || length > in.remaining())
+			throw new IllegalArgumentException("Malformed length");
+		byte[] bytes = new byte[(int) length];
+		in.get(bytes);
+		return bytes;
+	}
+
+	private static final void writeString(ByteArrayOutputStream out, String value) {
+		writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static final String readString(ByteBuffer in) {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+
+	private static final void writeValue(ByteArrayOutputStream out, Object value) {
+		if (value instanceof String) {
+			out.write(TAG_STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Boolean) {
+			out.write(((Boolean) value).booleanValue() ? TAG_TRUE : TAG_FALSE);
+		} else if (value instanceof Integer) {
+			out.write(TAG_INTEGER);
+			writeVarLong(out, zigzag(((Integer) value).intValue()));
+		} else if (value instanceof Long) {
+			out.write(TAG_LONG);
+			writeVarLong(out, zigzag(((Long) value).longValue()));
+		} else if (value instanceof Double) {
+			out.write(TAG_DOUBLE);
+			writeFixed(out, Double.doubleToLongBits(((Double) value).doubleValue()), 8);
+		} else if (value instanceof Float) {
+			out.write(TAG_FLOAT);
+			writeFixed(out, Float.floatToIntBits(((Float) value).floatValue()), 4);
+		} else if (value instanceof Short) {
+			out.write(TAG_SHORT);
+			writeVarLong(out, zigzag(((Short) value).shortValue()));
+		} else if (value instanceof Byte) {
+			out.write(TAG_BYTE);
+			out.write(((Byte) value).byteValue());
+		} else {
+			out.write(TAG_BYTES);
+			writeBytes(out, (byte[]) value);
+		}
+	}
+
+	private static final Object readValue(ByteBuffer in) {
+		byte tag = in.get();
+		switch (tag) {
+			case TAG_STRING: return readString(in);
+			case TAG_TRUE: return Boolean.TRUE;
+			case TAG_FALSE: return Boolean.FALSE;
+			case TAG_INTEGER: return Integer.valueOf((int) unzigzag(readVarLong(in)));
+			case TAG_LONG: return Long.valueOf(unzigzag(readVarLong(in)));
+			case TAG_DOUBLE: return Double.valueOf(Double.longBitsToDouble(in.getLong()));
+			case TAG_FLOAT: return Float.valueOf(Float.intBitsToFloat(in.getInt()));
+			case TAG_SHORT: return Short.valueOf((short) unzigzag(readVarLong(in)));
+			case TAG_BYTE: return Byte.valueOf(in.get());
+			case TAG_BYTES: return readBytes(in);
+			default: throw new IllegalArgumentException("Unknown attribute tag " + tag);
+		}
+	}
+
+	/** writes "bytes" bytes of "value", big-endian as read by {@link ByteBuffer#getLong()} and {@link ByteBuffer#getInt()} */
+	private static final void writeFixed(ByteArrayOutputStream out, long value, int bytes) {
+		for (int i = bytes - 1; i >= 0; i--) {
+			out.write((int) (value >>> (i * 8)));
+		}
+	}
+
+}
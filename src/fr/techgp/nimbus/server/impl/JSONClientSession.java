@@ -4,9 +4,11 @@ import java.nio.charset.StandardCharsets;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.InvalidParameterException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.Base64;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -26,6 +28,7 @@ import com.google.gson.JsonPrimitive;
 import fr.techgp.nimbus.server.Session.ClientSession;
 import fr.techgp.nimbus.utils.ConversionUtils;
 import fr.techgp.nimbus.utils.RandomUtils;
+import fr.techgp.nimbus.utils.RandomUtils.TokenGenerator;
 
 /**
  * Implementation of a session securely stored in a cookie on the client side.
@@ -45,8 +48,38 @@ public class JSONClientSession implements ClientSession {
 	private static final String CLIENT_SESSION_COOKIE_NAME = "nimbus-client-session";
 	/** The algorithm used to generate the server key for client session signature */
 	private static final String CLIENT_SESSION_KEY_ALGORITHM = "HmacSHA256";
-	/** The source of randomness for session id and encryption */
+	/** The source of randomness for encryption */
 	private static final SecureRandom RANDOM = new SecureRandom();
+	/** The generator of random session ids */
+	private static final TokenGenerator IDS = RandomUtils.tokenGenerator(RandomUtils.ALPHANUMERIC, 32);
+	/** The cipher and MAC, cached by each thread for the last used key */
+	private static final ThreadLocal<Crypto> CRYPTO = new ThreadLocal<>();
+
+	/** This class holds a {@link Cipher} and a {@link Mac} initialized with a secret key, used by a single thread */
+	private static final class Crypto {
+		private final byte[] key;
+		private final SecretKeySpec aesKeySpec;
+		private final Cipher cipher;
+		private final Mac mac;
+
+		public Crypto(byte[] key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+			this.key = key.clone();
+			this.aesKeySpec = new SecretKeySpec(key, "AES");
+			this.cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+			this.mac = Mac.getInstance(CLIENT_SESSION_KEY_ALGORITHM);
+			this.mac.init(new SecretKeySpec(key, CLIENT_SESSION_KEY_ALGORITHM));
+		}
+
+		/** returns the instances of the current thread for "key", creating them if the key has changed */
+		public static Crypto get(byte[] key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+			Crypto crypto = CRYPTO.get();
+			if (crypto == null || !Arrays.equals(crypto.key, key)) {
+				crypto = new Crypto(key);
+				CRYPTO.set(crypto);
+			}
+			return crypto;
+		}
+	}
 
 	private final ServletRequest request;
 	private String id;
@@ -143,7 +176,7 @@ public class JSONClientSession implements ClientSession {
 	}
 
 	protected void initDefaults() {
-		this.id = RandomUtils.randomAscii(RANDOM, 32, true, true, true, null);
+		this.id = IDS.next();
 		this.creationTime = System.currentTimeMillis();
 		this.lastAccessedTime = this.creationTime;
 		this.isNew = true;
@@ -245,26 +278,22 @@ public class JSONClientSession implements ClientSession {
 			byte[] timestampBytes = ConversionUtils.long2bytes(timestamp);
 
 			// Encrypt data as AES/CBC(secretKey, random IV, compress(data))
-			SecretKeySpec aesKeySpec = new SecretKeySpec(key, "AES");
-			IvParameterSpec ivSpec = new IvParameterSpec(iv);
-			Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-			cipher.init(Cipher.ENCRYPT_MODE, aesKeySpec, ivSpec);
-			byte[] encryptedData = cipher.doFinal(data);
+			Crypto crypto = Crypto.get(key);
+			crypto.cipher.init(Cipher.ENCRYPT_MODE, crypto.aesKeySpec, new IvParameterSpec(iv));
+			byte[] encryptedData = crypto.cipher.doFinal(data);
 
 			// Calculate HMAC signature : HMAC(secretKey, iv | timestamp | encryptedData)
-			SecretKeySpec hmacKeySpec = new SecretKeySpec(key, CLIENT_SESSION_KEY_ALGORITHM);
-			Mac mac = Mac.getInstance(CLIENT_SESSION_KEY_ALGORITHM);
-			mac.init(hmacKeySpec);
-			mac.update(iv);
-			mac.update(timestampBytes);
-			mac.update(encryptedData);
-			byte[] signature = mac.doFinal();
-
-			// Renvoyer la valeur du cookie
-			return ConversionUtils.bytes2hex(signature)
-					+ "|" + ConversionUtils.bytes2hex(iv)
-					+ "|" + ConversionUtils.bytes2hex(timestampBytes)
-					+ "|" + ConversionUtils.bytes2hex(encryptedData);
+			crypto.mac.update(iv);
+			crypto.mac.update(timestampBytes);
+			crypto.mac.update(encryptedData);
+			byte[] signature = crypto.mac.doFinal();
+
+			// Renvoyer la valeur du cookie, en base64url (1,5 fois plus court que l'hexadécimal : 4 caractères pour 3 octets au lieu de 6)
+			Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+			return encoder.encodeToString(signature)
+					+ "." + encoder.encodeToString(iv)
+					+ "." + encoder.encodeToString(timestampBytes)
+					+ "." + encoder.encodeToString(encryptedData);
 		} catch (Exception ex) {
 			throw new RuntimeException("Expected algorithm is not supported", ex);
 		}
@@ -272,32 +301,36 @@ public class JSONClientSession implements ClientSession {
 
 	public static final byte[] decrypt(byte[] key, String value) {
 		try {
-			// Split value
-			String[] parts = value.split("\\|");
+			// Split value, either signature.iv.timestamp.data in base64url or, for older cookies, signature|iv|timestamp|data in hexadecimal
+			boolean hex = value.indexOf('|') >= 0;
+			String[] parts = hex ? value.split("\\|") : value.split("\\.");
 			if (parts.length != 4)
-				throw new InvalidParameterException("Value is expected to be signature|iv|timestamp|data");
-			byte[] signature = ConversionUtils.hex2bytes(parts[0]);
-			byte[] iv = ConversionUtils.hex2bytes(parts[1]);
-			byte[] timestampBytes = ConversionUtils.hex2bytes(parts[2]);
-			byte[] encryptedData = ConversionUtils.hex2bytes(parts[3]);
+				throw new InvalidParameterException("Value is expected to be signature.iv.timestamp.data");
+			byte[][] bytes = new byte[4][];
+			try {
+				for (int i = 0; i < 4; i++) {
+					bytes[i] = hex ? ConversionUtils.hex2bytes(parts[i]) : Base64.getUrlDecoder().decode(parts[i]);
+				}
+			} catch (IllegalArgumentException ex) {
+				throw new InvalidParameterException("Value is not correctly encoded");
+			}
+			byte[] signature = bytes[0];
+			byte[] iv = bytes[1];
+			byte[] timestampBytes = bytes[2];
+			byte[] encryptedData = bytes[3];
 
 			// Verify HMAC signature : HMAC(secretKey, iv | timestamp | encryptedData)
-			SecretKeySpec hmacKeySpec = new SecretKeySpec(key, CLIENT_SESSION_KEY_ALGORITHM);
-			Mac mac = Mac.getInstance(CLIENT_SESSION_KEY_ALGORITHM);
-			mac.init(hmacKeySpec);
-			mac.update(iv);
-			mac.update(timestampBytes);
-			mac.update(encryptedData);
-			byte[] messageSignature = mac.doFinal();
-			if (!Arrays.equals(signature, messageSignature))
+			Crypto crypto = Crypto.get(key);
+			crypto.mac.update(iv);
+			crypto.mac.update(timestampBytes);
+			crypto.mac.update(encryptedData);
+			byte[] messageSignature = crypto.mac.doFinal();
+			if (!MessageDigest.isEqual(signature, messageSignature))
 				throw new InvalidParameterException("Signature validation has failed");
 
 			// Decrypt data as AES/CBC(secretKey, random IV, data)
-			SecretKeySpec aesKeySpec = new SecretKeySpec(key, "AES");
-			IvParameterSpec ivSpec = new IvParameterSpec(iv);
-			Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-			cipher.init(Cipher.DECRYPT_MODE, aesKeySpec, ivSpec);
-			return cipher.doFinal(encryptedData);
+			crypto.cipher.init(Cipher.DECRYPT_MODE, crypto.aesKeySpec, new IvParameterSpec(iv));
+			return crypto.cipher.doFinal(encryptedData);
 
 		} catch (NoSuchAlgorithmException | InvalidKeyException
 				| NoSuchPaddingException | InvalidAlgorithmParameterException
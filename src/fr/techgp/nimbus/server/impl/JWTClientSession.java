@@ -1,119 +1,37 @@
 package fr.techgp.nimbus.server.impl;
 
-import java.security.SecureRandom;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
-import fr.techgp.nimbus.server.Session.ClientSession;
+import javax.crypto.SecretKey;
+
 import fr.techgp.nimbus.utils.ConversionUtils;
-import fr.techgp.nimbus.utils.RandomUtils;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.MacAlgorithm;
 
 /**
  * Implementation of a session stored in a JWT on the client side.
  */
-public class JWTClientSession implements ClientSession {
+public class JWTClientSession extends AbstractClientSession<JWTClientSession> {
 
-	/** The name of the cookie storing session on the client-side */
-	private static final String CLIENT_SESSION_COOKIE_NAME = "nimbus-client-session";
 	/** The algorithm used to generate the server key for client session signature */
 	private static final MacAlgorithm CLIENT_SESSION_KEY_ALGORITHM = Jwts.SIG.HS256;
-	/** The source of randomness for session id and encryption */
-	private static final SecureRandom RANDOM = new SecureRandom();
-
-	private final ServletRequest request;
-	private String id;
-	private long creationTime;
-	private long lastAccessedTime;
-	private boolean isNew;
-	private int maxInactiveInterval;
-	private HashMap<String, Object> attributes;
 
 	public JWTClientSession(ServletRequest request) {
-		this.request = request;
-		this.initDefaults();
+		super(request);
 	}
 
 	public JWTClientSession(ServletRequest request, String id, long creationTime, long lastAccessedTime, int maxInactiveInterval, Map<String, Object> attributes) {
-		this.request = request;
-		this.id = id;
-		this.creationTime = creationTime;
-		this.lastAccessedTime = lastAccessedTime;
-		this.isNew = false;
-		this.maxInactiveInterval = maxInactiveInterval;
-		this.attributes = new HashMap<>(attributes);
-	}
-
-	@Override
-	public String id() {
-		return this.id;
-	}
-
-	@Override
-	public long creationTime() {
-		return this.creationTime;
-	}
-
-	@Override
-	public long lastAccessedTime() {
-		return this.lastAccessedTime;
-	}
-
-	@Override
-	public boolean isNew() {
-		return this.isNew;
-	}
-
-	@Override
-	@SuppressWarnings("unchecked")
-	public <T> T attribute(String name) {
-		return (T) this.attributes.get(name);
+		this(request, id, creationTime, lastAccessedTime, maxInactiveInterval, attributes, lastAccessedTime);
 	}
 
-	@Override
-	public JWTClientSession attribute(String name, Object value) {
-		if (value == null)
-			this.attributes.remove(name);
-		else
-			this.attributes.put(name, value);
-		return this;
-	}
-
-	@Override
-	public JWTClientSession removeAttribute(String name) {
-		this.attributes.remove(name);
-		return this;
-	}
-
-	@Override
-	public int maxInactiveInterval() {
-		return this.maxInactiveInterval;
-	}
-
-	@Override
-	public JWTClientSession maxInactiveInterval(int interval) {
-		this.maxInactiveInterval = interval;
-		return this;
-	}
-
-	@Override
-	public void invalidate() {
-		this.initDefaults();
-	}
-
-	protected void initDefaults() {
-		this.id = RandomUtils.randomAscii(RANDOM, 32, true, true, true, null);
-		this.creationTime = System.currentTimeMillis();
-		this.lastAccessedTime = this.creationTime;
-		this.isNew = true;
-		this.maxInactiveInterval = this.request.getSessionConfig().getTimeout();
-		this.attributes = new HashMap<>();
+	public JWTClientSession(ServletRequest request, String id, long creationTime, long lastAccessedTime, int maxInactiveInterval, Map<String, Object> attributes, long issuedTime) {
+		super(request, id, creationTime, lastAccessedTime, maxInactiveInterval, attributes, issuedTime);
 	}
 
 	protected static JWTClientSession load(ServletRequest request, boolean create) {
@@ -122,18 +40,15 @@ public class JWTClientSession implements ClientSession {
 		if (cookie == null)
 			return create ? new JWTClientSession(request) : null;
 
-		// Load secret key (no secret key => invalidates any previous session)
-		byte[] secretKey = request.getSessionConfig().getSecretKey();
-		if (secretKey == null)
+		// Load cached JWT parser (no secret key => invalidates any previous session)
+		JwtParser parser = request.getSessionConfig().getJwtParser();
+		if (parser == null)
 			return create ? new JWTClientSession(request) : null;
 
 		// Decode the JWT
 		Jws<Claims> jwt;
 		try {
-			jwt = Jwts.parser()
-					.verifyWith(Keys.hmacShaKeyFor(secretKey))
-					.build()
-					.parseSignedClaims(cookie.value());
+			jwt = parser.parseSignedClaims(cookie.value());
 		} catch (JwtException ex) {
 			// JWT has expired or has been tempered with
 			return create ? new JWTClientSession(request) : null;
@@ -145,35 +60,27 @@ public class JWTClientSession implements ClientSession {
 		long creationTime = claims.getIssuedAt().getTime();
 		long lastAccessedTime = System.currentTimeMillis();
 		int maxInactiveInterval = Integer.parseInt((String) claims.get("maxInactiveInterval"));
+		long issuedTime = claims.getExpiration().getTime() - maxInactiveInterval * 1000L;
 		HashMap<String, Object> attributes = new HashMap<>(claims); // Claims is now Immutable, copy before removing
 		attributes.remove(Claims.ID);
 		attributes.remove(Claims.EXPIRATION);
 		attributes.remove(Claims.ISSUER);
 		attributes.remove(Claims.ISSUED_AT);
 		attributes.remove("maxInactiveInterval");
-		return new JWTClientSession(request, id, creationTime, lastAccessedTime, maxInactiveInterval, attributes);
+		return new JWTClientSession(request, id, creationTime, lastAccessedTime, maxInactiveInterval, attributes, issuedTime);
 	}
 
 	protected static void save(JWTClientSession session, ServletResponse response) {
-		// Skip saving if no client-session is used
-		if (session == null)
+		// Skip saving if no client-session is used, or if the current cookie is still up-to-date
+		if (session == null || !session.needsSave())
 			return;
 
 		// Get (or create) secret key for client session encryption
 		SessionConfig config = session.request.getSessionConfig();
-		byte[] secretKey = config.getSecretKey();
-		if (secretKey == null) {
-			synchronized (config) {
-				if (config.getSecretKey() == null) {
-					secretKey = generateClientSessionSecretKey();
-					config.setSecretKey(secretKey);
-					System.out.println("Generated new secret key " + ConversionUtils.bytes2hex(secretKey));
-				}
-			}
-		}
+		secretKey(config, JWTClientSession::generateClientSessionSecretKey);
+		SecretKey signingKey = config.getJwtSigningKey();
 
 		// Encode cookie
-
 		String value = Jwts.builder()
 			.claims()
 				.id(session.id)
@@ -183,18 +90,11 @@ public class JWTClientSession implements ClientSession {
 				.add("maxInactiveInterval", Integer.toString(session.maxInactiveInterval))
 				.add(session.attributes)
 				.and()
-			.signWith(Keys.hmacShaKeyFor(secretKey))
+			.signWith(signingKey)
 			.compact();
 
 		// Add cookie to response
-		response.cookie(
-				CLIENT_SESSION_COOKIE_NAME,
-				config.getCookiePath(),
-				value,
-				config.getCookieDomain(),
-				session.maxInactiveInterval(),
-				true,
-				true);
+		session.writeCookie(response, value);
 	}
 
 	public static final byte[] generateClientSessionSecretKey() {
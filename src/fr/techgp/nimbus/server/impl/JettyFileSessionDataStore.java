@@ -0,0 +1,310 @@
+package fr.techgp.nimbus.server.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jetty.server.session.AbstractSessionDataStore;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+
+/**
+ * This class is a Jetty {@link org.eclipse.jetty.server.session.SessionDataStore} keeping one file per session in a
+ * folder, so that sessions survive restarts and, combined with an eviction policy, do not stay on the heap when idle.
+ * <br />The expected usage is :
+ * <pre>
+ * new JettyServer(port).sessionStore(new JettyFileSessionDataStore(new File("sessions")), 30 * 60, true)
+ * </pre>
+ * Each file is named "{expiry}_{id}" so that expired sessions are found from the index, without reading files.
+ * Other files in the folder are left untouched.
+ * Attributes are serialized one by one and deserialized lazily, on first access. Attributes that were never
+ * accessed are written back as they were read, without any serialization.
+ * <br />This store is not passivating, since Jetty would then read every attribute on each load and store to notify
+ * them. As a consequence, {@link jakarta.servlet.http.HttpSessionActivationListener} attributes are not notified.
+ */
+public class JettyFileSessionDataStore extends AbstractSessionDataStore {
+
+	/** The version of the file format, stored as first int */
+	private static final int VERSION = 1;
+	/** The name of session files, "{expiry}_{id}", and of the temporary files used to write them, "{expiry}_{id}.tmp" */
+	private static final Pattern FILE_NAME = Pattern.compile("(\\d{1,18})_(.+?)(\\.tmp)?");
+
+	private final File folder;
+	/** The expiry of each stored session, by id, which is also the file name prefix */
+	private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+
+	public JettyFileSessionDataStore(File folder) {
+		this.folder = folder;
+	}
+
+	public File getFolder() {
+		return this.folder;
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		Files.createDirectories(this.folder.toPath());
+		// Index existing files, keeping only the most recent one of each session
+		File[] files = this.folder.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				Matcher matcher = FILE_NAME.matcher(file.getName());
+				if (!file.isFile() || !matcher.matches())
+					continue;
+				// Temporary files are left over by a crash while writing
+				if (matcher.group(3) != null) {
+					Files.deleteIfExists(file.toPath());
+					continue;
+				}
+				long expiry = Long.parseLong(matcher.group(1));
+				String id = matcher.group(2);
+				Long previous = this.expiries.get(id);
+				if (previous == null || previous.longValue() < expiry) {
+					this.expiries.put(id, expiry);
+					if (previous != null)
+						Files.deleteIfExists(this.file(id, previous.longValue()).toPath());
+				} else {
+					Files.deleteIfExists(file.toPath());
+				}
+			}
+		}
+		super.doStart();
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		this.expiries.clear();
+		super.doStop();
+	}
+
+	/** returns false, so that Jetty does not read each attribute to call activation listeners, which would deserialize all of them */
+	@Override
+	public boolean isPassivating() {
+		return false;
+	}
+
+	@Override
+	public boolean doExists(String id) throws Exception {
+		Long expiry = this.expiries.get(id);
+		return expiry != null && (expiry.longValue() <= 0 || expiry.longValue() > System.currentTimeMillis());
+	}
+
+	@Override
+	public void doStore(String id, SessionData data, long lastSaveTime) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(VERSION);
+			out.writeUTF(data.getId());
+			out.writeUTF(data.getContextPath());
+			out.writeUTF(data.getVhost());
+			out.writeUTF(data.getLastNode() == null ? "" : data.getLastNode());
+			out.writeLong(data.getCreated());
+			out.writeLong(data.getAccessed());
+			out.writeLong(data.getLastAccessed());
+			out.writeLong(data.getCookieSet());
+			out.writeLong(data.getExpiry());
+			out.writeLong(data.getMaxInactiveMs());
+			Map<String, Object> attributes = data instanceof LazySessionData ? ((LazySessionData) data).rawAttributes() : data.getAllAttributes();
+			out.writeInt(attributes.size());
+			for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+				byte[] value = entry.getValue() instanceof Serialized ? ((Serialized) entry.getValue()).bytes : serialize(entry.getValue());
+				out.writeUTF(entry.getKey());
+				out.writeInt(value.length);
+				out.write(value);
+			}
+		}
+
+		// Write a temporary file then rename it, so that a crash never leaves a partial session
+		long expiry = data.getExpiry();
+		Path path = this.file(id, expiry).toPath();
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		Files.write(tmp, bytes.toByteArray());
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Long previous = this.expiries.put(id, expiry);
+		if (previous != null && previous.longValue() != expiry)
+			Files.deleteIfExists(this.file(id, previous.longValue()).toPath());
+	}
+
+	@Override
+	public SessionData doLoad(String id) throws Exception {
+		Long expiry = this.expiries.get(id);
+		byte[] bytes = null;
+		while (bytes == null) {
+			if (expiry == null)
+				return null;
+			try {
+				bytes = Files.readAllBytes(this.file(id, expiry.longValue()).toPath());
+			} catch (NoSuchFileException ex) {
+				// A concurrent store may have replaced the file with a new expiry, so try again with the current one
+				Long current = this.expiries.get(id);
+				if (expiry.equals(current)) {
+					this.expiries.remove(id, expiry);
+					return null;
+				}
+				expiry = current;
+			}
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			if (in.readInt() != VERSION)
+				return null;
+			String sid = in.readUTF();
+			String contextPath = in.readUTF();
+			String vhost = in.readUTF();
+			String lastNode = in.readUTF();
+			long created = in.readLong();
+			long accessed = in.readLong();
+			long lastAccessed = in.readLong();
+			long cookieSet = in.readLong();
+			long exp = in.readLong();
+			long maxInactiveMs = in.readLong();
+			int count = in.readInt();
+			Map<String, Object> attributes = new HashMap<>(count * 2);
+			for (int i = 0; i < count; i++) {
+				String name = in.readUTF();
+				byte[] value = new byte[in.readInt()];
+				in.readFully(value);
+				attributes.put(name, new Serialized(value));
+			}
+			SessionData data = new LazySessionData(sid, contextPath, vhost, created, accessed, lastAccessed, maxInactiveMs, attributes);
+			data.setLastNode(lastNode.isEmpty() ? null : lastNode);
+			data.setCookieSet(cookieSet);
+			data.setExpiry(exp);
+			return data;
+		}
+	}
+
+	@Override
+	public boolean delete(String id) throws Exception {
+		Long expiry = this.expiries.remove(id);
+		if (expiry == null)
+			return false;
+		return Files.deleteIfExists(this.file(id, expiry.longValue()).toPath());
+	}
+
+	@Override
+	public Set<String> doCheckExpired(Set<String> candidates, long time) {
+		Set<String> result = new HashSet<>();
+		for (String id : candidates) {
+			Long expiry = this.expiries.get(id);
+			// Unknown sessions are expired, for instance if the file has been removed
+			if (expiry == null || (expiry.longValue() > 0 && expiry.longValue() <= time))
+				result.add(id);
+		}
+		return result;
+	}
+
+	@Override
+	public Set<String> doGetExpired(long before) {
+		Set<String> result = new HashSet<>();
+		for (Map.Entry<String, Long> entry : this.expiries.entrySet()) {
+			long expiry = entry.getValue().longValue();
+			if (expiry > 0 && expiry <= before)
+				result.add(entry.getKey());
+		}
+		return result;
+	}
+
+	@Override
+	public void doCleanOrphans(long time) {
+		// Sessions expired for a long time, that no node has taken care of
+		for (String id : this.doGetExpired(time)) {
+			try {
+				this.delete(id);
+			} catch (Exception ex) {
+				// ignored, next sweep will try again
+			}
+		}
+	}
+
+	private File file(String id, long expiry) {
+		return new File(this.folder, expiry + "_" + id);
+	}
+
+	private static final byte[] serialize(Object value) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(value);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return bytes.toByteArray();
+	}
+
+	/** This class holds an attribute value as read from the file, until it is accessed */
+	private static final class Serialized {
+		private final byte[] bytes;
+
+		public Serialized(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		public Object deserialize() {
+			try (ClassLoadingObjectInputStream in = new ClassLoadingObjectInputStream(new ByteArrayInputStream(this.bytes))) {
+				return in.readObject();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			} catch (ClassNotFoundException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	}
+
+	/** This class is a {@link SessionData} deserializing each attribute on first access */
+	private static final class LazySessionData extends SessionData {
+
+		private static final long serialVersionUID = 1L;
+
+		public LazySessionData(String id, String cpath, String vhost, long created, long accessed, long lastAccessed, long maxInactiveMs, Map<String, Object> attributes) {
+			super(id, cpath, vhost, created, accessed, lastAccessed, maxInactiveMs, attributes);
+		}
+
+		/** returns attributes as they are, accessed or still {@link Serialized} */
+		public Map<String, Object> rawAttributes() {
+			return this._attributes;
+		}
+
+		@Override
+		public Object getAttribute(String name) {
+			Object value = this._attributes.get(name);
+			if (value instanceof Serialized) {
+				value = ((Serialized) value).deserialize();
+				// Replace without marking the session as dirty, since the value did not change
+				this._attributes.put(name, value);
+			}
+			return value;
+		}
+
+		@Override
+		public Object setAttribute(String name, Object value) {
+			// Deserialize the old value first, for unbinding and attribute listeners
+			this.getAttribute(name);
+			return super.setAttribute(name, value);
+		}
+
+		@Override
+		public Map<String, Object> getAllAttributes() {
+			for (String name : this._attributes.keySet()) {
+				this.getAttribute(name);
+			}
+			return super.getAllAttributes();
+		}
+
+	}
+
+}
@@ -12,6 +12,9 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.websocket.server.JettyWebSocketServerContainer;
 
+import fr.techgp.nimbus.server.Metrics;
+import fr.techgp.nimbus.server.Metrics.Counter;
+import fr.techgp.nimbus.server.Metrics.Histogram;
 import fr.techgp.nimbus.server.MimeTypes;
 import fr.techgp.nimbus.server.Render;
 import fr.techgp.nimbus.server.Router;
@@ -26,12 +29,24 @@ public class JettyRouterServlet extends HttpServlet {
 	private final MultipartConfigElement multipart;
 	private final SessionConfig session;
 	private final boolean showStackTraces;
+	private final Metrics metrics;
+	private final Counter httpRequests;
+	private final Counter httpErrors;
+	private final Histogram httpLatency;
 
 	public JettyRouterServlet(Router router, MultipartConfigElement multipart, SessionConfig session, boolean showStackTraces) throws Exception {
+		this(router, multipart, session, showStackTraces, new Metrics());
+	}
+
+	public JettyRouterServlet(Router router, MultipartConfigElement multipart, SessionConfig session, boolean showStackTraces, Metrics metrics) throws Exception {
 		this.router = router;
 		this.multipart = multipart;
 		this.session = session;
 		this.showStackTraces = showStackTraces;
+		this.metrics = metrics;
+		this.httpRequests = metrics.counter("http.requests");
+		this.httpErrors = metrics.counter("http.errors");
+		this.httpLatency = metrics.histogram("http.latency");
 	}
 
 	@Override
@@ -45,13 +60,16 @@ public class JettyRouterServlet extends HttpServlet {
 
 			// Register WebSocket endpoints.
 			for (WebSocketEntry e : this.router.websockets()) {
-				container.addMapping(e.path, (upgradeRequest, upgradeResponse) -> new JettyWebSocket(e.ws));
+				WebSocketMetrics wsMetrics = new WebSocketMetrics(this.metrics, e.path);
+				container.addMapping(e.path, (upgradeRequest, upgradeResponse) -> new JettyWebSocket(e.ws, wsMetrics));
 			}
 		}
 	}
 
 	@Override
 	protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		long start = System.nanoTime();
+		this.httpRequests.increment();
 		ServletRequest req = new JettyServletRequest(request, this.session, this.multipart);
 		ServletResponse res = new ServletResponse(response);
 		try {
@@ -78,6 +96,7 @@ public class JettyRouterServlet extends HttpServlet {
 
 		} catch (Exception ex) {
 			// Reply 500 for exceptions
+			this.httpErrors.increment();
 			if (this.showStackTraces)
 				res.body(Render.throwable(ex));
 			else
@@ -85,7 +104,7 @@ public class JettyRouterServlet extends HttpServlet {
 		}
 
 		// Save client session, if any
-		JWTClientSession.save(req.clientSession(false), res);
+		req.saveClientSession(res);
 		try {
 			// Write response
 			res.body().render(req, res, StandardCharsets.UTF_8, () -> {
@@ -100,6 +119,7 @@ public class JettyRouterServlet extends HttpServlet {
 			// Shouldn't it be an EofException ?
 			// System.out.println(ex.getClass().getName() + " on " + req.path());
 		}
+		this.httpLatency.record(System.nanoTime() - start);
 	}
 
 }
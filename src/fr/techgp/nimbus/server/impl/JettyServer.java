@@ -1,6 +1,7 @@
 package fr.techgp.nimbus.server.impl;
 
 import java.security.InvalidParameterException;
+import java.util.Arrays;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -16,12 +17,16 @@ import org.eclipse.jetty.server.MultiPartFormDataCompliance;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.session.DefaultSessionCache;
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.server.session.SessionDataStore;
 import org.eclipse.jetty.server.session.SessionHandler;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.websocket.server.config.JettyWebSocketServletContainerInitializer;
 
+import fr.techgp.nimbus.server.Metrics;
 import fr.techgp.nimbus.server.MimeTypes;
 import fr.techgp.nimbus.server.Router;
 import fr.techgp.nimbus.utils.ConversionUtils;
@@ -41,6 +46,7 @@ public class JettyServer {
 	private MultipartConfigElement multipart = null;
 	private SessionConfig session = new SessionConfig();
 	private boolean showStackTraces = false;
+	private final Metrics metrics = new Metrics();
 	private Server server;
 
 	/** creates a Jetty server wrapper that will use the specified port when started */
@@ -74,11 +80,41 @@ public class JettyServer {
 			this.session.setCookiePath(cookiePath);
 		if (cookieDomain != null)
 			this.session.setCookieDomain(cookieDomain);
-		if (secretKeyHex != null) {
-			if (secretKeyHex.length() != 64)
-				throw new InvalidParameterException("Secret key should be 256 bits (i.e. 32 bytes, i.e. 64 hexadecimal characters)");
-			this.session.setSecretKey(ConversionUtils.hex2bytes(secretKeyHex));
-		}
+		if (secretKeyHex != null)
+			this.session.setSecretKey(secretKey(secretKeyHex));
+		return this;
+	}
+
+	/** then configures the client session format (default JWT) and the previous secret keys still accepted during key rotation (only in BINARY format) */
+	public JettyServer clientSession(SessionConfig.ClientSessionFormat format, String... previousSecretKeysHex) {
+		this.session.setClientSessionFormat(format);
+		this.session.setPreviousSecretKeys(Arrays.stream(previousSecretKeysHex).map(JettyServer::secretKey).toList());
+		return this;
+	}
+
+	/** then enables or disables (default) the compression of BINARY client sessions, see {@link SessionConfig#isClientSessionCompression()} for the risks */
+	public JettyServer clientSessionCompression(boolean enabled) {
+		this.session.setClientSessionCompression(enabled);
+		return this;
+	}
+
+	/** then configures the delay, in seconds (default 60), after which an unchanged client session is signed and sent again */
+	public JettyServer clientSessionRefresh(int refreshInterval) {
+		this.session.setRefreshInterval(refreshInterval);
+		return this;
+	}
+
+	/** then enables (default) or disables server-side sessions, leaving Jetty's SessionHandler out so that session cookies are not looked up, and making session creation fail fast with an {@link IllegalStateException} */
+	public JettyServer serverSessions(boolean enabled) {
+		this.session.setServerSessions(enabled);
+		return this;
+	}
+
+	/** then configures where server sessions are stored (for instance {@link JettyFileSessionDataStore}), when they leave memory (see {@link SessionCache#setEvictionPolicy(int)}) and if they are saved then */
+	public JettyServer sessionStore(SessionDataStore store, int evictionPolicy, boolean saveOnEviction) {
+		this.session.setServerSessionStore(store);
+		this.session.setServerSessionEvictionPolicy(evictionPolicy);
+		this.session.setServerSessionSaveOnEviction(saveOnEviction);
 		return this;
 	}
 
@@ -88,9 +124,14 @@ public class JettyServer {
 		return this;
 	}
 
+	/** returns the {@link Metrics} updated by the server for HTTP requests and WebSocket endpoints */
+	public Metrics metrics() {
+		return this.metrics;
+	}
+
 	/** starts the Jetty server using with a special {@link Handler} that will use the {@link Router} to handle requests */
 	public JettyServer start(Router router) throws Exception {
-		this.server = createAndStartServer(router, this.port, this.keystoreFile, this.keystorePassword, this.invalidSNIHandler, this.multipart, this.session, this.showStackTraces);
+		this.server = createAndStartServer(router, this.port, this.keystoreFile, this.keystorePassword, this.invalidSNIHandler, this.multipart, this.session, this.showStackTraces, this.metrics);
 		return this;
 	}
 
@@ -103,7 +144,7 @@ public class JettyServer {
 
 	/** This method creates a Jetty {@link Server} using specified handler and port and optional keystore */
 	protected static final Server createAndStartServer(Router router, int port, String keystore, String keystorePassword, Consumer<Request> invalidSNIHandler,
-			MultipartConfigElement multipart, SessionConfig session, boolean showStackTraces) throws Exception {
+			MultipartConfigElement multipart, SessionConfig session, boolean showStackTraces, Metrics metrics) throws Exception {
 		// Create server
 		Server server = new Server();
 
@@ -143,19 +184,28 @@ public class JettyServer {
 		JettyWebSocketServletContainerInitializer.configure(handler, null);
 
 		// Add router Servlet
-		handler.addServlet(new ServletHolder(new JettyRouterServlet(router, multipart, session, showStackTraces)), "/*");
-
-		// Configure session management
-		SessionHandler shandler = new SessionHandler();
-		shandler.setSessionTrackingModes(Set.of(SessionTrackingMode.COOKIE));
-		shandler.getSessionCookieConfig().setName("nimbus-server-session"); // instead of JSESSIONID
-		shandler.getSessionCookieConfig().setHttpOnly(true); // no usage in JavaScript
-		shandler.getSessionCookieConfig().setSecure(true); // if HTTPS is enabled
-		shandler.getSessionCookieConfig().setMaxAge(session.getTimeout());
-		shandler.getSessionCookieConfig().setPath(session.getCookiePath());
-		shandler.getSessionCookieConfig().setDomain(session.getCookieDomain());
-		shandler.setSameSite(SameSite.STRICT);
-		handler.setSessionHandler(shandler);
+		handler.addServlet(new ServletHolder(new JettyRouterServlet(router, multipart, session, showStackTraces, metrics)), "/*");
+
+		// Configure session management, unless disabled to avoid session cookie lookup on each request
+		if (session.isServerSessions()) {
+			SessionHandler shandler = new SessionHandler();
+			shandler.setSessionTrackingModes(Set.of(SessionTrackingMode.COOKIE));
+			shandler.getSessionCookieConfig().setName("nimbus-server-session"); // instead of JSESSIONID
+			shandler.getSessionCookieConfig().setHttpOnly(true); // no usage in JavaScript
+			shandler.getSessionCookieConfig().setSecure(true); // if HTTPS is enabled
+			shandler.getSessionCookieConfig().setMaxAge(session.getTimeout());
+			shandler.getSessionCookieConfig().setPath(session.getCookiePath());
+			shandler.getSessionCookieConfig().setDomain(session.getCookieDomain());
+			shandler.setSameSite(SameSite.STRICT);
+			if (session.getServerSessionStore() != null) {
+				DefaultSessionCache cache = new DefaultSessionCache(shandler);
+				cache.setSessionDataStore(session.getServerSessionStore());
+				cache.setEvictionPolicy(session.getServerSessionEvictionPolicy());
+				cache.setSaveOnInactiveEviction(session.isServerSessionSaveOnEviction());
+				shandler.setSessionCache(cache);
+			}
+			handler.setSessionHandler(shandler);
+		}
 
 		// Start
 		server.start();
@@ -168,4 +218,11 @@ public class JettyServer {
 		MimeTypes.register((extension) -> org.eclipse.jetty.http.MimeTypes.getDefaultMimeByExtension("file." + extension));
 	}
 
+	/** converts the hexadecimal "secretKeyHex" into a 256 bits secret key */
+	private static final byte[] secretKey(String secretKeyHex) {
+		if (secretKeyHex.length() != 64)
+			throw new InvalidParameterException("Secret key should be 256 bits (i.e. 32 bytes, i.e. 64 hexadecimal characters)");
+		return ConversionUtils.hex2bytes(secretKeyHex);
+	}
+
 }
@@ -13,16 +13,20 @@ import fr.techgp.nimbus.server.WebSocket;
 public class JettyWebSocket implements WebSocketListener {
 
 	private final WebSocket ws;
-	private WebSocket.Session session = null;
+	private final WebSocketMetrics metrics;
+	private JettyWebSocketSession session = null;
 
-	public JettyWebSocket(WebSocket ws) {
+	public JettyWebSocket(WebSocket ws, WebSocketMetrics metrics) {
 		super();
 		this.ws = ws;
+		this.metrics = metrics;
 	}
 
 	@Override
 	public void onWebSocketConnect(Session session) {
-		this.session = new JettyWebSocketSession(session);
+		this.metrics.connect.increment();
+		this.metrics.opened.increment();
+		this.session = new JettyWebSocketSession(session, this.metrics);
 		if (this.ws.onConnect() != null) {
 			try {
 				this.ws.onConnect().connect(this.session);
@@ -34,6 +38,8 @@ public class JettyWebSocket implements WebSocketListener {
 
 	@Override
 	public void onWebSocketText(String message) {
+		this.metrics.textIn.increment();
+		this.metrics.bytesIn.add(WebSocketMetrics.utf8Length(message));
 		if (this.ws.onText() != null) {
 			try {
 				this.ws.onText().text(this.session, message);
@@ -45,6 +51,8 @@ public class JettyWebSocket implements WebSocketListener {
 
 	@Override
 	public void onWebSocketBinary(byte[] payload, int offset, int length) {
+		this.metrics.binaryIn.increment();
+		this.metrics.bytesIn.add(length);
 		if (this.ws.onBinary() != null) {
 			try {
 				this.ws.onBinary().binary(this.session, ByteBuffer.wrap(payload, offset, length));
@@ -56,12 +64,17 @@ public class JettyWebSocket implements WebSocketListener {
 
 	@Override
 	public void onWebSocketError(Throwable throwable) {
+		// Failed asynchronous writes are counted by the session, whether Jetty reports them here too or not
+		if (this.session == null || !this.session.isCountedWriteFailure(throwable))
+			this.metrics.error.increment();
 		if (this.ws.onError() != null)
 			this.ws.onError().error(this.session, throwable);
 	}
 
 	@Override
 	public void onWebSocketClose(int statusCode, String reason) {
+		this.metrics.close.increment();
+		this.metrics.opened.decrement();
 		if (this.ws.onClose() != null) {
 			try {
 				this.ws.onClose().close(this.session, statusCode, reason);
@@ -3,21 +3,27 @@ package fr.techgp.nimbus.server.impl;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WriteCallback;
 
+import fr.techgp.nimbus.server.Metrics.Counter;
 import fr.techgp.nimbus.server.WebSocket;
 
 /** This class implements the router WebSocket session using a Jetty's WebSocket {@link Session} */
 public class JettyWebSocketSession implements WebSocket.Session {
 
 	private final Session session;
+	private final WebSocketMetrics metrics;
+	/** The last failed asynchronous write, already counted, that Jetty may also report to {@link JettyWebSocket#onWebSocketError(Throwable)} */
+	private final AtomicReference<Throwable> writeFailure = new AtomicReference<>();
 
-	public JettyWebSocketSession(Session session) {
+	public JettyWebSocketSession(Session session, WebSocketMetrics metrics) {
 		super();
 		this.session = session;
+		this.metrics = metrics;
 	}
 
 	@Override
@@ -42,20 +48,25 @@ public class JettyWebSocketSession implements WebSocket.Session {
 
 	@Override
 	public void sendText(String text) throws IOException {
+		long start = System.nanoTime();
 		this.session.getRemote().sendString(text);
+		this.sent(start, this.metrics.textOut, WebSocketMetrics.utf8Length(text));
 	}
 
 	@Override
 	public void sendTextAsync(String text, Runnable success, Consumer<Throwable> error) {
+		long start = System.nanoTime();
 		this.session.getRemote().sendString(text, new WriteCallback() {
 
 			@Override
 			public void writeSuccess() {
+				JettyWebSocketSession.this.sent(start, JettyWebSocketSession.this.metrics.textOut, WebSocketMetrics.utf8Length(text));
 				success.run();
 			}
 
 			@Override
 			public void writeFailed(Throwable t) {
+				JettyWebSocketSession.this.writeFailed(t);
 				error.accept(t);
 			}
 		});
@@ -63,23 +74,53 @@ public class JettyWebSocketSession implements WebSocket.Session {
 
 	@Override
 	public void sendBinary(ByteBuffer binary) throws IOException {
+		long start = System.nanoTime();
+		int length = binary.remaining();
 		this.session.getRemote().sendBytes(binary);
+		this.sent(start, this.metrics.binaryOut, length);
 	}
 
 	@Override
 	public void sendBinaryAsync(ByteBuffer binary, Runnable success, Consumer<Throwable> error) {
+		long start = System.nanoTime();
+		int length = binary.remaining();
 		this.session.getRemote().sendBytes(binary, new WriteCallback() {
 
 			@Override
 			public void writeSuccess() {
+				JettyWebSocketSession.this.sent(start, JettyWebSocketSession.this.metrics.binaryOut, length);
 				success.run();
 			}
 
 			@Override
 			public void writeFailed(Throwable t) {
+				JettyWebSocketSession.this.writeFailed(t);
 				error.accept(t);
 			}
 		});
 	}
 
+	/** counts a failed asynchronous write, whether Jetty reports it to {@link JettyWebSocket#onWebSocketError(Throwable)} or not */
+	private void writeFailed(Throwable throwable) {
+		this.metrics.error.increment();
+		this.writeFailure.set(throwable);
+	}
+
+	/** returns true if "throwable" is (or is caused by) a failed write already counted, so that it is not counted twice */
+	public boolean isCountedWriteFailure(Throwable throwable) {
+		Throwable failure = this.writeFailure.get();
+		for (Throwable t = throwable; failure != null && t != null; t = t.getCause() == t ? null : t.getCause()) {
+			if (t == failure)
+				return this.writeFailure.compareAndSet(failure, null);
+		}
+		return false;
+	}
+
+	/** updates metrics when a message has been sent, "start" being the time when the message was submitted */
+	private void sent(long start, Counter counter, long length) {
+		this.metrics.sendLatency.record(System.nanoTime() - start);
+		counter.increment();
+		this.metrics.bytesOut.add(length);
+	}
+
 }
@@ -17,6 +17,7 @@ import jakarta.servlet.http.Part;
 
 import fr.techgp.nimbus.server.MimeTypes;
 import fr.techgp.nimbus.server.Request;
+import fr.techgp.nimbus.server.Session.ClientSession;
 import fr.techgp.nimbus.server.Upload;
 
 public class ServletRequest implements Request {
@@ -34,7 +35,7 @@ public class ServletRequest implements Request {
 	/** The session wrapper */
 	private ServletSession session;
 	/** The client session wrapper */
-	private JWTClientSession clientSession;
+	private ClientSession clientSession;
 
 	public ServletRequest(HttpServletRequest request, SessionConfig sessionConfig) {
 		this.request = request;
@@ -230,32 +231,54 @@ public class ServletRequest implements Request {
 
 	@Override
 	public ServletSession session() {
-		if (this.session == null)
+		if (this.session == null) {
+			if (!this.sessionConfig.isServerSessions())
+				throw new IllegalStateException("Server sessions are disabled, see JettyServer.serverSessions(boolean)");
 			this.session = new ServletSession(this, this.request.getSession());
+		}
 		return this.session;
 	}
 
 	@Override
 	public ServletSession session(boolean create) {
-		if (this.session == null)
+		if (this.session == null) {
+			if (!this.sessionConfig.isServerSessions()) {
+				if (create)
+					throw new IllegalStateException("Server sessions are disabled, see JettyServer.serverSessions(boolean)");
+				return null;
+			}
 			this.session = Optional.ofNullable(this.request.getSession(create))
 					.map((s) -> new ServletSession(this, s))
 					.orElse(null);
+		}
 		return this.session;
 	}
 
 	@Override
-	public JWTClientSession clientSession() {
+	public ClientSession clientSession() {
 		return this.clientSession(true);
 	}
 
 	@Override
-	public JWTClientSession clientSession(boolean create) {
-		if (this.clientSession == null)
-			this.clientSession = JWTClientSession.load(this, create);
+	public ClientSession clientSession(boolean create) {
+		if (this.clientSession == null) {
+			if (this.sessionConfig.getClientSessionFormat() == SessionConfig.ClientSessionFormat.BINARY)
+				this.clientSession = BinaryClientSession.load(this, create);
+			else
+				this.clientSession = JWTClientSession.load(this, create);
+		}
 		return this.clientSession;
 	}
 
+	/** saves the client session, if any, in the configured format, the one it was loaded from by {@link #clientSession(boolean)} */
+	protected void saveClientSession(ServletResponse response) {
+		ClientSession session = this.clientSession(false);
+		if (this.sessionConfig.getClientSessionFormat() == SessionConfig.ClientSessionFormat.BINARY)
+			BinaryClientSession.save((BinaryClientSession) session, response);
+		else
+			JWTClientSession.save((JWTClientSession) session, response);
+	}
+
 	/** Cette méthode peut être surchargée */
 	protected List<ServletUpload> loadUploads() {
 		try {
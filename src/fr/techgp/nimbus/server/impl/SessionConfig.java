@@ -1,17 +1,72 @@
 package fr.techgp.nimbus.server.impl;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
+import javax.crypto.SecretKey;
+
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.server.session.SessionDataStore;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
 public class SessionConfig {
 
+	/** The formats available to store client sessions */
+	public static enum ClientSessionFormat {
+		/** JSON claims in a signed JWT, see {@link JWTClientSession} */
+		JWT,
+		/** compact encrypted binary, see {@link BinaryClientSession} */
+		BINARY
+	}
+
+	/** This class holds the JWT signing key and parser built from a secret key, so that they are built only once */
+	private static final class JWTKey {
+		private final byte[] secretKey;
+		private final SecretKey key;
+		private final JwtParser parser;
+
+		public JWTKey(byte[] secretKey) {
+			this.secretKey = secretKey;
+			this.key = Keys.hmacShaKeyFor(secretKey);
+			this.parser = Jwts.parser().verifyWith(this.key).build();
+		}
+	}
+
 	/** The secret key used for client session encryption */
-	private byte[] secretKey = null;
+	private volatile byte[] secretKey = null;
+	/** The JWT signing key and parser, cached for the current "secretKey" */
+	private volatile JWTKey jwtKey = null;
+	/** The previous secret keys, still accepted to decrypt client sessions during key rotation */
+	private List<byte[]> previousSecretKeys = Collections.emptyList();
+	/** The format used to store client sessions */
+	private ClientSessionFormat clientSessionFormat = ClientSessionFormat.JWT;
+	/** The store used to persist server sessions, null to keep them in memory only */
+	private SessionDataStore serverSessionStore = null;
+	/** The eviction policy of server sessions from memory, see {@link SessionCache#setEvictionPolicy(int)} */
+	private int serverSessionEvictionPolicy = SessionCache.NEVER_EVICT;
+	/** The passivation policy, true to save server sessions into the store when they are evicted */
+	private boolean serverSessionSaveOnEviction = false;
 	/** The default timeout for sessions, either client-side or server-side, either cookie's max age or session's maxInactiveInterval */
 	private int timeout = 60 * 60;
+	/**
+	 * The compression of large binary client sessions, false by default because the cookie length of a compressed
+	 * session reveals how much its content repeats itself. An attacker controlling part of the session (a search
+	 * term, a user name...) could then guess the rest of it, one character at a time (CRIME/BREACH-like attacks).
+	 * Only enable it if the attributes can not be influenced by a third party.
+	 */
+	private boolean clientSessionCompression = false;
+	/** The delay, in seconds, after which an unchanged client session is issued again to extend its expiration */
+	private int refreshInterval = 60;
 	/** The "path" attribute of the session cookies */
 	private String cookiePath = "/";
 	/** The "domain" attribute of the session cookies */
 	private String cookieDomain = "";
+	/** The server-side sessions activation, false to leave out Jetty's SessionHandler for stateless applications */
+	private boolean serverSessions = true;
 
 	public byte[] getSecretKey() {
 		return this.secretKey;
@@ -19,6 +74,78 @@ public class SessionConfig {
 
 	public void setSecretKey(byte[] secretKey) {
 		this.secretKey = secretKey;
+		this.jwtKey = null;
+	}
+
+	public List<byte[]> getPreviousSecretKeys() {
+		return this.previousSecretKeys;
+	}
+
+	public void setPreviousSecretKeys(List<byte[]> previousSecretKeys) {
+		this.previousSecretKeys = Objects.requireNonNull(previousSecretKeys);
+	}
+
+	public ClientSessionFormat getClientSessionFormat() {
+		return this.clientSessionFormat;
+	}
+
+	public void setClientSessionFormat(ClientSessionFormat clientSessionFormat) {
+		this.clientSessionFormat = Objects.requireNonNull(clientSessionFormat);
+	}
+
+	public boolean isClientSessionCompression() {
+		return this.clientSessionCompression;
+	}
+
+	public void setClientSessionCompression(boolean clientSessionCompression) {
+		this.clientSessionCompression = clientSessionCompression;
+	}
+
+	public SessionDataStore getServerSessionStore() {
+		return this.serverSessionStore;
+	}
+
+	public void setServerSessionStore(SessionDataStore serverSessionStore) {
+		this.serverSessionStore = serverSessionStore;
+	}
+
+	public int getServerSessionEvictionPolicy() {
+		return this.serverSessionEvictionPolicy;
+	}
+
+	public void setServerSessionEvictionPolicy(int serverSessionEvictionPolicy) {
+		this.serverSessionEvictionPolicy = serverSessionEvictionPolicy;
+	}
+
+	public boolean isServerSessionSaveOnEviction() {
+		return this.serverSessionSaveOnEviction;
+	}
+
+	public void setServerSessionSaveOnEviction(boolean serverSessionSaveOnEviction) {
+		this.serverSessionSaveOnEviction = serverSessionSaveOnEviction;
+	}
+
+	/** returns the key used to sign client sessions, or null if there is no secret key yet */
+	public SecretKey getJwtSigningKey() {
+		JWTKey jwtKey = this.getJwtKey();
+		return jwtKey == null ? null : jwtKey.key;
+	}
+
+	/** returns the parser used to verify client sessions, or null if there is no secret key yet */
+	public JwtParser getJwtParser() {
+		JWTKey jwtKey = this.getJwtKey();
+		return jwtKey == null ? null : jwtKey.parser;
+	}
+
+	private JWTKey getJwtKey() {
+		byte[] secretKey = this.secretKey;
+		if (secretKey == null)
+			return null;
+		JWTKey jwtKey = this.jwtKey;
+		// Rebuild if the secret key has changed concurrently (same instance check, arrays are not copied)
+		if (jwtKey == null || jwtKey.secretKey != secretKey)
+			this.jwtKey = jwtKey = new JWTKey(secretKey);
+		return jwtKey;
 	}
 
 	public int getTimeout() {
@@ -29,6 +156,14 @@ public class SessionConfig {
 		this.timeout = timeout;
 	}
 
+	public int getRefreshInterval() {
+		return this.refreshInterval;
+	}
+
+	public void setRefreshInterval(int refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
 	public String getCookiePath() {
 		return this.cookiePath;
 	}
@@ -45,4 +180,12 @@ public class SessionConfig {
 		this.cookieDomain = Objects.requireNonNull(cookieDomain);
 	}
 
+	public boolean isServerSessions() {
+		return this.serverSessions;
+	}
+
+	public void setServerSessions(boolean serverSessions) {
+		this.serverSessions = serverSessions;
+	}
+
 }
@@ -48,6 +48,7 @@ import fr.techgp.nimbus.server.WebSocket.OnClose;
 import fr.techgp.nimbus.server.WebSocket.OnConnect;
 import fr.techgp.nimbus.server.WebSocket.OnText;
 import fr.techgp.nimbus.server.WebSocket.Session;
+import fr.techgp.nimbus.server.WebSocketTopics;
 import fr.techgp.nimbus.server.render.RenderBytes;
 import fr.techgp.nimbus.utils.IOUtils;
 
@@ -387,14 +388,16 @@ public class WebServerApplication {
 
 	private static final class Chat implements OnConnect, OnText, OnClose {
 
+		private static final String TOPIC = "chat";
 		private final Map<Session, String> users = new ConcurrentHashMap<>();
+		private final WebSocketTopics topics = new WebSocketTopics();
 		private final AtomicInteger counter = new AtomicInteger(1);
 		private RenderBytes html;
 
 		public static void apply(Router router) {
 			Chat chat = new Chat();
 			router.get("/utils/chat.html", (req, res) -> chat.html());
-			router.websocket("/utils/chat.ws", new WebSocket().onConnect(chat).onText(chat).onClose(chat));
+			router.websocket("/utils/chat.ws", chat.topics.attach(new WebSocket().onConnect(chat).onText(chat).onClose(chat)));
 		}
 
 		public Render html() throws IOException {
@@ -412,6 +415,7 @@ public class WebServerApplication {
 				logger.trace("[chat] WebSocket connected " + session);
 			String username = "User" + this.counter.getAndIncrement();
 			this.users.put(session, username);
+			this.topics.subscribe(session, TOPIC);
 			JsonObject o = new JsonObject();
 			o.addProperty("type", "username");
 			o.addProperty("username", username);
@@ -438,17 +442,13 @@ public class WebServerApplication {
 			broadcast("Server", username + " has left the chat");
 		}
 
-		private void broadcast(String username, String message) throws IOException {
+		private void broadcast(String username, String message) {
 			JsonArray usernames = this.users.values().stream().collect(JsonArray::new, JsonArray::add, JsonArray::addAll);
 			JsonObject o = new JsonObject();
 			o.addProperty("username", username);
 			o.addProperty("message", message);
 			o.add("userlist", usernames);
-			String jsonMessage = o.toString();
-			for (Session peerSession : this.users.keySet()) {
-				if (peerSession.opened())
-					peerSession.sendText(jsonMessage);
-			}
+			this.topics.publish(TOPIC, o.toString());
 		}
 
 	}
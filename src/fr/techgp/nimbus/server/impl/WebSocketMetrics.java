@@ -0,0 +1,49 @@
+package fr.techgp.nimbus.server.impl;
+
+import fr.techgp.nimbus.server.Metrics;
+import fr.techgp.nimbus.server.Metrics.Counter;
+import fr.techgp.nimbus.server.Metrics.Histogram;
+
+/** This class groups the {@link Metrics} of one WebSocket endpoint, named "websocket.{path}.{metric}" */
+public class WebSocketMetrics {
+
+	protected final Counter connect;
+	protected final Counter close;
+	protected final Counter error;
+	protected final Counter opened;
+	protected final Counter textIn;
+	protected final Counter textOut;
+	protected final Counter binaryIn;
+	protected final Counter binaryOut;
+	protected final Counter bytesIn;
+	protected final Counter bytesOut;
+	protected final Histogram sendLatency;
+
+	public WebSocketMetrics(Metrics metrics, String path) {
+		String prefix = "websocket." + path + ".";
+		this.connect = metrics.counter(prefix + "connect");
+		this.close = metrics.counter(prefix + "close");
+		this.error = metrics.counter(prefix + "error");
+		this.opened = metrics.counter(prefix + "opened");
+		this.textIn = metrics.counter(prefix + "textIn");
+		this.textOut = metrics.counter(prefix + "textOut");
+		this.binaryIn = metrics.counter(prefix + "binaryIn");
+		this.binaryOut = metrics.counter(prefix + "binaryOut");
+		this.bytesIn = metrics.counter(prefix + "bytesIn");
+		this.bytesOut = metrics.counter(prefix + "bytesOut");
+		this.sendLatency = metrics.histogram(prefix + "sendLatency");
+	}
+
+	/** returns the number of bytes needed to encode "text" in UTF-8, as sent in WebSocket text frames */
+	protected static final long utf8Length(String text) {
+		int length = text.length();
+		long result = length;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c >= 0x80)
+				result += (c < 0x800 || Character.isSurrogate(c)) ? 1 : 2; // surrogate pairs are 4 bytes for 2 chars
+		}
+		return result;
+	}
+
+}
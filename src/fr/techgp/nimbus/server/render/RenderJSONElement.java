@@ -0,0 +1,49 @@
+package fr.techgp.nimbus.server.render;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+import fr.techgp.nimbus.server.MimeTypes;
+import fr.techgp.nimbus.server.Render;
+import fr.techgp.nimbus.server.Request;
+import fr.techgp.nimbus.server.Response;
+import fr.techgp.nimbus.utils.json.JSONElement;
+import fr.techgp.nimbus.utils.json.JSONEncoder;
+
+/**
+ * This {@link Render} streams a {@link JSONElement} to the response, encoded by {@link JSONEncoder} in chunks, so that
+ * large trees are served without building the whole text, as a {@link String} or as a byte array, first.
+ */
+public class RenderJSONElement implements Render {
+
+	private Supplier<JSONElement> content;
+
+	public RenderJSONElement(Supplier<JSONElement> content) {
+		this.content = content;
+	}
+
+	public RenderJSONElement(JSONElement content) {
+		this.content = () -> content;
+	}
+
+	@Override
+	public void render(Request request, Response response, Charset charset, Supplier<OutputStream> stream) throws IOException {
+		JSONElement e = this.content.get();
+		response.type(MimeTypes.JSON);
+		try (OutputStream os = stream.get()) {
+			if (StandardCharsets.UTF_8.equals(charset)) {
+				new JSONEncoder().encode(e, os);
+			} else {
+				Writer writer = new OutputStreamWriter(os, charset);
+				new JSONEncoder().encode(e, writer);
+				writer.flush();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+package fr.techgp.nimbus.server.render;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import fr.techgp.nimbus.server.MimeTypes;
+import fr.techgp.nimbus.server.Render;
+import fr.techgp.nimbus.server.Request;
+import fr.techgp.nimbus.server.Response;
+import fr.techgp.nimbus.utils.GraphicsUtils;
+import fr.techgp.nimbus.utils.IOUtils;
+import fr.techgp.nimbus.utils.ThumbnailCache;
+import fr.techgp.nimbus.utils.ThumbnailService;
+
+public class RenderThumbnail implements Render {
+
+	private final File file;
+	private final Integer targetWidth;
+	private final Integer targetHeight;
+	private final boolean autoOrient;
+	private final ThumbnailService service;
+	private final ThumbnailCache cache;
+
+	public RenderThumbnail(File file, Integer targetWidth, Integer targetHeight) {
+		this(file, targetWidth, targetHeight, null);
+	}
+
+	public RenderThumbnail(File file, Integer targetWidth, Integer targetHeight, ThumbnailService service) {
+		this(file, targetWidth, targetHeight, false, service, null);
+	}
+
+	public RenderThumbnail(File file, Integer targetWidth, Integer targetHeight, boolean autoOrient, ThumbnailCache cache) {
+		this(file, targetWidth, targetHeight, autoOrient, null, cache);
+	}
+
+	private RenderThumbnail(File file, Integer targetWidth, Integer targetHeight, boolean autoOrient, ThumbnailService service, ThumbnailCache cache) {
+		super();
+		this.file = file;
+		this.targetWidth = targetWidth;
+		this.targetHeight = targetHeight;
+		this.autoOrient = autoOrient;
+		this.service = service;
+		this.cache = cache;
+	}
+
+	@Override
+	public void render(Request request, Response response, Charset charset, Supplier<OutputStream> stream) throws IOException {
+		// The thumbnail has the same format as the original image
+		response.type(MimeTypes.byFilePath(this.file.getPath()));
+
+		// With cache, the thumbnail is served as a static file
+		if (this.cache != null) {
+			this.renderCached(request, response, charset, stream);
+			return;
+		}
+
+		// Without pool, the thumbnail is created on the current thread
+		if (this.service == null) {
+			try (OutputStream os = stream.get()) {
+				GraphicsUtils.writeThumbnail(this.file, this.targetWidth, this.targetHeight, this.autoOrient, os);
+			}
+			return;
+		}
+
+		// Otherwise, wait for the pool to write the thumbnail to the response
+		try {
+			this.service.write(this.file, this.targetWidth, this.targetHeight, this.autoOrient, stream).get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException(ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RejectedExecutionException) {
+				// The pool is busy and the response has not been touched yet
+				serviceUnavailable(request, response, charset, stream);
+				return;
+			}
+			if (ex.getCause() instanceof IOException)
+				throw (IOException) ex.getCause();
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	private void renderCached(Request request, Response response, Charset charset, Supplier<OutputStream> stream) throws IOException {
+		// The cache key depends on the original file and on the thumbnail parameters
+		String etag = this.cache.key(this.file, this.targetWidth, this.targetHeight, this.autoOrient);
+		response.header("Cache-Control", "no-cache");
+		response.header("Etag", etag);
+
+		// The browser already has this thumbnail, no need to create or read it
+		if (etag.equals(request.header("If-None-Match"))) {
+			response.status(HttpServletResponse.SC_NOT_MODIFIED);
+			response.length(0);
+			stream.get().close();
+			return;
+		}
+
+		FileInputStream input;
+		try {
+			try {
+				input = new FileInputStream(this.cache.get(this.file, this.targetWidth, this.targetHeight, this.autoOrient));
+			} catch (FileNotFoundException ex) {
+				// The thumbnail has been evicted before being opened, so create it again, once
+				input = new FileInputStream(this.cache.get(this.file, this.targetWidth, this.targetHeight, this.autoOrient));
+			}
+		} catch (RejectedExecutionException ex) {
+			serviceUnavailable(request, response, charset, stream);
+			return;
+		}
+		try (InputStream is = input) {
+			// Once opened, the file stays readable, and its size known, even if it is evicted meanwhile
+			response.length(input.getChannel().size());
+			try (OutputStream os = stream.get()) {
+				IOUtils.copy(is, os);
+			}
+		}
+	}
+
+	private static void serviceUnavailable(Request request, Response response, Charset charset, Supplier<OutputStream> stream) throws IOException {
+		response.type(null);
+		response.header("Cache-Control", null);
+		response.header("Etag", null);
+		new RenderStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Service Unavailable").render(request, response, charset, stream);
+	}
+
+}
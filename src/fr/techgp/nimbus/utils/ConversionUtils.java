@@ -1,6 +1,9 @@
 package fr.techgp.nimbus.utils;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidParameterException;
+import java.util.Arrays;
 
 public final class ConversionUtils {
 
@@ -8,6 +11,34 @@ public final class ConversionUtils {
 		//
 	}
 
+	/** Les chiffres hexadécimaux (minuscules) de chaque octet, par paire : HEX_PAIRS[2 * b] et HEX_PAIRS[2 * b + 1] */
+	private static final byte[] HEX_PAIRS = new byte[512];
+	/** La valeur de chaque caractère ASCII en hexadécimal, ou -1 s'il n'est pas valide */
+	private static final byte[] HEX_VALUES = new byte[128];
+	/** L'alphabet base64 standard (RFC 4648, section 4) */
+	private static final byte[] BASE64_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+	/** L'alphabet base64url (RFC 4648, section 5) */
+	private static final byte[] BASE64URL_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.US_ASCII);
+	/** La valeur de chaque caractère ASCII en base64 ou base64url, ou -1 s'il n'est pas valide */
+	private static final byte[] BASE64_VALUES = new byte[128];
+
+	static {
+		for (int b = 0; b < 256; b++) {
+			HEX_PAIRS[2 * b] = (byte) Character.forDigit(b >> 4, 16);
+			HEX_PAIRS[2 * b + 1] = (byte) Character.forDigit(b & 0x0F, 16);
+		}
+		Arrays.fill(HEX_VALUES, (byte) -1);
+		for (int i = 0; i < 16; i++) {
+			HEX_VALUES[Character.forDigit(i, 16)] = (byte) i;
+			HEX_VALUES[Character.toUpperCase(Character.forDigit(i, 16))] = (byte) i;
+		}
+		Arrays.fill(BASE64_VALUES, (byte) -1);
+		for (int i = 0; i < 64; i++) {
+			BASE64_VALUES[BASE64_DIGITS[i]] = (byte) i;
+			BASE64_VALUES[BASE64URL_DIGITS[i]] = (byte) i;
+		}
+	}
+
 	/**
 	 * Cette méthode convertit une chaine de caractères hexadécimaux en un tableau d'octets.
 	 *
@@ -19,9 +50,69 @@ public final class ConversionUtils {
 		if ((len & 0x01) != 0)
 			throw new InvalidParameterException("length should be a multiple of 2");
 		final byte[] result = new byte[len >> 1];
-		for (int i = 0; i < len; i += 2) {
-			result[i >> 1] = (byte) (Integer.parseInt(hex.substring(i, i + 2), 16) & 0xFF);
+		hex2bytes(hex, 0, len, result, 0);
+		return result;
+	}
+
+	/**
+	 * Cette méthode convertit des caractères hexadécimaux en octets, dans un tableau fourni par l'appelant.
+	 *
+	 * @param hex les caractères hexadécimaux (minuscules ou majuscules)
+	 * @param offset la position du premier caractère à convertir
+	 * @param length le nombre de caractères à convertir, qui doit être pair
+	 * @param dst le tableau d'octets à remplir, d'au moins length / 2 octets après "dstOffset"
+	 * @param dstOffset la position du premier octet à écrire dans "dst"
+	 * @return le nombre d'octets écrits, soit length / 2
+	 */
+	public static final int hex2bytes(final CharSequence hex, final int offset, final int length, final byte[] dst, final int dstOffset) {
+		if ((length & 0x01) != 0)
+			throw new InvalidParameterException("length should be a multiple of 2");
+		for (int i = offset, j = dstOffset, end = offset + length; i < end; i += 2) {
+			final int v = hexValue(hex.charAt(i)) << 4 | hexValue(hex.charAt(i + 1));
+			if (v < 0)
+				throw new InvalidParameterException("invalid hexadecimal character at " + i);
+			dst[j++] = (byte) v;
 		}
+		return length >> 1;
+	}
+
+	/**
+	 * Cette méthode convertit des caractères hexadécimaux ASCII en octets, dans un tableau fourni par l'appelant.
+	 *
+	 * @param hex les caractères hexadécimaux ASCII (minuscules ou majuscules)
+	 * @param offset la position du premier caractère à convertir
+	 * @param length le nombre de caractères à convertir, qui doit être pair
+	 * @param dst le tableau d'octets à remplir, d'au moins length / 2 octets après "dstOffset"
+	 * @param dstOffset la position du premier octet à écrire dans "dst"
+	 * @return le nombre d'octets écrits, soit length / 2
+	 */
+	public static final int hex2bytes(final byte[] hex, final int offset, final int length, final byte[] dst, final int dstOffset) {
+		if ((length & 0x01) != 0)
+			throw new InvalidParameterException("length should be a multiple of 2");
+		for (int i = offset, j = dstOffset, end = offset + length; i < end; i += 2) {
+			final int v = hexValue(hex[i]) << 4 | hexValue(hex[i + 1]);
+			if (v < 0)
+				throw new InvalidParameterException("invalid hexadecimal character at " + i);
+			dst[j++] = (byte) v;
+		}
+		return length >> 1;
+	}
+
+	/**
+	 * Cette méthode convertit des caractères hexadécimaux ASCII en octets, de la position actuelle de "src" jusqu'à sa
+	 * limite, vers la position actuelle de "dst". Les positions des 2 buffers sont avancées.
+	 *
+	 * @param src un buffer contenant des caractères hexadécimaux ASCII
+	 * @param dst le buffer à remplir
+	 * @return le nombre d'octets écrits
+	 */
+	public static final int hex2bytes(final ByteBuffer src, final ByteBuffer dst) {
+		final int length = src.remaining();
+		final byte[] srcArray = array(src, length);
+		final byte[] dstArray = dst.hasArray() ? dst.array() : new byte[length >> 1];
+		final int dstOffset = dst.hasArray() ? dst.arrayOffset() + dst.position() : 0;
+		final int result = hex2bytes(srcArray, src.hasArray() ? src.arrayOffset() + src.position() : 0, length, dstArray, dstOffset);
+		advance(src, length, dst, dstArray, result);
 		return result;
 	}
 
@@ -32,13 +123,315 @@ public final class ConversionUtils {
 	 * @return l'équivalent sous la forme d'une chaine de caractères hexadécimaux
 	 */
 	public static final String bytes2hex(final byte[] bytes) {
-		final int len = bytes.length;
-		final char[] chars = new char[len << 1];
-		for (int i = 0, j = 0; i < len; i++) {
-			chars[j++] = Character.forDigit((0xF0 & bytes[i]) >>> 4, 16);
-			chars[j++] = Character.forDigit(0x0F & bytes[i], 16);
+		final byte[] chars = new byte[bytes.length << 1];
+		bytes2hex(bytes, 0, bytes.length, chars, 0);
+		// Les chaines Latin-1 sont stockées en octets, ce qui évite la compression d'un char[]
+		return new String(chars, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Cette méthode convertit des octets en caractères hexadécimaux (minuscules), dans un tableau fourni par l'appelant.
+	 *
+	 * @param bytes le tableau d'octets à convertir
+	 * @param offset la position du premier octet à convertir
+	 * @param length le nombre d'octets à convertir
+	 * @param dst le tableau de caractères à remplir, d'au moins length * 2 caractères après "dstOffset"
+	 * @param dstOffset la position du premier caractère à écrire dans "dst"
+	 * @return le nombre de caractères écrits, soit length * 2
+	 */
+	public static final int bytes2hex(final byte[] bytes, final int offset, final int length, final char[] dst, final int dstOffset) {
+		for (int i = offset, j = dstOffset, end = offset + length; i < end; i++) {
+			final int b = (bytes[i] & 0xFF) << 1;
+			dst[j++] = (char) HEX_PAIRS[b];
+			dst[j++] = (char) HEX_PAIRS[b + 1];
+		}
+		return length << 1;
+	}
+
+	/**
+	 * Cette méthode convertit des octets en caractères hexadécimaux ASCII (minuscules), dans un tableau fourni par l'appelant.
+	 *
+	 * @param bytes le tableau d'octets à convertir
+	 * @param offset la position du premier octet à convertir
+	 * @param length le nombre d'octets à convertir
+	 * @param dst le tableau d'octets à remplir, d'au moins length * 2 octets après "dstOffset"
+	 * @param dstOffset la position du premier octet à écrire dans "dst"
+	 * @return le nombre d'octets écrits, soit length * 2
+	 */
+	public static final int bytes2hex(final byte[] bytes, final int offset, final int length, final byte[] dst, final int dstOffset) {
+		for (int i = offset, j = dstOffset, end = offset + length; i < end; i++) {
+			final int b = (bytes[i] & 0xFF) << 1;
+			dst[j++] = HEX_PAIRS[b];
+			dst[j++] = HEX_PAIRS[b + 1];
+		}
+		return length << 1;
+	}
+
+	/**
+	 * Cette méthode convertit des octets en caractères hexadécimaux ASCII (minuscules), de la position actuelle de
+	 * "src" jusqu'à sa limite, vers la position actuelle de "dst". Les positions des 2 buffers sont avancées.
+	 *
+	 * @param src le buffer d'octets à convertir
+	 * @param dst le buffer à remplir, avec au moins src.remaining() * 2 octets disponibles
+	 * @return le nombre d'octets écrits dans "dst"
+	 */
+	public static final int bytes2hex(final ByteBuffer src, final ByteBuffer dst) {
+		final int length = src.remaining();
+		final byte[] srcArray = array(src, length);
+		final byte[] dstArray = dst.hasArray() ? dst.array() : new byte[length << 1];
+		final int dstOffset = dst.hasArray() ? dst.arrayOffset() + dst.position() : 0;
+		final int result = bytes2hex(srcArray, src.hasArray() ? src.arrayOffset() + src.position() : 0, length, dstArray, dstOffset);
+		advance(src, length, dst, dstArray, result);
+		return result;
+	}
+
+	/**
+	 * Cette méthode calcule le nombre de caractères nécessaires pour encoder "length" octets en base64 ou base64url.
+	 *
+	 * @param length le nombre d'octets à encoder
+	 * @param padding indique si les caractères '=' de remplissage sont ajoutés
+	 * @return le nombre de caractères
+	 */
+	public static final int base64Length(final int length, final boolean padding) {
+		return padding ? ((length + 2) / 3) * 4 : (length / 3) * 4 + (length % 3 == 0 ? 0 : length % 3 + 1);
+	}
+
+	/**
+	 * Cette méthode encode des octets en base64 ou base64url, dans un tableau fourni par l'appelant.
+	 *
+	 * @param bytes le tableau d'octets à encoder
+	 * @param offset la position du premier octet à encoder
+	 * @param length le nombre d'octets à encoder
+	 * @param dst le tableau de caractères à remplir, d'au moins {@link ConversionUtils#base64Length(int, boolean)} caractères après "dstOffset"
+	 * @param dstOffset la position du premier caractère à écrire dans "dst"
+	 * @param url true pour utiliser l'alphabet base64url ('-' et '_') au lieu de base64 ('+' et '/')
+	 * @param padding indique si les caractères '=' de remplissage sont ajoutés
+	 * @return le nombre de caractères écrits
+	 */
+	public static final int bytes2base64(final byte[] bytes, final int offset, final int length, final char[] dst, final int dstOffset, final boolean url, final boolean padding) {
+		final byte[] digits = url ? BASE64URL_DIGITS : BASE64_DIGITS;
+		int i = offset;
+		int j = dstOffset;
+		final int end = offset + length - length % 3;
+		while (i < end) {
+			final int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+			i += 3;
+			dst[j] = (char) digits[bits >>> 18];
+			dst[j + 1] = (char) digits[(bits >>> 12) & 0x3F];
+			dst[j + 2] = (char) digits[(bits >>> 6) & 0x3F];
+			dst[j + 3] = (char) digits[bits & 0x3F];
+			j += 4;
+		}
+		final int remaining = length % 3;
+		if (remaining > 0) {
+			final int bits = (bytes[i] & 0xFF) << 16 | (remaining == 2 ? (bytes[i + 1] & 0xFF) << 8 : 0);
+			dst[j++] = (char) digits[bits >>> 18];
+			dst[j++] = (char) digits[(bits >>> 12) & 0x3F];
+			if (remaining == 2)
+				dst[j++] = (char) digits[(bits >>> 6) & 0x3F];
+			else if (padding)
+				dst[j++] = '=';
+			if (padding)
+				dst[j++] = '=';
+		}
+		return j - dstOffset;
+	}
+
+	/**
+	 * Cette méthode encode des octets en base64 ou base64url ASCII, dans un tableau fourni par l'appelant.
+	 *
+	 * @param bytes le tableau d'octets à encoder
+	 * @param offset la position du premier octet à encoder
+	 * @param length le nombre d'octets à encoder
+	 * @param dst le tableau d'octets à remplir, d'au moins {@link ConversionUtils#base64Length(int, boolean)} octets après "dstOffset"
+	 * @param dstOffset la position du premier octet à écrire dans "dst"
+	 * @param url true pour utiliser l'alphabet base64url ('-' et '_') au lieu de base64 ('+' et '/')
+	 * @param padding indique si les caractères '=' de remplissage sont ajoutés
+	 * @return le nombre d'octets écrits
+	 */
+	public static final int bytes2base64(final byte[] bytes, final int offset, final int length, final byte[] dst, final int dstOffset, final boolean url, final boolean padding) {
+		final byte[] digits = url ? BASE64URL_DIGITS : BASE64_DIGITS;
+		int i = offset;
+		int j = dstOffset;
+		final int end = offset + length - length % 3;
+		while (i < end) {
+			final int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+			i += 3;
+			dst[j] = digits[bits >>> 18];
+			dst[j + 1] = digits[(bits >>> 12) & 0x3F];
+			dst[j + 2] = digits[(bits >>> 6) & 0x3F];
+			dst[j + 3] = digits[bits & 0x3F];
+			j += 4;
+		}
+		final int remaining = length % 3;
+		if (remaining > 0) {
+			final int bits = (bytes[i] & 0xFF) << 16 | (remaining == 2 ? (bytes[i + 1] & 0xFF) << 8 : 0);
+			dst[j++] = digits[bits >>> 18];
+			dst[j++] = digits[(bits >>> 12) & 0x3F];
+			if (remaining == 2)
+				dst[j++] = digits[(bits >>> 6) & 0x3F];
+			else if (padding)
+				dst[j++] = '=';
+			if (padding)
+				dst[j++] = '=';
+		}
+		return j - dstOffset;
+	}
+
+	/**
+	 * Cette méthode encode des octets en base64 ou base64url, de la position actuelle de "src" jusqu'à sa limite, vers
+	 * la position actuelle de "dst" en caractères ASCII. Les positions des 2 buffers sont avancées.
+	 *
+	 * @param src le buffer d'octets à encoder
+	 * @param dst le buffer à remplir, avec au moins {@link ConversionUtils#base64Length(int, boolean)} octets disponibles
+	 * @param url true pour utiliser l'alphabet base64url ('-' et '_') au lieu de base64 ('+' et '/')
+	 * @param padding indique si les caractères '=' de remplissage sont ajoutés
+	 * @return le nombre d'octets écrits dans "dst"
+	 */
+	public static final int bytes2base64(final ByteBuffer src, final ByteBuffer dst, final boolean url, final boolean padding) {
+		final int length = src.remaining();
+		final byte[] srcArray = array(src, length);
+		final byte[] dstArray = dst.hasArray() ? dst.array() : new byte[base64Length(length, padding)];
+		final int dstOffset = dst.hasArray() ? dst.arrayOffset() + dst.position() : 0;
+		final int result = bytes2base64(srcArray, src.hasArray() ? src.arrayOffset() + src.position() : 0, length, dstArray, dstOffset, url, padding);
+		advance(src, length, dst, dstArray, result);
+		return result;
+	}
+
+	/**
+	 * Cette méthode décode des caractères base64 ou base64url (les 2 alphabets sont acceptés, avec ou sans caractères
+	 * '=' de remplissage) dans un tableau fourni par l'appelant.
+	 *
+	 * @param chars les caractères à décoder
+	 * @param offset la position du premier caractère à décoder
+	 * @param length le nombre de caractères à décoder
+	 * @param dst le tableau d'octets à remplir, d'au moins length * 3 / 4 octets après "dstOffset"
+	 * @param dstOffset la position du premier octet à écrire dans "dst"
+	 * @return le nombre d'octets écrits
+	 */
+	public static final int base642bytes(final CharSequence chars, final int offset, int length, final byte[] dst, final int dstOffset) {
+		// Ignorer le remplissage
+		while (length > 0 && chars.charAt(offset + length - 1) == '=') {
+			length--;
+		}
+		if (length % 4 == 1)
+			throw new InvalidParameterException("base64 length is invalid");
+		int i = offset;
+		int j = dstOffset;
+		final int end = offset + length - length % 4;
+		while (i < end) {
+			final int bits = base64Value(chars.charAt(i)) << 18 | base64Value(chars.charAt(i + 1)) << 12
+					| base64Value(chars.charAt(i + 2)) << 6 | base64Value(chars.charAt(i + 3));
+			if (bits < 0)
+				throw new InvalidParameterException("invalid base64 character at " + i);
+			i += 4;
+			dst[j] = (byte) (bits >> 16);
+			dst[j + 1] = (byte) (bits >> 8);
+			dst[j + 2] = (byte) bits;
+			j += 3;
 		}
-		return new String(chars);
+		final int remaining = length % 4;
+		if (remaining > 0) {
+			final int bits = base64Value(chars.charAt(i)) << 18 | base64Value(chars.charAt(i + 1)) << 12
+					| (remaining == 3 ? base64Value(chars.charAt(i + 2)) << 6 : 0);
+			if (bits < 0)
+				throw new InvalidParameterException("invalid base64 character at " + i);
+			dst[j++] = (byte) (bits >> 16);
+			if (remaining == 3)
+				dst[j++] = (byte) (bits >> 8);
+		}
+		return j - dstOffset;
+	}
+
+	/**
+	 * Cette méthode décode des caractères ASCII base64 ou base64url (les 2 alphabets sont acceptés, avec ou sans
+	 * caractères '=' de remplissage) dans un tableau fourni par l'appelant.
+	 *
+	 * @param chars les caractères ASCII à décoder
+	 * @param offset la position du premier caractère à décoder
+	 * @param length le nombre de caractères à décoder
+	 * @param dst le tableau d'octets à remplir, d'au moins length * 3 / 4 octets après "dstOffset"
+	 * @param dstOffset la position du premier octet à écrire dans "dst"
+	 * @return le nombre d'octets écrits
+	 */
+	public static final int base642bytes(final byte[] chars, final int offset, int length, final byte[] dst, final int dstOffset) {
+		// Ignorer le remplissage
+		while (length > 0 && chars[offset + length - 1] == '=') {
+			length--;
+		}
+		if (length % 4 == 1)
+			throw new InvalidParameterException("base64 length is invalid");
+		int i = offset;
+		int j = dstOffset;
+		final int end = offset + length - length % 4;
+		while (i < end) {
+			final int bits = base64Value(chars[i]) << 18 | base64Value(chars[i + 1]) << 12
+					| base64Value(chars[i + 2]) << 6 | base64Value(chars[i + 3]);
+			if (bits < 0)
+				throw new InvalidParameterException("invalid base64 character at " + i);
+			i += 4;
+			dst[j] = (byte) (bits >> 16);
+			dst[j + 1] = (byte) (bits >> 8);
+			dst[j + 2] = (byte) bits;
+			j += 3;
+		}
+		final int remaining = length % 4;
+		if (remaining > 0) {
+			final int bits = base64Value(chars[i]) << 18 | base64Value(chars[i + 1]) << 12
+					| (remaining == 3 ? base64Value(chars[i + 2]) << 6 : 0);
+			if (bits < 0)
+				throw new InvalidParameterException("invalid base64 character at " + i);
+			dst[j++] = (byte) (bits >> 16);
+			if (remaining == 3)
+				dst[j++] = (byte) (bits >> 8);
+		}
+		return j - dstOffset;
+	}
+
+	/**
+	 * Cette méthode décode des caractères ASCII base64 ou base64url (avec ou sans remplissage), de la position actuelle
+	 * de "src" jusqu'à sa limite, vers la position actuelle de "dst". Les positions des 2 buffers sont avancées.
+	 *
+	 * @param src un buffer contenant des caractères base64 ou base64url ASCII
+	 * @param dst le buffer à remplir
+	 * @return le nombre d'octets écrits
+	 */
+	public static final int base642bytes(final ByteBuffer src, final ByteBuffer dst) {
+		final int length = src.remaining();
+		final byte[] srcArray = array(src, length);
+		final byte[] dstArray = dst.hasArray() ? dst.array() : new byte[length * 3 / 4];
+		final int dstOffset = dst.hasArray() ? dst.arrayOffset() + dst.position() : 0;
+		final int result = base642bytes(srcArray, src.hasArray() ? src.arrayOffset() + src.position() : 0, length, dstArray, dstOffset);
+		advance(src, length, dst, dstArray, result);
+		return result;
+	}
+
+	/** Cette méthode renvoie la valeur du caractère hexadécimal "c", ou un nombre négatif s'il n'est pas valide */
+	private static final int hexValue(final int c) {
+		return c >= 0 && c < 128 ? HEX_VALUES[c] : -256;
+	}
+
+	/** Cette méthode renvoie la valeur du caractère base64 "c", ou -1 s'il n'est pas valide (ce qui rend négatif tout groupe de 4 caractères) */
+	private static final int base64Value(final int c) {
+		return c >= 0 && c < 128 ? BASE64_VALUES[c] : -1;
+	}
+
+	/** Cette méthode renvoie le tableau de "buffer", ou une copie des "length" octets restants pour un buffer sans tableau accessible */
+	private static final byte[] array(final ByteBuffer buffer, final int length) {
+		if (buffer.hasArray())
+			return buffer.array();
+		final byte[] result = new byte[length];
+		buffer.get(buffer.position(), result);
+		return result;
+	}
+
+	/** Cette méthode avance la position des 2 buffers, en copiant le résultat dans "dst" s'il n'a pas de tableau accessible */
+	private static final void advance(final ByteBuffer src, final int length, final ByteBuffer dst, final byte[] dstArray, final int result) {
+		src.position(src.position() + length);
+		if (dst.hasArray())
+			dst.position(dst.position() + result);
+		else
+			dst.put(dstArray, 0, result);
 	}
 
 	/**
@@ -1,11 +1,14 @@
 package fr.techgp.nimbus.utils;
 
 import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 
@@ -143,19 +146,7 @@ public final class CryptoUtils {
 	 * @throws InvalidKeySpecException
 	 */
 	public static final String hashPassword(final String password) throws NoSuchAlgorithmException, InvalidKeySpecException {
-		// Préparer les paramètres de l'algorithme de hachage
-		char[] chars = password.toCharArray();
-		byte[] salt = RandomUtils.randomBytes(new SecureRandom(), PASSWORD_HASH_CURRENT_SALT_BYTES);
-		int iterations = PASSWORD_HASH_CURRENT_ITERATIONS;
-		int keyLength = PASSWORD_HASH_BYTES * 8;
-
-		// Calculer le hash pour le mot de passe indiqué
-		PBEKeySpec spec = new PBEKeySpec(chars, salt, iterations, keyLength);
-		SecretKeyFactory skf = SecretKeyFactory.getInstance(PASSWORD_HASH_ALGORITHM);
-		byte[] hash = skf.generateSecret(spec).getEncoded();
-
-		// Renvoyer le résultat formaté sous la forme "iterations:saltHex:hashHex"
-		return iterations + ":" + ConversionUtils.bytes2hex(salt) + ":" + ConversionUtils.bytes2hex(hash);
+		return PasswordHasher.DEFAULT.hash(password).toString();
 	}
 
 	/**
@@ -175,19 +166,9 @@ public final class CryptoUtils {
 	public static final boolean validatePassword(final String testedPassword, final String storedPassword, final String algorithm, Consumer<Exception> errorHandler) {
 		try {
 			// Extraire les informations depuis le hash donnée, de la forme "iterations:saltHex:hashHex"
-			String[] parts = storedPassword.split(":");
-			int iterations = Integer.parseInt(parts[0]);
-			byte[] salt = ConversionUtils.hex2bytes(parts[1]);
-			byte[] hash = ConversionUtils.hex2bytes(parts[2]);
-			String alg = Optional.ofNullable(algorithm).orElse(PASSWORD_HASH_ALGORITHM);
-
-			// Calculer le hash pour le mot de passe à tester
-			PBEKeySpec spec = new PBEKeySpec(testedPassword.toCharArray(), salt, iterations, hash.length * 8);
-			SecretKeyFactory skf = SecretKeyFactory.getInstance(alg);
-			byte[] testedHash = skf.generateSecret(spec).getEncoded();
-
-			// Comparer les 2 hash en temps constant
-			return slowEquals(hash, testedHash);
+			StoredPassword stored = StoredPassword.parse(storedPassword, algorithm);
+			// Calculer le hash pour le mot de passe à tester et comparer les 2 hash en temps constant
+			return PasswordHasher.DEFAULT.validate(testedPassword, stored);
 		} catch (Exception ex) {
 			if (errorHandler != null)
 				// Prévenir de l'erreur
@@ -200,6 +181,137 @@ public final class CryptoUtils {
 		}
 	}
 
+	/**
+	 * Cette classe représente un mot de passe stocké, de la forme iterations:hex(salt):hex(hash), analysé une seule
+	 * fois, par exemple pour être conservé en cache avec l'utilisateur au lieu d'être redécoupé à chaque vérification.
+	 */
+	public static final class StoredPassword {
+
+		/** L'algorithme utilisé, par exemple {@link CryptoUtils#PASSWORD_HASH_ALGORITHM} */
+		public final String algorithm;
+		/** Le nombre d'itérations utilisé */
+		public final int iterations;
+		/** Le sel utilisé */
+		public final byte[] salt;
+		/** Le hash obtenu */
+		public final byte[] hash;
+
+		public StoredPassword(String algorithm, int iterations, byte[] salt, byte[] hash) {
+			this.algorithm = algorithm;
+			this.iterations = iterations;
+			this.salt = salt;
+			this.hash = hash;
+		}
+
+		/**
+		 * Cette méthode analyse un mot de passe stocké.
+		 *
+		 * @param storedPassword un hash de la forme iterations + ":" + hex(salt) + ":" + hex(hash)
+		 * @param algorithm PBKDF2WithHmacSHA1, PBKDF2WithHmacSHA256, ou juste null pour utiliser l'algo actuel {@link CryptoUtils#PASSWORD_HASH_ALGORITHM}
+		 * @return le mot de passe analysé
+		 * @throws InvalidParameterException si le format n'est pas respecté
+		 */
+		public static final StoredPassword parse(final String storedPassword, final String algorithm) {
+			int first = storedPassword.indexOf(':');
+			int second = storedPassword.indexOf(':', first + 1);
+			if (first <= 0 || second < 0)
+				throw new InvalidParameterException("Stored password is expected to be iterations:salt:hash");
+			int iterations = Integer.parseInt(storedPassword, 0, first, 10);
+			byte[] salt = ConversionUtils.hex2bytes(storedPassword.substring(first + 1, second));
+			byte[] hash = ConversionUtils.hex2bytes(storedPassword.substring(second + 1));
+			return new StoredPassword(Optional.ofNullable(algorithm).orElse(PASSWORD_HASH_ALGORITHM), iterations, salt, hash);
+		}
+
+		/** Cette méthode indique si le mot de passe utilise des paramètres moins sûrs que les paramètres actuels et devrait être haché à nouveau */
+		public boolean isOutdated() {
+			return !PASSWORD_HASH_ALGORITHM.equals(this.algorithm)
+					|| this.iterations < PASSWORD_HASH_CURRENT_ITERATIONS
+					|| this.salt.length < PASSWORD_HASH_CURRENT_SALT_BYTES;
+		}
+
+		/** Cette méthode renvoie le mot de passe au format iterations:hex(salt):hex(hash) */
+		@Override
+		public String toString() {
+			return this.iterations + ":" + ConversionUtils.bytes2hex(this.salt) + ":" + ConversionUtils.bytes2hex(this.hash);
+		}
+
+	}
+
+	/**
+	 * Cette classe calcule et vérifie les hash de mots de passe en évitant les coûts annexes au calcul PBKDF2 :
+	 * <ul>
+	 * <li>les {@link SecretKeyFactory} sont mises en cache par algorithme et par thread (elles ne sont pas thread-safe)</li>
+	 * <li>le {@link SecureRandom} est partagé au lieu d'être créé (et initialisé) à chaque hash</li>
+	 * <li>les mots de passe stockés peuvent être analysés une seule fois, voir {@link StoredPassword}</li>
+	 * </ul>
+	 */
+	public static final class PasswordHasher {
+
+		/** L'instance utilisant les paramètres actuels, utilisée par {@link CryptoUtils#hashPassword(String)} et {@link CryptoUtils#validatePassword(String, String, String, Consumer)} */
+		public static final PasswordHasher DEFAULT = new PasswordHasher(PASSWORD_HASH_ALGORITHM, PASSWORD_HASH_CURRENT_ITERATIONS, PASSWORD_HASH_CURRENT_SALT_BYTES, PASSWORD_HASH_BYTES);
+
+		/** Les {@link SecretKeyFactory} de chaque thread, par algorithme */
+		private static final ThreadLocal<Map<String, SecretKeyFactory>> FACTORIES = ThreadLocal.withInitial(HashMap::new);
+
+		private final String algorithm;
+		private final int iterations;
+		private final int saltBytes;
+		private final int hashBytes;
+		private final SecureRandom random = new SecureRandom();
+
+		public PasswordHasher(String algorithm, int iterations, int saltBytes, int hashBytes) {
+			this.algorithm = algorithm;
+			this.iterations = iterations;
+			this.saltBytes = saltBytes;
+			this.hashBytes = hashBytes;
+		}
+
+		/**
+		 * Cette méthode calcule l'empreinte du mot de passe donné avec un sel aléatoire.
+		 *
+		 * @param password le mot de passe à hasher pour être stocké
+		 * @return le mot de passe à stocker, dont {@link StoredPassword#toString()} donne la forme iterations:hex(salt):hex(hash)
+		 * @throws NoSuchAlgorithmException
+		 * @throws InvalidKeySpecException
+		 */
+		public StoredPassword hash(final String password) throws NoSuchAlgorithmException, InvalidKeySpecException {
+			byte[] salt = RandomUtils.randomBytes(this.random, this.saltBytes);
+			byte[] hash = compute(this.algorithm, password, salt, this.iterations, this.hashBytes);
+			return new StoredPassword(this.algorithm, this.iterations, salt, hash);
+		}
+
+		/**
+		 * Cette méthode teste si le mot de passe "testedPassword" correspond au mot de passe stocké "storedPassword".
+		 *
+		 * @param testedPassword le mot de passe à tester
+		 * @param storedPassword le mot de passe stocké, analysé avec {@link StoredPassword#parse(String, String)}
+		 * @return true si testedPassword est le bon mot de passe
+		 * @throws NoSuchAlgorithmException
+		 * @throws InvalidKeySpecException
+		 */
+		public boolean validate(final String testedPassword, final StoredPassword storedPassword) throws NoSuchAlgorithmException, InvalidKeySpecException {
+			byte[] testedHash = compute(storedPassword.algorithm, testedPassword, storedPassword.salt, storedPassword.iterations, storedPassword.hash.length);
+			return slowEquals(storedPassword.hash, testedHash);
+		}
+
+		private static final byte[] compute(String algorithm, String password, byte[] salt, int iterations, int hashBytes) throws NoSuchAlgorithmException, InvalidKeySpecException {
+			Map<String, SecretKeyFactory> factories = FACTORIES.get();
+			SecretKeyFactory skf = factories.get(algorithm);
+			if (skf == null) {
+				skf = SecretKeyFactory.getInstance(algorithm);
+				factories.put(algorithm, skf);
+			}
+			// PBEKeySpec copie le mot de passe et le sel, on efface donc sa copie du mot de passe dès que possible
+			PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, hashBytes * 8);
+			try {
+				return skf.generateSecret(spec).getEncoded();
+			} finally {
+				spec.clearPassword();
+			}
+		}
+
+	}
+
 	/**
 	 * Cette fonction compare 2 tableaux de byte mais <b>en temps constant</b> (en parcourant tout le tableau), dans le
 	 * but de se protéger contre les attaques temporelles, contrairement à {@link Arrays#equals(byte[], byte[])}.
@@ -5,20 +5,40 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.ImageWriter;
 import javax.imageio.metadata.IIOMetadata;
 import javax.imageio.metadata.IIOMetadataNode;
 import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -145,6 +165,303 @@ public final class GraphicsUtils {
 		return null;
 	}
 
+	/**
+	 * Cette classe décrit une image JPEG ou TIFF à partir de ses seuls en-têtes, sans la décoder.
+	 * Les informations absentes ou illisibles valent -1 pour les dimensions et null pour les autres.
+	 */
+	public static final class ImageInfo {
+		private final String format;
+		private final int width;
+		private final int height;
+		private final ExifOrientation orientation;
+		private final LocalDateTime captureDate;
+
+		public ImageInfo(String format, int width, int height, ExifOrientation orientation, LocalDateTime captureDate) {
+			this.format = format;
+			this.width = width;
+			this.height = height;
+			this.orientation = orientation;
+			this.captureDate = captureDate;
+		}
+		/** Le format de l'image, "jpeg" ou "tiff" */
+		public String getFormat() {
+			return this.format;
+		}
+		public int getWidth() {
+			return this.width;
+		}
+		public int getHeight() {
+			return this.height;
+		}
+		public ExifOrientation getOrientation() {
+			return this.orientation;
+		}
+		/** La date de prise de vue (DateTimeOriginal) ou, à défaut, la date de modification (DateTime) indiquée dans l'EXIF */
+		public LocalDateTime getCaptureDate() {
+			return this.captureDate;
+		}
+	}
+
+	/** La taille maximale d'un segment JPEG, qui suffit aussi pour les en-têtes TIFF usuels */
+	private static final int PROBE_BUFFER_SIZE = 0xFFFF + 4;
+	/** Un tampon par thread, réutilisé d'un fichier à l'autre lors de l'indexation d'une galerie */
+	private static final ThreadLocal<ByteBuffer> PROBE_BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(PROBE_BUFFER_SIZE));
+	/** Le format des dates EXIF, par exemple "2021:06:30 14:25:00" */
+	private static final DateTimeFormatter EXIF_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+	/**
+	 * Cette méthode lit les dimensions, l'orientation EXIF et la date de prise de vue d'une image JPEG ou TIFF.
+	 * <br />
+	 * Contrairement à {@link GraphicsUtils#getJPEGExifOrientation(ImageReader, int)}, ni ImageIO ni les arbres de
+	 * méta-données ne sont utilisés : seuls les en-têtes sont lus, segment par segment, via un {@link FileChannel}.
+	 * Pour un JPEG, la lecture s'arrête au premier segment SOF, qui donne les dimensions.
+	 *
+	 * @param file le fichier image à analyser
+	 * @return la description de l'image, ou null si ce n'est pas un fichier JPEG ou TIFF
+	 */
+	public static final ImageInfo probeImage(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = PROBE_BUFFERS.get();
+			if (read(channel, buffer, 0, 8) < 8)
+				return null;
+			int b0 = buffer.get(0) & 0xFF;
+			int b1 = buffer.get(1) & 0xFF;
+			if (b0 == 0xFF && b1 == 0xD8)
+				return probeJPEG(channel, buffer);
+			if ((b0 == 'I' && b1 == 'I') || (b0 == 'M' && b1 == 'M'))
+				return probeTIFF(channel, buffer);
+			return null;
+		}
+	}
+
+	/**
+	 * Cette méthode analyse en parallèle les images d'un dossier et de ses sous-dossiers, avec
+	 * {@link GraphicsUtils#probeImage(File)}. Les fichiers illisibles, ou qui ne sont ni JPEG ni TIFF, sont ignorés.
+	 *
+	 * @param folder le dossier à parcourir
+	 * @param parallelism le nombre de threads parcourant les dossiers et lisant les fichiers
+	 * @param filter un filtre optionnel des fichiers à analyser, par exemple selon leur extension
+	 * @param consumer le consommateur des résultats, appelé en parallèle depuis plusieurs threads
+	 * @return le nombre d'images trouvées
+	 */
+	public static final long probeImages(File folder, int parallelism, Predicate<File> filter, BiConsumer<File, ImageInfo> consumer) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return pool.invoke(new ProbeTask(folder, filter, consumer)).longValue();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/** Cette classe analyse les images d'un dossier, en créant une sous-tâche par sous-dossier */
+	private static final class ProbeTask extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 1L;
+
+		private final File folder;
+		private final Predicate<File> filter;
+		private final BiConsumer<File, ImageInfo> consumer;
+
+		public ProbeTask(File folder, Predicate<File> filter, BiConsumer<File, ImageInfo> consumer) {
+			this.folder = folder;
+			this.filter = filter;
+			this.consumer = consumer;
+		}
+
+		@Override
+		protected Long compute() {
+			File[] children = this.folder.listFiles();
+			if (children == null)
+				return 0L;
+			// Parcourir les sous-dossiers en parallèle, pendant l'analyse des fichiers de ce dossier
+			List<ProbeTask> subtasks = new ArrayList<>();
+			for (File child : children) {
+				if (child.isDirectory())
+					subtasks.add((ProbeTask) new ProbeTask(child, this.filter, this.consumer).fork());
+			}
+			long count = 0;
+			for (File child : children) {
+				if (child.isDirectory() || (this.filter != null && !this.filter.test(child)))
+					continue;
+				try {
+					ImageInfo info = probeImage(child);
+					if (info != null) {
+						this.consumer.accept(child, info);
+						count++;
+					}
+				} catch (IOException ex) {
+					// ignored, the file is not readable
+				}
+			}
+			for (ProbeTask subtask : subtasks) {
+				count += subtask.join().longValue();
+			}
+			return count;
+		}
+	}
+
+	/** Cette méthode parcourt les segments JPEG jusqu'au segment SOF (dimensions) en gardant l'EXIF du segment APP1 */
+	private static final ImageInfo probeJPEG(FileChannel channel, ByteBuffer buffer) throws IOException {
+		int width = -1;
+		int height = -1;
+		TIFFTags tags = null;
+		long position = 2;
+		while (read(channel, buffer, position, 4) == 4 && (buffer.get(0) & 0xFF) == 0xFF) {
+			int marker = buffer.get(1) & 0xFF;
+			if (marker == 0xFF) {
+				// Octet de remplissage avant un marqueur
+				position++;
+				continue;
+			}
+			if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+				// Marqueurs sans longueur (TEM, RSTn, SOI)
+				position += 2;
+				continue;
+			}
+			if (marker == 0xD9 || marker == 0xDA)
+				break; // EOI ou SOS, les données de l'image commencent
+			int length = buffer.getShort(2) & 0xFFFF;
+			if (length < 2)
+				break;
+			if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+				// SOFn : précision (1 octet), hauteur (2 octets), largeur (2 octets)
+				if (read(channel, buffer, position + 4, 5) == 5) {
+					height = buffer.getShort(1) & 0xFFFF;
+					width = buffer.getShort(3) & 0xFFFF;
+				}
+				break;
+			}
+			if (marker == 0xE1 && tags == null) {
+				// APP1 : "Exif\0\0" puis un en-tête TIFF
+				int n = read(channel, buffer, position + 4, length - 2);
+				if (n > 14 && buffer.get(0) == 'E' && buffer.get(1) == 'x' && buffer.get(2) == 'i' && buffer.get(3) == 'f' && buffer.get(4) == 0) {
+					ByteOrder order = buffer.get(6) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+					tags = readTIFFTags(buffer.order(order), 6, n, buffer.getInt(10) & 0xFFFFFFFFL);
+				}
+			}
+			position += 2 + length;
+		}
+		if (tags == null)
+			return new ImageInfo("jpeg", width, height, null, null);
+		return new ImageInfo("jpeg", width != -1 ? width : tags.pixelWidth, height != -1 ? height : tags.pixelHeight,
+				tags.orientation(), tags.captureDate());
+	}
+
+	/** Cette méthode lit l'IFD0 d'un fichier TIFF, situé au début du fichier ou, sinon, là où l'en-tête l'indique */
+	private static final ImageInfo probeTIFF(FileChannel channel, ByteBuffer buffer) throws IOException {
+		ByteOrder order = buffer.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		if (buffer.get(0) != buffer.get(1) || (buffer.order(order).getShort(2) & 0xFFFF) != 42)
+			return null;
+		long ifd0 = buffer.getInt(4) & 0xFFFFFFFFL;
+		if (ifd0 > Integer.MAX_VALUE)
+			return new ImageInfo("tiff", -1, -1, null, null);
+		// Les valeurs hors de la fenêtre lue (dates par exemple) seront simplement ignorées
+		long windowStart = ifd0 + 2 + 12 * 16 < PROBE_BUFFER_SIZE ? 0 : ifd0;
+		int n = read(channel, buffer, windowStart, PROBE_BUFFER_SIZE);
+		TIFFTags tags = readTIFFTags(buffer.order(order), (int) -windowStart, n, ifd0);
+		return new ImageInfo("tiff", tags.width != -1 ? tags.width : tags.pixelWidth, tags.height != -1 ? tags.height : tags.pixelHeight,
+				tags.orientation(), tags.captureDate());
+	}
+
+	/** Cette classe contient les quelques tags TIFF/EXIF utiles, lus dans l'IFD0 et l'IFD EXIF */
+	private static final class TIFFTags {
+		private int width = -1; // 0x0100 ImageWidth
+		private int height = -1; // 0x0101 ImageLength
+		private int orientation = -1; // 0x0112 Orientation
+		private String dateTime; // 0x0132 DateTime
+		private String dateTimeOriginal; // 0x9003 DateTimeOriginal
+		private int pixelWidth = -1; // 0xA002 PixelXDimension
+		private int pixelHeight = -1; // 0xA003 PixelYDimension
+
+		public ExifOrientation orientation() {
+			return ExifOrientation.valueOf(this.orientation);
+		}
+
+		public LocalDateTime captureDate() {
+			String value = this.dateTimeOriginal != null ? this.dateTimeOriginal : this.dateTime;
+			if (value == null)
+				return null;
+			try {
+				return LocalDateTime.parse(value, EXIF_DATE_FORMAT);
+			} catch (DateTimeParseException ex) {
+				return null; // "0000:00:00 00:00:00" par exemple
+			}
+		}
+	}
+
+	/**
+	 * Cette méthode lit les tags de l'IFD0 et de l'IFD EXIF d'un en-tête TIFF présent dans "buffer".
+	 *
+	 * @param buffer le tampon contenant l'en-tête TIFF, dont l'ordre des octets est déjà positionné
+	 * @param start la position dans "buffer" du début de l'en-tête TIFF, négative si "buffer" commence plus loin
+	 * @param limit le nombre d'octets lus dans "buffer"
+	 * @param ifd0 l'offset de l'IFD0, indiqué dans l'en-tête TIFF
+	 */
+	private static final TIFFTags readTIFFTags(ByteBuffer buffer, int start, int limit, long ifd0) {
+		TIFFTags tags = new TIFFTags();
+		long exifIFD = readIFD(buffer, start, limit, ifd0, tags);
+		if (exifIFD > 0)
+			readIFD(buffer, start, limit, exifIFD, tags);
+		return tags;
+	}
+
+	/** Cette méthode lit une IFD à l'offset "ifd" de l'en-tête TIFF et renvoie l'offset de l'IFD EXIF, ou 0 s'il n'y en a pas */
+	private static final long readIFD(ByteBuffer buffer, int start, int limit, long ifd, TIFFTags tags) {
+		long exifIFD = 0;
+		long index = start + ifd;
+		if (ifd < 8 || index < 0 || index + 2 > limit)
+			return 0;
+		int count = buffer.getShort((int) index) & 0xFFFF;
+		for (int i = 0; i < count; i++) {
+			int entry = (int) index + 2 + 12 * i;
+			if (entry + 12 > limit)
+				break;
+			// Une entrée contient le tag, le type, le nombre de valeurs et la valeur elle-même (ou son offset si > 4 octets)
+			int tag = buffer.getShort(entry) & 0xFFFF;
+			int type = buffer.getShort(entry + 2) & 0xFFFF;
+			switch (tag) {
+				case 0x0100: tags.width = readInteger(buffer, entry, type); break;
+				case 0x0101: tags.height = readInteger(buffer, entry, type); break;
+				case 0x0112: tags.orientation = readInteger(buffer, entry, type); break;
+				case 0x0132: tags.dateTime = readDate(buffer, start, limit, entry); break;
+				case 0x8769: exifIFD = buffer.getInt(entry + 8) & 0xFFFFFFFFL; break;
+				case 0x9003: tags.dateTimeOriginal = readDate(buffer, start, limit, entry); break;
+				case 0xA002: tags.pixelWidth = readInteger(buffer, entry, type); break;
+				case 0xA003: tags.pixelHeight = readInteger(buffer, entry, type); break;
+				default: break;
+			}
+		}
+		return exifIFD;
+	}
+
+	/** Cette méthode lit la valeur SHORT (type 3) ou LONG (type 4) d'une entrée d'IFD */
+	private static final int readInteger(ByteBuffer buffer, int entry, int type) {
+		return type == 4 ? buffer.getInt(entry + 8) : buffer.getShort(entry + 8) & 0xFFFF;
+	}
+
+	/** Cette méthode lit la date ASCII "yyyy:MM:dd HH:mm:ss" d'une entrée d'IFD, ou null si elle est hors du tampon */
+	private static final String readDate(ByteBuffer buffer, int start, int limit, int entry) {
+		long index = start + (buffer.getInt(entry + 8) & 0xFFFFFFFFL);
+		if ((buffer.getInt(entry + 4)) < 19 || index < 0 || index + 19 > limit)
+			return null;
+		byte[] bytes = new byte[19];
+		buffer.get((int) index, bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/** Cette méthode lit au plus "length" octets à partir de "position", au début de "buffer", et renvoie le nombre d'octets lus */
+	private static final int read(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+		buffer.clear().limit(Math.min(length, buffer.capacity()));
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position + total);
+			if (n < 0)
+				break;
+			total += n;
+		}
+		return total;
+	}
+
 	/**
 	 * Cette méthode pivote l'image "source" de "degrees" degrés dans le sens des aiguilles d'une montre
 	 */
@@ -165,6 +482,19 @@ public final class GraphicsUtils {
 		return result;
 	}
 
+	/**
+	 * Cette méthode retourne horizontalement l'image "source", comme dans un miroir
+	 */
+	public static final BufferedImage mirrorImage(BufferedImage source) {
+		boolean withAlpha = source.getTransparency() != Transparency.OPAQUE;
+		int type = withAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+		BufferedImage result = new BufferedImage(source.getWidth(), source.getHeight(), type);
+		Graphics2D resultGraphics = result.createGraphics();
+		resultGraphics.drawImage(source, source.getWidth(), 0, -source.getWidth(), source.getHeight(), null);
+		resultGraphics.dispose();
+		return result;
+	}
+
 	/**
 	 * Cette méthode redimensionne l'image "source" aux dimensions données, quitte à déformer l'image.
 	 */
@@ -218,6 +548,283 @@ public final class GraphicsUtils {
 	}
 
 
+	/** Les filtres disponibles pour {@link GraphicsUtils#resampleImage(BufferedImage, int, int, ResampleFilter)} */
+	public static enum ResampleFilter {
+		/** Moyenne des pixels couverts, rapide et sans artefact, idéale pour les fortes réductions */
+		AREA(0.5),
+		/** Filtre de Lanczos à 3 lobes, plus net, au prix de légers halos près des contours */
+		LANCZOS3(3.0);
+
+		private final double support;
+
+		private ResampleFilter(double support) {
+			this.support = support;
+		}
+		/** Le rayon du filtre, en pixels de l'image d'origine pour un agrandissement */
+		public double getSupport() {
+			return this.support;
+		}
+		/** Le poids du pixel situé à la distance "x" du centre */
+		public double weight(double x) {
+			double ax = Math.abs(x);
+			if (this == AREA)
+				return ax < 0.5 ? 1.0 : ax == 0.5 ? 0.5 : 0.0;
+			if (ax == 0.0)
+				return 1.0;
+			if (ax >= 3.0)
+				return 0.0;
+			double px = Math.PI * x;
+			return 3.0 * Math.sin(px) * Math.sin(px / 3.0) / (px * px);
+		}
+	}
+
+	/** La précision des poids entiers, suffisante pour des composantes sur 8 bits sans risque de dépassement */
+	private static final int FIXED_BITS = 14;
+	private static final int FIXED_HALF = 1 << (FIXED_BITS - 1);
+	/** Un tampon intermédiaire par thread appelant, réutilisé d'une image à l'autre */
+	private static final ThreadLocal<int[]> RESAMPLE_SCRATCH = new ThreadLocal<>();
+	/** La taille maximale (1M pixels, soit 4 Mo) du tampon conservé par thread, les tampons plus grands n'étant pas conservés */
+	private static final int RESAMPLE_SCRATCH_MAX = 1 << 20;
+
+	/**
+	 * Cette méthode redimensionne l'image "source" aux dimensions données, quitte à déformer l'image, en travaillant
+	 * directement sur les pixels (int[] ARGB) plutôt qu'avec {@link Graphics2D}.
+	 * <br />
+	 * Le redimensionnement est fait en 2 passes (horizontale puis verticale) avec des poids précalculés, chaque passe
+	 * étant découpée en bandes de lignes traitées en parallèle ({@link ForkJoinPool#commonPool()}). L'image
+	 * intermédiaire est conservée par thread pour être réutilisée au prochain appel, sauf si elle dépasse 1M pixels.
+	 *
+	 * @param source l'image à redimensionner
+	 * @param targetWidth la largeur souhaitée
+	 * @param targetHeight la hauteur souhaitée
+	 * @param filter le filtre à utiliser
+	 * @return une nouvelle image de type {@link BufferedImage#TYPE_INT_RGB} ou {@link BufferedImage#TYPE_INT_ARGB}
+	 */
+	public static final BufferedImage resampleImage(BufferedImage source, int targetWidth, int targetHeight, ResampleFilter filter) {
+		final int sw = source.getWidth();
+		final int sh = source.getHeight();
+		final int tw = targetWidth;
+		final int th = targetHeight;
+		final boolean withAlpha = source.getTransparency() != Transparency.OPAQUE;
+		final int[] src = getPixels(source);
+		BufferedImage result = new BufferedImage(tw, th, withAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		final int[] dst = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+
+		// Tampon intermédiaire (tw x sh), réutilisé si possible mais alloué à chaque appel s'il est trop grand pour être conservé
+		int[] scratch = RESAMPLE_SCRATCH.get();
+		if (scratch == null || scratch.length < tw * sh) {
+			scratch = new int[tw * sh];
+			if (scratch.length <= RESAMPLE_SCRATCH_MAX)
+				RESAMPLE_SCRATCH.set(scratch);
+		}
+		final int[] tmp = scratch;
+
+		// Passe horizontale : sw x sh => tw x sh
+		final Weights hw = new Weights(sw, tw, filter);
+		resampleRows(0, sh, (from, to) -> {
+			for (int y = from; y < to; y++) {
+				int srcRow = y * sw;
+				int dstRow = y * tw;
+				for (int x = 0; x < tw; x++) {
+					int start = srcRow + hw.starts[x];
+					int offset = x * hw.stride;
+					int n = hw.counts[x];
+					if (withAlpha) {
+						float a = 0, r = 0, g = 0, b = 0;
+						for (int k = 0; k < n; k++) {
+							int p = src[start + k];
+							float wa = hw.weights[offset + k] * (p >>> 24);
+							a += wa;
+							r += wa * ((p >> 16) & 0xFF);
+							g += wa * ((p >> 8) & 0xFF);
+							b += wa * (p & 0xFF);
+						}
+						tmp[dstRow + x] = pack(a, r, g, b);
+					} else {
+						// Image opaque : inutile de pondérer par l'alpha, et les poids entiers suffisent
+						int ir = 0, ig = 0, ib = 0;
+						for (int k = 0; k < n; k++) {
+							int p = src[start + k];
+							int w = hw.fixedWeights[offset + k];
+							ir += w * ((p >> 16) & 0xFF);
+							ig += w * ((p >> 8) & 0xFF);
+							ib += w * (p & 0xFF);
+						}
+						tmp[dstRow + x] = packFixed(ir, ig, ib);
+					}
+				}
+			}
+		});
+
+		// Passe verticale : tw x sh => tw x th, ligne par ligne pour parcourir la mémoire dans l'ordre
+		final Weights vw = new Weights(sh, th, filter);
+		resampleRows(0, th, (from, to) -> {
+			float[] acc = withAlpha ? new float[4 * tw] : null;
+			int[] fixedAcc = withAlpha ? null : new int[3 * tw];
+			for (int y = from; y < to; y++) {
+				if (withAlpha)
+					Arrays.fill(acc, 0f);
+				else
+					Arrays.fill(fixedAcc, 0);
+				int start = vw.starts[y];
+				int offset = y * vw.stride;
+				for (int k = 0, n = vw.counts[y]; k < n; k++) {
+					int srcRow = (start + k) * tw;
+					float w = vw.weights[offset + k];
+					if (withAlpha) {
+						for (int x = 0, i = 0; x < tw; x++, i += 4) {
+							int p = tmp[srcRow + x];
+							float wa = w * (p >>> 24);
+							acc[i] += wa;
+							acc[i + 1] += wa * ((p >> 16) & 0xFF);
+							acc[i + 2] += wa * ((p >> 8) & 0xFF);
+							acc[i + 3] += wa * (p & 0xFF);
+						}
+					} else {
+						int fw = vw.fixedWeights[offset + k];
+						for (int x = 0, i = 0; x < tw; x++, i += 3) {
+							int p = tmp[srcRow + x];
+							fixedAcc[i] += fw * ((p >> 16) & 0xFF);
+							fixedAcc[i + 1] += fw * ((p >> 8) & 0xFF);
+							fixedAcc[i + 2] += fw * (p & 0xFF);
+						}
+					}
+				}
+				int dstRow = y * tw;
+				if (withAlpha) {
+					for (int x = 0, i = 0; x < tw; x++, i += 4) {
+						dst[dstRow + x] = pack(acc[i], acc[i + 1], acc[i + 2], acc[i + 3]);
+					}
+				} else {
+					for (int x = 0, i = 0; x < tw; x++, i += 3) {
+						dst[dstRow + x] = packFixed(fixedAcc[i], fixedAcc[i + 1], fixedAcc[i + 2]) & 0xFFFFFF;
+					}
+				}
+			}
+		});
+		return result;
+	}
+
+	/** Cette méthode renvoie les pixels ARGB de l'image, sans copie si c'est possible */
+	private static final int[] getPixels(BufferedImage image) {
+		int type = image.getType();
+		WritableRaster raster = image.getRaster();
+		if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+				&& raster.getDataBuffer() instanceof DataBufferInt
+				&& raster.getDataBuffer().getOffset() == 0
+				&& raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+				&& raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+				&& ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == image.getWidth())
+			return ((DataBufferInt) raster.getDataBuffer()).getData();
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+	}
+
+	/** Cette méthode compose un pixel ARGB à partir des sommes pondérées (couleurs pré-multipliées par l'alpha) */
+	private static final int pack(float a, float r, float g, float b) {
+		if (a <= 0f)
+			return 0;
+		int ia = Math.min(255, Math.round(a));
+		int ir = Math.max(0, Math.min(255, Math.round(r / a)));
+		int ig = Math.max(0, Math.min(255, Math.round(g / a)));
+		int ib = Math.max(0, Math.min(255, Math.round(b / a)));
+		return ia << 24 | ir << 16 | ig << 8 | ib;
+	}
+
+	/** Cette méthode compose un pixel opaque à partir des sommes pondérées par les poids entiers (virgule fixe) */
+	private static final int packFixed(int r, int g, int b) {
+		int ir = Math.max(0, Math.min(255, (r + FIXED_HALF) >> FIXED_BITS));
+		int ig = Math.max(0, Math.min(255, (g + FIXED_HALF) >> FIXED_BITS));
+		int ib = Math.max(0, Math.min(255, (b + FIXED_HALF) >> FIXED_BITS));
+		return 0xFF000000 | ir << 16 | ig << 8 | ib;
+	}
+
+	/** Cette classe contient, pour chaque pixel de destination, le premier pixel source et les poids normalisés à appliquer */
+	private static final class Weights {
+		private final int[] starts;
+		private final int[] counts;
+		private final float[] weights;
+		/** Les mêmes poids, en virgule fixe sur {@link GraphicsUtils#FIXED_BITS} bits */
+		private final int[] fixedWeights;
+		private final int stride;
+
+		public Weights(int sourceSize, int targetSize, ResampleFilter filter) {
+			double scale = (double) sourceSize / targetSize;
+			double filterScale = Math.max(1.0, scale);
+			double support = filter.getSupport() * filterScale;
+			this.stride = (int) Math.ceil(support) * 2 + 2;
+			this.starts = new int[targetSize];
+			this.counts = new int[targetSize];
+			this.weights = new float[targetSize * this.stride];
+			this.fixedWeights = new int[targetSize * this.stride];
+			for (int i = 0; i < targetSize; i++) {
+				double center = (i + 0.5) * scale;
+				int left = Math.max(0, (int) Math.floor(center - support));
+				int right = Math.min(sourceSize, (int) Math.ceil(center + support));
+				int offset = i * this.stride;
+				double sum = 0;
+				int count = 0;
+				for (int j = left; j < right && count < this.stride; j++) {
+					double w = filter.weight((j + 0.5 - center) / filterScale);
+					this.weights[offset + count++] = (float) w;
+					sum += w;
+				}
+				if (sum == 0) {
+					// Cas limite (agrandissement avec AREA) : prendre le pixel le plus proche
+					left = Math.min(sourceSize - 1, (int) center);
+					count = 1;
+					this.weights[offset] = 1f;
+					sum = 1;
+				}
+				for (int k = 0; k < count; k++) {
+					this.weights[offset + k] /= sum;
+					this.fixedWeights[offset + k] = Math.round(this.weights[offset + k] * (1 << FIXED_BITS));
+				}
+				this.starts[i] = left;
+				this.counts[i] = count;
+			}
+		}
+	}
+
+	/** Cette interface traite les lignes [from, to[ d'une passe de redimensionnement */
+	@FunctionalInterface
+	private static interface RowRange {
+		public void run(int from, int to);
+	}
+
+	/** Cette méthode découpe les lignes [from, to[ en bandes, traitées en parallèle */
+	private static final void resampleRows(int from, int to, RowRange range) {
+		int threshold = Math.max(16, (to - from) / (ForkJoinPool.getCommonPoolParallelism() * 4));
+		ForkJoinPool.commonPool().invoke(new RowBands(from, to, threshold, range));
+	}
+
+	/** Cette classe traite une bande de lignes, en la coupant en 2 tant qu'elle dépasse le seuil */
+	private static final class RowBands extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final int threshold;
+		private final RowRange range;
+
+		public RowBands(int from, int to, int threshold, RowRange range) {
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+			this.range = range;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= this.threshold) {
+				this.range.run(this.from, this.to);
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new RowBands(this.from, middle, this.threshold, this.range), new RowBands(middle, this.to, this.threshold, this.range));
+		}
+	}
+
+
 	/**
 	 * Cette méthode redimensionne l'image "source" afin qu'elle tienne dans le rectangle donnée, en conservant les proportions.
 	 */
@@ -234,7 +841,7 @@ public final class GraphicsUtils {
 		}
 		BufferedImage result = source;
 		if (width != source.getWidth() || height != source.getHeight()) {
-			result = scaleImage(source, width, height, false);
+			result = resampleImage(source, width, height, ResampleFilter.LANCZOS3);
 			result.flush();
 		}
 		return result;
@@ -246,24 +853,86 @@ public final class GraphicsUtils {
 	 */
 	public static final byte[] scaleImageWithMaxDimensions(File file, Integer targetWidth, Integer targetHeight) throws IOException {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		writeThumbnail(file, targetWidth, targetHeight, baos);
+		return baos.toByteArray();
+	}
+
+
+	/**
+	 * Cette méthode écrit dans "output" une miniature du fichier passé en paramètre, dans le même format et en
+	 * conservant les proportions d'origine.
+	 * <br />
+	 * L'image est décodée directement à une résolution réduite ({@link ImageReadParam#setSourceSubsampling}), en
+	 * gardant au moins le double des dimensions souhaitées pour la qualité de la réduction finale, et la miniature est
+	 * encodée au fil de l'eau dans "output", sans tampon intermédiaire ni fichier temporaire.
+	 *
+	 * @param file le fichier image à réduire
+	 * @param targetWidth la largeur maximale de la miniature, ou null pour ne pas limiter la largeur
+	 * @param targetHeight la hauteur maximale de la miniature, ou null pour ne pas limiter la hauteur
+	 * @param output le flux recevant la miniature encodée, qui n'est pas fermé par cette méthode
+	 */
+	public static final void writeThumbnail(File file, Integer targetWidth, Integer targetHeight, OutputStream output) throws IOException {
+		writeThumbnail(file, targetWidth, targetHeight, false, output);
+	}
+
+
+	/**
+	 * Cette méthode écrit dans "output" une miniature du fichier passé en paramètre, comme
+	 * {@link GraphicsUtils#writeThumbnail(File, Integer, Integer, OutputStream)}, mais en appliquant si demandé
+	 * l'orientation EXIF des images JPEG (l'orientation est alors perdue, puisque les méta-données ne sont pas recopiées).
+	 *
+	 * @param file le fichier image à réduire
+	 * @param targetWidth la largeur maximale de la miniature, ou null pour ne pas limiter la largeur
+	 * @param targetHeight la hauteur maximale de la miniature, ou null pour ne pas limiter la hauteur
+	 * @param autoOrient true pour retourner et pivoter la miniature selon l'orientation EXIF de l'image
+	 * @param output le flux recevant la miniature encodée, qui n'est pas fermé par cette méthode
+	 */
+	public static final void writeThumbnail(File file, Integer targetWidth, Integer targetHeight, boolean autoOrient, OutputStream output) throws IOException {
 		try (ImageInputStream inputStream = ImageIO.createImageInputStream(file);
-				ImageOutputStream outputStream = ImageIO.createImageOutputStream(baos)) {
+				ImageOutputStream outputStream = new MemoryCacheImageOutputStream(output)) {
 
+			if (inputStream == null)
+				throw new IOException("Unable to read " + file.getName());
 			Iterator<ImageReader> readers = ImageIO.getImageReaders(inputStream);
+			if (! readers.hasNext())
+				throw new IOException("Unsupported image format for " + file.getName());
 			ImageReader reader = readers.next();
-			reader.setInput(inputStream);
-
 			ImageWriter writer = ImageIO.getImageWriter(reader);
-			writer.setOutput(outputStream);
-
-			BufferedImage image = reader.read(0);
-			image = scaleImageWithMaxDimensions(image, targetWidth, targetHeight);
-			writer.write(image);
-			reader.setInput(null);
-			writer.setOutput(null);
+			try {
+				reader.setInput(inputStream, true, true);
+				writer.setOutput(outputStream);
+
+				// Une rotation de 90° ou 270° échange la largeur et la hauteur souhaitées de l'image d'origine
+				ImageInfo info = autoOrient ? probeImage(file) : null;
+				ExifOrientation orientation = info == null ? null : info.getOrientation();
+				if (orientation != null && orientation.getRotationCW() % 180 != 0) {
+					Integer w = targetWidth;
+					targetWidth = targetHeight;
+					targetHeight = w;
+				}
 
+				// Décoder 1 pixel sur "subsampling" dans chaque direction, si l'image est assez grande
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				int ratio = Math.min(targetWidth == null ? Integer.MAX_VALUE : width / Math.max(1, targetWidth),
+						targetHeight == null ? Integer.MAX_VALUE : height / Math.max(1, targetHeight));
+				int subsampling = ratio == Integer.MAX_VALUE ? 1 : Math.max(1, ratio / 2);
+				ImageReadParam param = reader.getDefaultReadParam();
+				if (subsampling > 1)
+					param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+				BufferedImage image = reader.read(0, param);
+				image = scaleImageWithMaxDimensions(image, targetWidth, targetHeight);
+				if (orientation != null && orientation.getMirrorH())
+					image = mirrorImage(image);
+				if (orientation != null)
+					image = rotateImage(image, orientation.getRotationCW());
+				writer.write(image);
+			} finally {
+				reader.dispose();
+				writer.dispose();
+			}
 		}
-		return baos.toByteArray();
 	}
 
 }
@@ -0,0 +1,162 @@
+package fr.techgp.nimbus.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import fr.techgp.nimbus.utils.CryptoUtils.PasswordHasher;
+import fr.techgp.nimbus.utils.CryptoUtils.StoredPassword;
+
+/**
+ * Cette classe exécute le hachage et la vérification des mots de passe ({@link CryptoUtils#hashPassword(String)} et
+ * {@link CryptoUtils#validatePassword(String, String, String, Consumer)}) sur un pool de threads dédié et borné.
+ * <br />
+ * Lors d'un afflux de connexions, les threads de traitement des requêtes ne sont donc pas tous bloqués par le calcul
+ * PBKDF2 et, une fois la file d'attente pleine, les demandes supplémentaires sont rejetées immédiatement avec une
+ * {@link RejectedExecutionException}, que l'application peut transformer en "503 Service Unavailable".
+ * <pre>
+ * PasswordService passwords = new PasswordService(2, 100);
+ * passwords.validate(password, user.hash, null, (newHash) -> user.hash = newHash).thenAccept((valid) -> ...);
+ * </pre>
+ */
+public class PasswordService implements AutoCloseable {
+
+	private final PasswordHasher hasher = PasswordHasher.DEFAULT;
+	private final ThreadPoolExecutor executor;
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder latencySum = new LongAdder();
+	private final AtomicLong latencyMax = new AtomicLong();
+
+	/**
+	 * Ce constructeur prépare le pool de threads dédié.
+	 *
+	 * @param threads le nombre de threads calculant les hash en parallèle (idéalement, moins que le nombre de coeurs)
+	 * @param queueLimit le nombre maximal de demandes en attente, au-delà duquel les demandes sont rejetées
+	 */
+	public PasswordService(int threads, int queueLimit) {
+		AtomicInteger counter = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueLimit), (r) -> {
+			Thread t = new Thread(r, "nimbus-password-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Cette méthode calcule en arrière-plan l'empreinte du mot de passe donné, comme {@link CryptoUtils#hashPassword(String)}.
+	 *
+	 * @param password le mot de passe à hasher pour être stocké
+	 * @return le hash à stocker, ou une erreur {@link RejectedExecutionException} si la file d'attente est pleine
+	 */
+	public CompletableFuture<String> hash(final String password) {
+		return this.submit(() -> this.hasher.hash(password).toString());
+	}
+
+	/**
+	 * Cette méthode vérifie en arrière-plan le mot de passe donné, comme {@link CryptoUtils#validatePassword(String, String, String, Consumer)}.
+	 * <br />
+	 * Si le mot de passe est valide mais que "storedPassword" utilise des paramètres dépassés (algorithme, nombre
+	 * d'itérations ou taille du sel), un nouveau hash est calculé et transmis à "rehashHandler" pour être stocké.
+	 *
+	 * @param testedPassword le mot de passe à tester
+	 * @param storedPassword le hash stocké, de la forme iterations:hex(salt):hex(hash)
+	 * @param algorithm l'algorithme utilisé par "storedPassword", ou null pour l'algo actuel {@link CryptoUtils#PASSWORD_HASH_ALGORITHM}
+	 * @param rehashHandler un gestionnaire optionnel recevant le nouveau hash, quand "storedPassword" est dépassé
+	 * @return true si testedPassword est le bon mot de passe, ou une erreur {@link RejectedExecutionException} si la file d'attente est pleine
+	 */
+	public CompletableFuture<Boolean> validate(final String testedPassword, final String storedPassword, final String algorithm, final Consumer<String> rehashHandler) {
+		final StoredPassword stored;
+		try {
+			stored = StoredPassword.parse(storedPassword, algorithm);
+		} catch (RuntimeException ex) {
+			return CompletableFuture.failedFuture(ex);
+		}
+		return this.validate(testedPassword, stored, rehashHandler);
+	}
+
+	/**
+	 * Cette méthode vérifie en arrière-plan le mot de passe donné, déjà analysé (par exemple, mis en cache avec l'utilisateur).
+	 *
+	 * @param testedPassword le mot de passe à tester
+	 * @param storedPassword le mot de passe stocké, analysé avec {@link StoredPassword#parse(String, String)}
+	 * @param rehashHandler un gestionnaire optionnel recevant le nouveau hash, quand "storedPassword" est dépassé
+	 * @return true si testedPassword est le bon mot de passe, ou une erreur {@link RejectedExecutionException} si la file d'attente est pleine
+	 */
+	public CompletableFuture<Boolean> validate(final String testedPassword, final StoredPassword storedPassword, final Consumer<String> rehashHandler) {
+		return this.submit(() -> {
+			boolean valid = this.hasher.validate(testedPassword, storedPassword);
+			if (valid && rehashHandler != null && storedPassword.isOutdated())
+				rehashHandler.accept(this.hasher.hash(testedPassword).toString());
+			return valid;
+		});
+	}
+
+	/** Cette méthode indique le nombre de demandes en attente d'un thread */
+	public int queueDepth() {
+		return this.executor.getQueue().size();
+	}
+
+	/** Cette méthode indique le nombre de demandes en cours de calcul */
+	public int activeCount() {
+		return this.executor.getActiveCount();
+	}
+
+	/** Cette méthode indique le nombre de demandes terminées */
+	public long completedCount() {
+		return this.completed.sum();
+	}
+
+	/** Cette méthode indique le nombre de demandes rejetées car la file d'attente était pleine */
+	public long rejectedCount() {
+		return this.rejected.sum();
+	}
+
+	/** Cette méthode indique la durée moyenne d'une demande, attente comprise, en millisecondes */
+	public long meanLatencyMillis() {
+		long count = this.completed.sum();
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(this.latencySum.sum() / count);
+	}
+
+	/** Cette méthode indique la durée maximale d'une demande, attente comprise, en millisecondes */
+	public long maxLatencyMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.latencyMax.get());
+	}
+
+	/** Cette méthode arrête le pool de threads, après avoir terminé les demandes en attente */
+	@Override
+	public void close() {
+		this.executor.shutdown();
+	}
+
+	private <T> CompletableFuture<T> submit(final Callable<T> task) {
+		final long start = System.nanoTime();
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		try {
+			this.executor.execute(() -> {
+				try {
+					result.complete(task.call());
+				} catch (Exception ex) {
+					result.completeExceptionally(ex);
+				} finally {
+					long latency = System.nanoTime() - start;
+					this.completed.increment();
+					this.latencySum.add(latency);
+					this.latencyMax.accumulateAndGet(latency, Math::max);
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			this.rejected.increment();
+			result.completeExceptionally(ex);
+		}
+		return result;
+	}
+
+}
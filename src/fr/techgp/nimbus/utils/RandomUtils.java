@@ -3,6 +3,7 @@ package fr.techgp.nimbus.utils;
 import java.security.InvalidParameterException;
 import java.security.SecureRandom;
 import java.util.Random;
+import java.util.function.Supplier;
 
 public final class RandomUtils {
 
@@ -10,6 +11,104 @@ public final class RandomUtils {
 		//
 	}
 
+	/** Les caractères [a-z], [A-Z] et [0-9], dans l'ordre utilisé par {@link RandomUtils#randomAscii(Random, int, boolean, boolean, boolean, char[])} */
+	public static final String ALPHANUMERIC = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+	/**
+	 * Cette classe génère des chaines de caractères aléatoires de taille fixe, à partir d'un alphabet donné.
+	 * <br />
+	 * Chaque thread dispose de son propre générateur aléatoire, dont les octets sont tirés par blocs puis convertis en
+	 * caractères à l'aide d'une table précalculée. Les octets qui introduiraient un biais (au-delà du plus grand multiple
+	 * de la taille de l'alphabet) sont rejetés. Il n'y a donc ni contention entre les threads, ni appel au générateur
+	 * pour chaque caractère.
+	 */
+	public static final class TokenGenerator {
+
+		/** La taille des blocs d'octets aléatoires tirés en une fois */
+		private static final int BLOCK_SIZE = 256;
+
+		/** Le caractère correspondant à chaque valeur d'octet, ou 0 si l'octet doit être rejeté */
+		private final char[] table = new char[256];
+		private final int length;
+		private final ThreadLocal<Block> blocks;
+
+		public TokenGenerator(String alphabet, int length, Supplier<Random> randomSupplier) {
+			if (alphabet.isEmpty() || alphabet.length() > 256)
+				throw new InvalidParameterException("Alphabet size " + alphabet.length() + " is invalid.");
+			if (length < 0)
+				throw new InvalidParameterException("String length " + length + " is invalid.");
+			final int limit = 256 - 256 % alphabet.length();
+			for (int b = 0; b < limit; b++) {
+				char c = alphabet.charAt(b % alphabet.length());
+				if (c == 0)
+					throw new InvalidParameterException("Alphabet can not contain character 0.");
+				this.table[b] = c;
+			}
+			this.length = length;
+			this.blocks = ThreadLocal.withInitial(() -> new Block(randomSupplier.get()));
+		}
+
+		/** Cette méthode indique la taille des chaines de caractères générées */
+		public int length() {
+			return this.length;
+		}
+
+		/** Cette méthode génère une nouvelle chaine de caractères aléatoires */
+		public String next() {
+			final char[] result = new char[this.length];
+			this.next(result, 0);
+			return new String(result);
+		}
+
+		/**
+		 * Cette méthode génère des caractères aléatoires dans un tableau fourni par l'appelant.
+		 *
+		 * @param dst le tableau de caractères à remplir, d'au moins {@link TokenGenerator#length()} caractères après "dstOffset"
+		 * @param dstOffset la position du premier caractère à écrire dans "dst"
+		 */
+		public void next(char[] dst, int dstOffset) {
+			final Block block = this.blocks.get();
+			final byte[] bytes = block.bytes;
+			int position = block.position;
+			int i = dstOffset;
+			final int end = dstOffset + this.length;
+			while (i < end) {
+				if (position == BLOCK_SIZE) {
+					block.random.nextBytes(bytes);
+					position = 0;
+				}
+				char c = this.table[bytes[position++] & 0xFF];
+				if (c != 0)
+					dst[i++] = c;
+			}
+			block.position = position;
+		}
+
+		/** Cette classe contient le générateur et le bloc d'octets aléatoires en cours d'utilisation d'un thread */
+		private static final class Block {
+			private final Random random;
+			private final byte[] bytes = new byte[BLOCK_SIZE];
+			private int position = BLOCK_SIZE;
+
+			public Block(Random random) {
+				this.random = random;
+			}
+		}
+
+	}
+
+	/**
+	 * Cette méthode crée un générateur de chaines de caractères aléatoires, utilisant un {@link SecureRandom} par thread.
+	 * Les chaines générées restent donc imprévisibles et peuvent servir d'identifiants de session par exemple.
+	 *
+	 * @param alphabet les caractères autorisés, par exemple {@link RandomUtils#ALPHANUMERIC}
+	 * @param length la taille des chaines de caractères à générer
+	 * @return un générateur utilisable depuis plusieurs threads
+	 */
+	public static final TokenGenerator tokenGenerator(String alphabet, int length) {
+		return new TokenGenerator(alphabet, length, SecureRandom::new);
+	}
+
 	/**
 	 * Cette méthode retourne un tableau de "length" octets aléatoires en utilisant le générateur ({@link Random} ou {@link SecureRandom}).
 	 *
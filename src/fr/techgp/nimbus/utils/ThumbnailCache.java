@@ -0,0 +1,208 @@
+package fr.techgp.nimbus.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cette classe conserve sur disque les miniatures créées par {@link GraphicsUtils#writeThumbnail(File, Integer, Integer, boolean, OutputStream)}.
+ * <br />
+ * Chaque miniature est identifiée par une clef calculée à partir du chemin, de la date de modification et de la taille
+ * de l'image d'origine, des dimensions souhaitées et de l'application ou non de l'orientation EXIF. Une image modifiée
+ * obtient donc une nouvelle clef, et l'ancienne miniature finit par être supprimée lorsque la taille totale du cache
+ * dépasse la limite, en commençant par les miniatures les moins récemment utilisées.
+ * <br />
+ * Les demandes simultanées d'une même miniature sont regroupées : elle n'est calculée qu'une fois.
+ * <pre>
+ * ThumbnailCache cache = new ThumbnailCache(new File("thumbnails"), 100 * 1024 * 1024, new ThumbnailService(2, 100));
+ * router.get("/thumbnail", (req, res) -> Render.thumbnail(file, 200, 200, true, cache));
+ * </pre>
+ */
+public class ThumbnailCache {
+
+	private final File folder;
+	private final long maxBytes;
+	private final ThumbnailService service;
+	/** La taille de chaque miniature, par clef, de la moins récemment utilisée à la plus récemment utilisée */
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	/** Les miniatures en cours de calcul, par clef, pour regrouper les demandes simultanées */
+	private final Map<String, CompletableFuture<File>> pending = new ConcurrentHashMap<>();
+	private long totalBytes = 0;
+
+	/**
+	 * Ce constructeur prépare le cache, en indexant les miniatures déjà présentes dans le dossier.
+	 *
+	 * @param folder le dossier contenant les miniatures, créé si besoin
+	 * @param maxBytes la taille totale maximale des miniatures, au-delà de laquelle les moins récemment utilisées sont supprimées
+	 * @param service le pool de threads calculant les miniatures, ou null pour les calculer dans le thread appelant
+	 */
+	public ThumbnailCache(File folder, long maxBytes, ThumbnailService service) {
+		this.folder = folder;
+		this.maxBytes = maxBytes;
+		this.service = service;
+		try {
+			Files.createDirectories(folder.toPath());
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		// Au démarrage, la date de modification sert de date de dernière utilisation
+		File[] files = folder.listFiles();
+		if (files != null) {
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+			for (File file : files) {
+				if (file.getName().endsWith(".tmp"))
+					file.delete();
+				else
+					this.add(file.getName(), file.length());
+			}
+		}
+	}
+
+	/** Cette méthode indique le dossier contenant les miniatures */
+	public File getFolder() {
+		return this.folder;
+	}
+
+	/** Cette méthode indique la taille totale actuelle des miniatures, en octets */
+	public synchronized long getTotalBytes() {
+		return this.totalBytes;
+	}
+
+	/**
+	 * Cette méthode calcule la clef identifiant la miniature demandée, sans la créer. Elle peut servir d'ETag.
+	 *
+	 * @param file le fichier image d'origine
+	 * @param targetWidth la largeur maximale de la miniature, ou null pour ne pas limiter la largeur
+	 * @param targetHeight la hauteur maximale de la miniature, ou null pour ne pas limiter la hauteur
+	 * @param autoOrient true pour appliquer l'orientation EXIF de l'image
+	 * @return la clef de la miniature, qui est aussi le nom de son fichier dans le cache
+	 */
+	public String key(File file, Integer targetWidth, Integer targetHeight, boolean autoOrient) {
+		try {
+			String value = file.getAbsolutePath() + "?" + file.lastModified() + "&" + file.length()
+					+ "&" + targetWidth + "x" + targetHeight + "&" + autoOrient;
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			return ConversionUtils.bytes2hex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Cette méthode renvoie le fichier de la miniature demandée, en la calculant si elle n'est pas encore dans le cache.
+	 *
+	 * @param file le fichier image d'origine
+	 * @param targetWidth la largeur maximale de la miniature, ou null pour ne pas limiter la largeur
+	 * @param targetHeight la hauteur maximale de la miniature, ou null pour ne pas limiter la hauteur
+	 * @param autoOrient true pour appliquer l'orientation EXIF de l'image
+	 * @return le fichier de la miniature, dans le même format que l'image d'origine
+	 * @throws IOException si l'image ne peut pas être lue
+	 * @throws java.util.concurrent.RejectedExecutionException si la file d'attente du pool est pleine
+	 */
+	public File get(File file, Integer targetWidth, Integer targetHeight, boolean autoOrient) throws IOException {
+		String key = this.key(file, targetWidth, targetHeight, autoOrient);
+		File thumbnail = new File(this.folder, key);
+		boolean cached;
+		synchronized (this) {
+			// "get" marque aussi la miniature comme la plus récemment utilisée
+			cached = this.entries.get(key) != null;
+		}
+		if (cached && thumbnail.exists())
+			return thumbnail;
+
+		// Le premier demandeur calcule la miniature, les suivants attendent le même résultat
+		CompletableFuture<File> future = new CompletableFuture<>();
+		CompletableFuture<File> existing = this.pending.putIfAbsent(key, future);
+		if (existing == null) {
+			try {
+				this.create(file, targetWidth, targetHeight, autoOrient, key, thumbnail);
+				future.complete(thumbnail);
+			} catch (IOException | RuntimeException ex) {
+				future.completeExceptionally(ex);
+			} finally {
+				this.pending.remove(key, future);
+			}
+		} else {
+			future = existing;
+		}
+
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException(ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException)
+				throw (IOException) ex.getCause();
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	private void create(File file, Integer targetWidth, Integer targetHeight, boolean autoOrient, String key, File thumbnail) throws IOException {
+		// Écrire un fichier temporaire puis le renommer, pour ne jamais servir une miniature incomplète
+		File tmp = new File(this.folder, key + ".tmp");
+		try {
+			if (this.service == null) {
+				try (OutputStream os = new FileOutputStream(tmp)) {
+					GraphicsUtils.writeThumbnail(file, targetWidth, targetHeight, autoOrient, os);
+				}
+			} else {
+				this.service.write(file, targetWidth, targetHeight, autoOrient, () -> {
+					try {
+						return new FileOutputStream(tmp);
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}).get();
+			}
+			Files.move(tmp.toPath(), thumbnail.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException(ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException)
+				throw (IOException) ex.getCause();
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+			throw new RuntimeException(ex.getCause());
+		} finally {
+			tmp.delete();
+		}
+		synchronized (this) {
+			this.add(key, thumbnail.length());
+		}
+	}
+
+	/** Cette méthode ajoute une miniature à l'index, puis supprime les moins récemment utilisées si la limite est dépassée */
+	private void add(String key, long length) {
+		Long previous = this.entries.put(key, length);
+		this.totalBytes += length - (previous == null ? 0 : previous.longValue());
+		Iterator<Map.Entry<String, Long>> iterator = this.entries.entrySet().iterator();
+		while (this.totalBytes > this.maxBytes && iterator.hasNext()) {
+			Map.Entry<String, Long> eldest = iterator.next();
+			if (eldest.getKey().equals(key))
+				continue;
+			new File(this.folder, eldest.getKey()).delete();
+			this.totalBytes -= eldest.getValue().longValue();
+			iterator.remove();
+		}
+	}
+
+}
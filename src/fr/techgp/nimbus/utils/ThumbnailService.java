@@ -0,0 +1,104 @@
+package fr.techgp.nimbus.utils;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Cette classe exécute la création des miniatures ({@link GraphicsUtils#writeThumbnail(File, Integer, Integer, OutputStream)})
+ * sur un pool de threads dédié et borné.
+ * <br />
+ * Le nombre d'images décodées en même temps, et donc la mémoire utilisée, est ainsi limité, même lors de l'affichage
+ * d'une galerie de nombreuses photos. Une fois la file d'attente pleine, les demandes supplémentaires sont rejetées
+ * immédiatement avec une {@link RejectedExecutionException}, que l'application peut transformer en "503 Service Unavailable".
+ * <pre>
+ * ThumbnailService thumbnails = new ThumbnailService(2, 100);
+ * router.get("/thumbnail", (req, res) -> Render.thumbnail(file, 200, 200, thumbnails));
+ * </pre>
+ */
+public class ThumbnailService implements AutoCloseable {
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Ce constructeur prépare le pool de threads dédié.
+	 *
+	 * @param threads le nombre de miniatures calculées en parallèle
+	 * @param queueLimit le nombre maximal de demandes en attente, au-delà duquel les demandes sont rejetées
+	 */
+	public ThumbnailService(int threads, int queueLimit) {
+		AtomicInteger counter = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueLimit), (r) -> {
+			Thread t = new Thread(r, "nimbus-thumbnail-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Cette méthode crée en arrière-plan une miniature du fichier passé en paramètre et l'écrit dans le flux fourni.
+	 * <br />
+	 * Le flux n'est demandé à "output" qu'au démarrage du calcul, puis fermé à la fin. Une demande rejetée n'y touche
+	 * donc jamais, ce qui permet encore de répondre autre chose.
+	 *
+	 * @param file le fichier image à réduire
+	 * @param targetWidth la largeur maximale de la miniature, ou null pour ne pas limiter la largeur
+	 * @param targetHeight la hauteur maximale de la miniature, ou null pour ne pas limiter la hauteur
+	 * @param output le fournisseur du flux recevant la miniature encodée
+	 * @return la fin du calcul, ou une erreur {@link RejectedExecutionException} si la file d'attente est pleine
+	 */
+	public CompletableFuture<Void> write(final File file, final Integer targetWidth, final Integer targetHeight, final Supplier<OutputStream> output) {
+		return this.write(file, targetWidth, targetHeight, false, output);
+	}
+
+	/**
+	 * Cette méthode crée en arrière-plan une miniature du fichier passé en paramètre, en appliquant si demandé son
+	 * orientation EXIF, et l'écrit dans le flux fourni.
+	 *
+	 * @param file le fichier image à réduire
+	 * @param targetWidth la largeur maximale de la miniature, ou null pour ne pas limiter la largeur
+	 * @param targetHeight la hauteur maximale de la miniature, ou null pour ne pas limiter la hauteur
+	 * @param autoOrient true pour retourner et pivoter la miniature selon l'orientation EXIF de l'image
+	 * @param output le fournisseur du flux recevant la miniature encodée
+	 * @return la fin du calcul, ou une erreur {@link RejectedExecutionException} si la file d'attente est pleine
+	 */
+	public CompletableFuture<Void> write(final File file, final Integer targetWidth, final Integer targetHeight, final boolean autoOrient, final Supplier<OutputStream> output) {
+		final CompletableFuture<Void> result = new CompletableFuture<>();
+		try {
+			this.executor.execute(() -> {
+				try (OutputStream os = output.get()) {
+					GraphicsUtils.writeThumbnail(file, targetWidth, targetHeight, autoOrient, os);
+					result.complete(null);
+				} catch (Exception ex) {
+					result.completeExceptionally(ex);
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			result.completeExceptionally(ex);
+		}
+		return result;
+	}
+
+	/** Cette méthode indique le nombre de demandes en attente d'un thread */
+	public int queueDepth() {
+		return this.executor.getQueue().size();
+	}
+
+	/** Cette méthode indique le nombre de demandes en cours de calcul */
+	public int activeCount() {
+		return this.executor.getActiveCount();
+	}
+
+	/** Cette méthode arrête le pool de threads, après avoir terminé les demandes en attente */
+	@Override
+	public void close() {
+		this.executor.shutdown();
+	}
+
+}
@@ -1,6 +1,12 @@
 package fr.techgp.nimbus.utils.json;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.text.ParseException;
+import java.util.Arrays;
 
 import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamStartContext;
 import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamRenderer;
@@ -15,6 +21,46 @@ public final class JSON {
 		return new JSONDecoder().decode(json);
 	}
 
+	public static final JSONElement decode(char[] json) throws ParseException {
+		return new JSONDecoder().decode(json, 0, json.length);
+	}
+
+	public static final JSONElement decode(byte[] utf8) throws ParseException {
+		return new JSONDecoder().decode(utf8, 0, utf8.length);
+	}
+
+	public static final JSONElement decodeLazy(String json) throws ParseException {
+		return new JSONLazyDecoder().decode(json);
+	}
+
+	public static final JSONElement decodeLazy(byte[] utf8) throws ParseException {
+		return new JSONLazyDecoder().decode(utf8, 0, utf8.length);
+	}
+
+	public static final JSONElement extract(String json, String path) throws ParseException {
+		return new JSONLazyDecoder().extract(json, path);
+	}
+
+	public static final JSONElement extract(byte[] utf8, String path) throws ParseException {
+		return new JSONLazyDecoder().extract(utf8, 0, utf8.length, path);
+	}
+
+	public static final JSONTape tape(String json) throws ParseException {
+		return JSONTape.decode(json);
+	}
+
+	public static final JSONTape tape(byte[] utf8) throws ParseException {
+		return JSONTape.decode(utf8, 0, utf8.length);
+	}
+
+	public static final JSONReader reader(Reader reader) {
+		return new JSONReader(reader);
+	}
+
+	public static final JSONReader reader(InputStream utf8) {
+		return new JSONReader(utf8);
+	}
+
 	public static final JSONStreamStartContext stream(JSONStreamRenderer renderer) {
 		return new JSONStreamStartContext(renderer);
 	}
@@ -23,6 +69,14 @@ public final class JSON {
 		return new JSONEncoder().encode(element);
 	}
 
+	public static final void encode(JSONElement element, Appendable appendable) throws IOException {
+		new JSONEncoder().encode(element, appendable);
+	}
+
+	public static final void encode(JSONElement element, OutputStream utf8) throws IOException {
+		new JSONEncoder().encode(element, utf8);
+	}
+
 	public static final String format(JSONElement element) {
 		return new JSONEncoder().beautify().encode(element);
 	}
@@ -78,7 +132,17 @@ public final class JSON {
 	}
 
 	public static final void escapeTo(String input, StringBuilder sb) {
+		try {
+			escapeTo(input, (Appendable) sb);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex); // StringBuilder does not throw IOException
+		}
+	}
+
+	/** appends "input" to "out", escaping characters when needed, and copying characters between escapes by runs */
+	public static final void escapeTo(CharSequence input, Appendable out) throws IOException {
 		int length = input.length();
+		int run = 0;
 		for (int i = 0; i < length; i++) {
 			char c = input.charAt(i);
 			String replacement = null;
@@ -89,15 +153,92 @@ public final class JSON {
 			} else if (c == '\u2029') {
 				replacement = "\\u2029";
 			}
-			if (replacement == null)
-				sb.append(c);
-			else
-				sb.append(replacement);
+			if (replacement != null) {
+				out.append(input, run, i).append(replacement);
+				run = i + 1;
+			}
+		}
+		out.append(input, run, length);
+	}
+
+	public static final String unescape(CharSequence input) {
+		StringBuilder sb = new StringBuilder(input.length());
+		unescapeTo(input, 0, input.length(), sb);
+		return sb.toString();
+	}
+
+	/**
+	 * appends the characters of "input" between "start" and "end" to "sb", decoding JSON escape sequences in a single
+	 * pass. Characters between escape sequences are copied by runs and unicode escape sequences are decoded numerically.
+	 *
+	 * @throws IllegalArgumentException if "input" contains an invalid or truncated escape sequence
+	 */
+	public static final void unescapeTo(CharSequence input, int start, int end, StringBuilder sb) {
+		int run = start;
+		int i = start;
+		while (i < end) {
+			if (input.charAt(i) != '\\') {
+				i++;
+				continue;
+			}
+			sb.append(input, run, i);
+			char c = i + 1 < end ? input.charAt(i + 1) : 0;
+			char unescaped = c < 128 ? UNESCAPED_CHARS[c] : 0;
+			if (unescaped != 0) {
+				sb.append(unescaped);
+				i += 2;
+			} else if (c == 'u' && i + 6 <= end) {
+				int value = hexValue(input.charAt(i + 2), input.charAt(i + 3), input.charAt(i + 4), input.charAt(i + 5));
+				if (value < 0)
+					throw new IllegalArgumentException("Invalid escape sequence at position " + i);
+				sb.append((char) value);
+				i += 6;
+			} else {
+				throw new IllegalArgumentException("Invalid escape sequence at position " + i);
+			}
+			run = i;
+		}
+		sb.append(input, run, end);
+	}
+
+	/** returns the character represented by the escape sequence "\c", or 0 if "c" does not start a simple escape sequence */
+	static final char unescapedChar(int c) {
+		return c < 128 ? UNESCAPED_CHARS[c] : 0;
+	}
+
+	/** returns the value of the 4 hexadecimal digits of an unicode escape sequence, or -1 if a digit is invalid */
+	static final int hexValue(int c1, int c2, int c3, int c4) {
+		if ((c1 | c2 | c3 | c4) >= 128)
+			return -1;
+		// An invalid digit is -1, so that the result becomes negative
+		return (HEX_VALUES[c1] << 12) | (HEX_VALUES[c2] << 8) | (HEX_VALUES[c3] << 4) | HEX_VALUES[c4];
+	}
+
+	/** The character represented by each simple escape sequence, or 0 */
+	private static final char[] UNESCAPED_CHARS = new char[128];
+	/** The value of each hexadecimal digit, or -1 */
+	private static final int[] HEX_VALUES = new int[128];
+	static {
+		UNESCAPED_CHARS['"'] = '"';
+		UNESCAPED_CHARS['\\'] = '\\';
+		UNESCAPED_CHARS['/'] = '/';
+		UNESCAPED_CHARS['b'] = '\b';
+		UNESCAPED_CHARS['f'] = '\f';
+		UNESCAPED_CHARS['n'] = '\n';
+		UNESCAPED_CHARS['r'] = '\r';
+		UNESCAPED_CHARS['t'] = '\t';
+		Arrays.fill(HEX_VALUES, -1);
+		for (int i = 0; i < 10; i++) {
+			HEX_VALUES['0' + i] = i;
+		}
+		for (int i = 0; i < 6; i++) {
+			HEX_VALUES['a' + i] = 10 + i;
+			HEX_VALUES['A' + i] = 10 + i;
 		}
 	}
 
 	/** @see https://github.com/google/gson/blob/master/gson/src/main/java/com/google/gson/stream/JsonWriter.java */
-	private static final String[] CHAR_REPLACEMENTS = new String[128];
+	static final String[] CHAR_REPLACEMENTS = new String[128];
 	static {
 		for (int i = 0; i <= 0x1f; i++) {
 			CHAR_REPLACEMENTS[i] = String.format("\\u%04x", i);
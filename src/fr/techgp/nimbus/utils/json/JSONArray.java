@@ -17,7 +17,7 @@ public class JSONArray implements JSONElement {
 
 	public JSONArray addAll(JSONElement... children) {
 		for (JSONElement child : children) {
-			this.children.add(JSON.checked(child));
+			this.children().add(JSON.checked(child));
 		}
 		return this;
 	}
@@ -51,51 +51,56 @@ public class JSONArray implements JSONElement {
 	}
 
 	private JSONArray addChecked(JSONElement child) {
-		this.children.add(child);
+		this.children().add(child);
 		return this;
 	}
 
+	/** returns the elements, which a lazily decoded array loads on first access (see {@link JSONLazyDecoder}) */
+	List<JSONElement> children() {
+		return this.children;
+	}
+
 	public int size() {
-		return this.children.size();
+		return this.children().size();
 	}
 
 	public boolean isEmpty() {
-		return this.children.isEmpty();
+		return this.children().isEmpty();
 	}
 
 	public boolean has(JSONElement child) {
-		return this.children.contains(JSON.checked(child));
+		return this.children().contains(JSON.checked(child));
 	}
 
 	public int indexOf(JSONElement child) {
-		return this.children.indexOf(JSON.checked(child));
+		return this.children().indexOf(JSON.checked(child));
 	}
 
 	public JSONElement get(int index) {
-		return this.children.get(index);
+		return this.children().get(index);
 	}
 
 	public JSONElement remove(int index) {
-		return this.children.remove(index);
+		return this.children().remove(index);
 	}
 
 	public boolean remove(JSONElement child) {
-		return this.children.remove(JSON.checked(child));
+		return this.children().remove(JSON.checked(child));
 	}
 
 	public JSONArray clear() {
-		this.children.clear();
+		this.children().clear();
 		return this;
 	}
 
 	public Iterable<JSONElement> iterate() {
-		return this.children;
+		return this.children();
 	}
 
 	@Override
 	public JSONElement deepCopy() {
 		JSONArray result = new JSONArray();
-		this.children.forEach((c) -> result.add(c.deepCopy()));
+		this.children().forEach((c) -> result.add(c.deepCopy()));
 		return result;
 	}
 
@@ -116,12 +121,12 @@ public class JSONArray implements JSONElement {
 
 	@Override
 	public int hashCode() {
-		return this.children.hashCode();
+		return this.children().hashCode();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
-		return (this == obj) || (obj instanceof JSONArray && this.children.equals(((JSONArray) obj).children));
+		return (this == obj) || (obj instanceof JSONArray && this.children().equals(((JSONArray) obj).children()));
 	}
 
 }
@@ -1,203 +1,702 @@
 package fr.techgp.nimbus.utils.json;
 
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.Objects;
 
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamRenderer;
+
+/**
+ * This class decodes JSON text into a {@link JSONElement} tree in a single pass, using a cursor over a char[] or over
+ * UTF-8 bytes. Numbers are parsed without intermediate String and strings are unescaped while they are read.
+ * <br />The same parsing can also send values to a {@link JSONStreamRenderer}, for instance to build a {@link JSONTape}.
+ * <br />An instance can be reused for several documents, but not concurrently.
+ */
 public class JSONDecoder {
 
-	private static final char[] SEPARATORS = "{}[]:, ".toCharArray();
-	private String expression;
+	/** Powers of ten that are exactly represented as double, for the fast path of decimal numbers */
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/** the buffer used for strings containing escape sequences (or non-ASCII bytes), reused between strings */
+	private final StringBuilder builder = new StringBuilder();
+	/** the input, when decoding characters */
+	private char[] chars;
+	/** the input, when decoding UTF-8 bytes */
+	private byte[] bytes;
+	/** the start of the input, so that error positions are relative to the document */
+	private int offset;
+	/** the current position in the input */
 	private int index;
+	/** the end of the input (exclusive) */
+	private int limit;
+	/** the cache of property names, when enabled by {@link #internKeys()} */
+	private String[] keys = null;
+	/** the value of the last number parsed by {@link #parseNumber()}, depending on its result */
+	private long longValue;
+	private double doubleValue;
+
+	private static final int NOT_A_NUMBER = 0;
+	private static final int LONG = 1;
+	private static final int DOUBLE = 2;
 
 	public JSONDecoder() {
 		super();
 	}
 
+	/**
+	 * enables a cache of property names, so that repeated names (in arrays of similar objects for instance) share the
+	 * same {@link String} instance, which saves memory. Cached names are not added to the JVM string table with
+	 * {@link String#intern()}, since names come from untrusted input, and the cache of this instance is enough to share
+	 * them. The cache is kept between documents decoded by this instance.
+	 */
+	public JSONDecoder internKeys() {
+		return this.internKeys(1024);
+	}
+
+	/** same as {@link #internKeys()}, with a cache of "capacity" names at most (rounded to a power of 2) */
+	public JSONDecoder internKeys(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+		int size = 1;
+		while (size < capacity)
+			size <<= 1;
+		this.keys = new String[size];
+		return this;
+	}
+
 	public JSONElement decode(String json) throws ParseException {
-		this.expression = json.trim();
-		this.index = 0;
-		return this.eParser();
+		char[] input = json.toCharArray();
+		return this.decode(input, 0, input.length);
 	}
 
-	/** stops the parsing process and reports an error. */
-	private void error(String message, Object... messageParams) throws ParseException {
-		throw new ParseException(String.format(message, messageParams), this.index);
+	public JSONElement decode(char[] json, int offset, int length) throws ParseException {
+		Objects.checkFromIndexSize(offset, length, json.length);
+		this.chars = json;
+		this.bytes = null;
+		return this.decodeDocument(offset, length, null);
 	}
 
-	/** returns the next token of input or an empty string when parsing is over. "next" does not alter the input stream. */
-	private String next() throws ParseException {
-		// Parsing after string end throws an error
-		if (this.index >= this.expression.length())
-			this.error("Unexpected end of stream");
-		// Check if a string starts at current position
-		if (this.expression.charAt(this.index) == '"') {
-			// In that case, find the next closing quote
-			char previous = ' ';
-			char escape = '\\';
-			int i = this.index + 1;
-			while (i < this.expression.length() && (this.expression.charAt(i) != '"' || escape == previous)) { // skip despecialized quotes
-				if (escape == previous && escape == this.expression.charAt(i)) // \" won't end string but \\" will
-					previous = ' '; // so each couple \\ is ignored
-				else
-					previous = this.expression.charAt(i);
-				i++;
-			}
-			if (i == this.expression.length())
-				this.error("Un-terminated string started at position %d", this.index);
-			// Found a string
-			return this.expression.substring(this.index, i + 1);
-		}
-		// Search the next occurence of each separators
-		int index = Integer.MAX_VALUE;
-		for (char c : JSONDecoder.SEPARATORS) {
-			int i = this.expression.indexOf(c, this.index);
-			if (i >= 0 && i < index)
-				index = i;
-		}
-		// found a token ending stream
-		if (index == Integer.MAX_VALUE)
-			return this.expression.substring(this.index);
-		// found a separator at current position
-		if (index == this.index)
-			return this.expression.substring(this.index, this.index + 1);
-		// found a token from this current position to the next separator
-		return this.expression.substring(this.index, index).trim();
-	}
-
-	/** reads one token. When "next=end", consume is still allowed, but has no effect. */
-	private void consume(String token) throws ParseException {
-		// Get next token to consume, or use text if provided as optimisation
-		// In fact, this.next() is never called because each call to 'consume' already knowns what is the next token (= "text" argument)
-		String s = token == null ? this.next() : token;
-		// Move forward
-		this.index += s.length();
-		// And skip following spaces
-		while (this.index < this.expression.length() && Character.isWhitespace(this.expression.charAt(this.index)))
-			this.index++;
+	public JSONElement decode(byte[] utf8, int offset, int length) throws ParseException {
+		Objects.checkFromIndexSize(offset, length, utf8.length);
+		this.chars = null;
+		this.bytes = utf8;
+		return this.decodeDocument(offset, length, null);
 	}
 
-	/** if next = text then consume else error */
-	private void expect(String token) throws ParseException {
-		// Get next token
-		String s = this.next();
-		// Check if this token matches expected text
-		if (s.equals(token))
-			// OK, consume token
-			this.consume(s);
-		else
-			// Error, the next token is unexpected
-			this.error("Found \"%s\" but expecting \"%s\" at position %d", s, token, this.index);
+	/** decodes "json" and sends its values to "renderer", without building a {@link JSONElement} tree */
+	public void decode(String json, JSONStreamRenderer renderer) throws ParseException {
+		char[] input = json.toCharArray();
+		this.decode(input, 0, input.length, renderer);
+	}
+
+	public void decode(char[] json, int offset, int length, JSONStreamRenderer renderer) throws ParseException {
+		Objects.checkFromIndexSize(offset, length, json.length);
+		this.chars = json;
+		this.bytes = null;
+		this.decodeDocument(offset, length, Objects.requireNonNull(renderer));
 	}
 
-	private JSONElement eParser() throws ParseException {
-		// Try to get the Abstract Syntax Tree (AST) for the expression starting at position 0
+	public void decode(byte[] utf8, int offset, int length, JSONStreamRenderer renderer) throws ParseException {
+		Objects.checkFromIndexSize(offset, length, utf8.length);
+		this.chars = null;
+		this.bytes = utf8;
+		this.decodeDocument(offset, length, Objects.requireNonNull(renderer));
+	}
+
+	/** decodes the input into a tree, or sends its values to "renderer" if not null (and then returns null) */
+	private JSONElement decodeDocument(int offset, int length, JSONStreamRenderer renderer) throws ParseException {
+		this.offset = offset;
+		this.index = offset;
+		this.limit = offset + length;
+		try {
+			this.skipWhitespaces();
+			JSONElement e = null;
+			if (renderer == null)
+				e = this.parseElement();
+			else
+				this.parseElement(renderer);
+			// Ensure that the end of the document is reached, like expected
+			this.skipWhitespaces();
+			if (this.index != this.limit)
+				this.error("Found \"%s\" but expecting end of stream at position %d", this.token(), this.position());
+			return e;
+		} finally {
+			// Release the input and do not keep a huge buffer because of a single huge string
+			this.chars = null;
+			this.bytes = null;
+			this.builder.setLength(0);
+			if (this.builder.capacity() > 65536)
+				this.builder.trimToSize();
+		}
+	}
+
+	/**
+	 * decodes the value starting at "start" (after whitespaces) of a document starting at "offset", without expecting
+	 * the end of the document after it, for {@link JSONLazyDecoder}. {@link #index()} is then the position following
+	 * the value and its whitespaces.
+	 */
+	JSONElement decodeValue(char[] chars, byte[] bytes, int offset, int start, int limit) throws ParseException {
+		this.chars = chars;
+		this.bytes = bytes;
+		this.offset = offset;
+		this.index = start;
+		this.limit = limit;
+		this.skipWhitespaces();
 		JSONElement e = this.parseElement();
-		// Ensure that the end of the formula is reached, like expected
-		if (this.index != this.expression.length())
-			this.error("Found \"%s\" but expecting end of stream at position %d", this.next(), this.index);
-		// Return the AST
+		this.skipWhitespaces();
 		return e;
 	}
 
+	int index() {
+		return this.index;
+	}
+
+	/** stops the parsing process and reports an error. */
+	private void error(String message, Object... messageParams) throws ParseException {
+		throw new ParseException(String.format(message, messageParams), this.position());
+	}
+
+	/** returns the current position, relative to the start of the document */
+	private int position() {
+		return this.index - this.offset;
+	}
+
+	/** returns the character (or byte) at position "i", which must be lower than "limit" */
+	private int at(int i) {
+		return this.bytes != null ? this.bytes[i] & 0xFF : this.chars[i];
+	}
+
+	/** returns the character (or byte) at current position, or -1 when parsing is over */
+	private int peek() {
+		return this.index < this.limit ? this.at(this.index) : -1;
+	}
+
+	private void skipWhitespaces() {
+		int i = this.index;
+		while (i < this.limit) {
+			int c = this.at(i);
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+				break;
+			i++;
+		}
+		this.index = i;
+	}
+
+	/** returns true if a token can not continue at position "i" */
+	private boolean isDelimiter(int i) {
+		if (i >= this.limit)
+			return true;
+		int c = this.at(i);
+		return c == ',' || c == ']' || c == '}' || c == ':' || c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	/** returns the text of the next token, only to report errors */
+	private String token() {
+		if (this.index >= this.limit)
+			return "";
+		int end = this.index + 1;
+		int c = this.at(this.index);
+		if (c != '{' && c != '}' && c != '[' && c != ']' && c != ':' && c != ',') {
+			while (!this.isDelimiter(end) && this.at(end) != '{' && this.at(end) != '[')
+				end++;
+		}
+		if (this.bytes != null)
+			return new String(this.bytes, this.index, end - this.index, StandardCharsets.UTF_8);
+		return new String(this.chars, this.index, end - this.index);
+	}
+
+	/** if next = c then consume else error */
+	private void expect(char c) throws ParseException {
+		int next = this.peek();
+		if (next == c)
+			this.index++;
+		else if (next == -1)
+			this.error("Unexpected end of stream");
+		else
+			this.error("Found \"%s\" but expecting \"%s\" at position %d", this.token(), c, this.position());
+	}
+
 	private JSONElement parseElement() throws ParseException {
-		String s = this.next();
-		if ("[".equals(s))
-			return parseArray();
-		if ("{".equals(s))
-			return parseObject();
-		return parseValue(s);
+		switch (this.peek()) {
+			case -1:
+				this.error("Unexpected end of stream");
+				break;
+			case '[':
+				return this.parseArray();
+			case '{':
+				return this.parseObject();
+			case '"':
+				return new JSONString(this.parseString());
+			case 'n':
+				if (this.parseLiteral("null"))
+					return JSONNull.INSTANCE;
+				break;
+			case 't':
+				if (this.parseLiteral("true"))
+					return JSONBoolean.TRUE_INSTANCE;
+				break;
+			case 'f':
+				if (this.parseLiteral("false"))
+					return JSONBoolean.FALSE_INSTANCE;
+				break;
+			default:
+				int number = this.parseNumber();
+				if (number == LONG)
+					return new JSONNumber(this.longValue);
+				if (number == DOUBLE)
+					return new JSONNumber(this.doubleValue);
+				break;
+		}
+		this.error("%s is not a valid value", this.token());
+		return null;
+	}
+
+	/** same as {@link #parseElement()}, but sends values to "renderer", including separators */
+	private void parseElement(JSONStreamRenderer renderer) throws ParseException {
+		switch (this.peek()) {
+			case -1:
+				this.error("Unexpected end of stream");
+				break;
+			case '[':
+				this.parseArray(renderer);
+				return;
+			case '{':
+				this.parseObject(renderer);
+				return;
+			case '"':
+				renderer.value(this.parseString());
+				return;
+			case 'n':
+				if (this.parseLiteral("null")) {
+					renderer.nullValue();
+					return;
+				}
+				break;
+			case 't':
+				if (this.parseLiteral("true")) {
+					renderer.value(true);
+					return;
+				}
+				break;
+			case 'f':
+				if (this.parseLiteral("false")) {
+					renderer.value(false);
+					return;
+				}
+				break;
+			default:
+				int number = this.parseNumber();
+				if (number == LONG) {
+					renderer.value(this.longValue);
+					return;
+				}
+				if (number == DOUBLE) {
+					renderer.value(this.doubleValue);
+					return;
+				}
+				break;
+		}
+		this.error("%s is not a valid value", this.token());
 	}
 
 	private JSONArray parseArray() throws ParseException {
-		this.consume("[");
+		this.index++; // [
 		JSONArray result = new JSONArray();
-		String s = this.next();
-		while (!"]".equals(s)) {
-			result.add(parseElement());
-			s = this.next();
-			if (!"]".equals(s)) {
-				this.expect(",");
-				s = this.next();
-			}
+		this.skipWhitespaces();
+		if (this.peek() == ']') {
+			this.index++;
+			return result;
+		}
+		while (true) {
+			result.add(this.parseElement());
+			this.skipWhitespaces();
+			if (this.peek() != ',')
+				break;
+			this.index++;
+			this.skipWhitespaces();
 		}
-		this.expect("]");
+		this.expect(']');
 		return result;
 	}
 
 	private JSONObject parseObject() throws ParseException {
-		this.consume("{");
+		this.index++; // {
 		JSONObject result = new JSONObject();
-		String s = this.next();
-		while (!"}".equals(s)) {
-			if (s.length() < 3 || s.charAt(0) != '\"' || s.charAt(s.length() - 1) != '\"')
-				this.error("%s is not a valid object property name", s);
-			String propertyName = s.substring(1, s.length() - 1);
-			this.consume(s);
-			this.expect(":");
-			JSONElement propertyValue = this.parseElement();
-			result.set(unescape(propertyName), propertyValue);
-			s = this.next();
-			if (!"}".equals(s)) {
-				this.expect(",");
-				s = this.next();
-			}
+		this.skipWhitespaces();
+		if (this.peek() == '}') {
+			this.index++;
+			return result;
+		}
+		while (true) {
+			if (this.peek() != '"')
+				this.error("%s is not a valid object property name", this.token());
+			String propertyName = this.parseName();
+			this.skipWhitespaces();
+			this.expect(':');
+			this.skipWhitespaces();
+			result.set(propertyName, this.parseElement());
+			this.skipWhitespaces();
+			if (this.peek() != ',')
+				break;
+			this.index++;
+			this.skipWhitespaces();
 		}
-		this.expect("}");
+		this.expect('}');
 		return result;
 	}
 
-	private JSONElement parseValue(String token) throws ParseException {
-		JSONElement result = null;
-		if ("null".equals(token))
-			result = JSONNull.INSTANCE;
-		else if ("true".equals(token))
-			result = JSONBoolean.TRUE_INSTANCE;
-		else if ("false".equals(token))
-			result = JSONBoolean.FALSE_INSTANCE;
-		else if (token.charAt(0) == '"' && token.charAt(token.length() - 1) == '"')
-			result = new JSONString(unescape(token.substring(1, token.length() - 1)));
-		else {
+	private void parseArray(JSONStreamRenderer renderer) throws ParseException {
+		this.index++; // [
+		renderer.beginArray();
+		this.skipWhitespaces();
+		if (this.peek() != ']') {
+			while (true) {
+				this.parseElement(renderer);
+				this.skipWhitespaces();
+				if (this.peek() != ',')
+					break;
+				this.index++;
+				renderer.separator();
+				this.skipWhitespaces();
+			}
+		}
+		this.expect(']');
+		renderer.endArray();
+	}
+
+	private void parseObject(JSONStreamRenderer renderer) throws ParseException {
+		this.index++; // {
+		renderer.beginObject();
+		this.skipWhitespaces();
+		if (this.peek() != '}') {
+			while (true) {
+				if (this.peek() != '"')
+					this.error("%s is not a valid object property name", this.token());
+				renderer.name(this.parseName());
+				this.skipWhitespaces();
+				this.expect(':');
+				this.skipWhitespaces();
+				this.parseElement(renderer);
+				this.skipWhitespaces();
+				if (this.peek() != ',')
+					break;
+				this.index++;
+				renderer.separator();
+				this.skipWhitespaces();
+			}
+		}
+		this.expect('}');
+		renderer.endObject();
+	}
+
+	/** consumes "literal" (null, true or false) if it is the next token */
+	private boolean parseLiteral(String literal) {
+		int end = this.index + literal.length();
+		if (end > this.limit || !this.isDelimiter(end))
+			return false;
+		for (int i = 1; i < literal.length(); i++) {
+			if (this.at(this.index + i) != literal.charAt(i))
+				return false;
+		}
+		this.index = end;
+		return true;
+	}
+
+	/** consumes the next number into "longValue" or "doubleValue" and returns LONG or DOUBLE, or NOT_A_NUMBER if the next token is not a valid number */
+	private int parseNumber() {
+		int start = this.index;
+		int i = start;
+		boolean negative = this.at(i) == '-';
+		if (negative)
+			i++;
+		// Mantissa, as long as it fits in a long (18 digits)
+		long mantissa = 0;
+		int digits = 0;
+		int integerDigits = 0;
+		int c;
+		while (i < this.limit && (c = this.at(i)) >= '0' && c <= '9') {
+			mantissa = mantissa * 10 + (c - '0');
+			integerDigits++;
+			i++;
+		}
+		if (integerDigits == 0)
+			return NOT_A_NUMBER;
+		digits = integerDigits;
+		// Fraction
+		boolean decimal = false;
+		int fractionDigits = 0;
+		if (i < this.limit && this.at(i) == '.') {
+			decimal = true;
+			i++;
+			while (i < this.limit && (c = this.at(i)) >= '0' && c <= '9') {
+				mantissa = mantissa * 10 + (c - '0');
+				fractionDigits++;
+				i++;
+			}
+			if (fractionDigits == 0)
+				return NOT_A_NUMBER;
+			digits += fractionDigits;
+		}
+		// Exponent
+		int exponent = 0;
+		if (i < this.limit && ((c = this.at(i)) == 'e' || c == 'E')) {
+			decimal = true;
+			i++;
+			boolean negativeExponent = false;
+			if (i < this.limit && ((c = this.at(i)) == '-' || c == '+')) {
+				negativeExponent = c == '-';
+				i++;
+			}
+			int exponentDigits = 0;
+			while (i < this.limit && (c = this.at(i)) >= '0' && c <= '9') {
+				if (exponent < 100000)
+					exponent = exponent * 10 + (c - '0');
+				exponentDigits++;
+				i++;
+			}
+			if (exponentDigits == 0)
+				return NOT_A_NUMBER;
+			if (negativeExponent)
+				exponent = -exponent;
+		}
+		if (!this.isDelimiter(i))
+			return NOT_A_NUMBER;
+		this.index = i;
+
+		// Integers fitting in 18 digits are always exact
+		if (!decimal && digits <= 18) {
+			this.longValue = negative ? -mantissa : mantissa;
+			return LONG;
+		}
+		// Decimals with 15 digits or less and a small exponent are exact too, with a single rounding (Clinger's fast path)
+		int scale = exponent - fractionDigits;
+		if (decimal && digits <= 15 && scale >= -22 && scale <= 22) {
+			double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+			this.doubleValue = negative ? -value : value;
+			return DOUBLE;
+		}
+		// Other numbers are rare enough to use the standard parsing methods
+		String token = this.bytes != null ? new String(this.bytes, start, i - start, StandardCharsets.ISO_8859_1) : new String(this.chars, start, i - start);
+		if (!decimal) {
 			try {
-				result = new JSONNumber(Long.parseLong(token));
+				this.longValue = Long.parseLong(token);
+				return LONG;
 			} catch (NumberFormatException ex) {
-				try {
-					result = new JSONNumber(Double.parseDouble(token));
-				} catch (NumberFormatException ex2) {
-					this.error("%s is not a valid value", token);
-				}
+				// too large for a long, use a double
 			}
 		}
-		this.consume(token);
-		return result;
+		this.doubleValue = Double.parseDouble(token);
+		return DOUBLE;
 	}
 
-	private static final List<String> UNESCAPE_STRINGS = new ArrayList<>();
-	private static final List<Character> UNESCAPE_CHARS = new ArrayList<>();
-	static {
-		UNESCAPE_STRINGS.addAll(Arrays.asList("\\\"", "\\\\", "\\r", "\\n", "\\t", "\\b", "\\f", "\\u2028", "\\u2029"));
-		UNESCAPE_CHARS.addAll(Arrays.asList('"', '\\', '\r', '\n', '\t', '\b', '\f', '\u2028', '\u2029'));
-		for (int i = 0; i <= 0x1f; i++) {
-			UNESCAPE_STRINGS.add(String.format("\\u%04x", i));
-			UNESCAPE_CHARS.add((char) i);
+	/** consumes a property name, using the cache of property names if enabled */
+	private String parseName() throws ParseException {
+		if (this.keys == null)
+			return this.parseString();
+		// Hash the name like String.hashCode, without building a String, when it contains ASCII characters only and no escape sequence
+		int start = this.index + 1;
+		int i = start;
+		int hash = 0;
+		if (this.bytes != null) {
+			byte[] input = this.bytes;
+			while (i < this.limit && input[i] != '"' && input[i] != '\\' && input[i] >= 0) {
+				hash = 31 * hash + input[i];
+				i++;
+			}
+		} else {
+			char[] input = this.chars;
+			while (i < this.limit && input[i] != '"' && input[i] != '\\') {
+				hash = 31 * hash + input[i];
+				i++;
+			}
 		}
+		if (i >= this.limit || this.at(i) != '"') {
+			// Other names are decoded first, then looked up in the cache
+			String name = this.parseString();
+			return this.cachedKey(name.hashCode(), name, 0, name.length());
+		}
+		this.index = i + 1;
+		return this.cachedKey(hash, null, start, i - start);
 	}
 
-	private static final String unescape(String s) {
-		String val = s;
-		int position = 0;
-		int index = val.indexOf('\\', position);
-		while (index >= 0) {
-			for (int i = 0; i < UNESCAPE_STRINGS.size(); i++) {
-				if (val.startsWith(UNESCAPE_STRINGS.get(i), index)) {
-					val = val.substring(0, index) + UNESCAPE_CHARS.get(i) + val.substring(index + UNESCAPE_STRINGS.get(i).length());
+	/** returns the cached name equal to "name" (or to the input between "start" and "start + length" if "name" is null), after adding it if needed */
+	private String cachedKey(int hash, String name, int start, int length) {
+		String[] keys = this.keys;
+		int mask = keys.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		// A few probes only, the cache is not meant to contain every name of unusual documents
+		for (int probe = 0; probe < 8; probe++) {
+			String key = keys[slot];
+			if (key == null) {
+				key = name != null ? name : this.bytes != null
+						? new String(this.bytes, start, length, StandardCharsets.ISO_8859_1)
+						: new String(this.chars, start, length);
+				keys[slot] = key;
+				return key;
+			}
+			if (key.hashCode() == hash && (name != null ? key.equals(name) : this.matches(key, start, length)))
+				return key;
+			slot = (slot + 1) & mask;
+		}
+		if (name != null)
+			return name;
+		return this.bytes != null ? new String(this.bytes, start, length, StandardCharsets.ISO_8859_1) : new String(this.chars, start, length);
+	}
+
+	/** returns true if the input between "start" and "start + length" is "key" */
+	private boolean matches(String key, int start, int length) {
+		if (key.length() != length)
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (key.charAt(i) != this.at(start + i))
+				return false;
+		}
+		return true;
+	}
+
+	/** consumes the string starting at current position (with its quotes) and returns its unescaped value */
+	private String parseString() throws ParseException {
+		int start = this.index;
+		int i = start + 1;
+		// Fast path, for strings without escape sequences
+		if (this.bytes != null) {
+			byte[] input = this.bytes;
+			boolean ascii = true;
+			while (i < this.limit) {
+				byte b = input[i];
+				if (b == '"') {
+					this.index = i + 1;
+					return new String(input, start + 1, i - start - 1, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+				}
+				if (b == '\\')
+					break;
+				ascii &= b >= 0;
+				i++;
+			}
+			if (i >= this.limit)
+				this.unterminatedString(start);
+			// Restart the slow path after the ASCII prefix
+			i = start + 1;
+			while (i < this.limit && input[i] >= 0 && input[i] != '\\')
+				i++;
+		} else {
+			char[] input = this.chars;
+			while (i < this.limit) {
+				char c = input[i];
+				if (c == '"') {
+					this.index = i + 1;
+					return new String(input, start + 1, i - start - 1);
+				}
+				if (c == '\\')
+					break;
+				i++;
+			}
+		}
+		if (i >= this.limit)
+			this.unterminatedString(start);
+
+		// Slow path, decoding escape sequences (and UTF-8 bytes) into the reusable buffer
+		StringBuilder sb = this.builder;
+		sb.setLength(0);
+		if (this.bytes == null) {
+			// Characters between escape sequences are copied by runs
+			char[] input = this.chars;
+			int run = start + 1;
+			while (i < this.limit) {
+				char c = input[i];
+				if (c == '"') {
+					sb.append(input, run, i - run);
+					this.index = i + 1;
+					return sb.toString();
+				}
+				if (c == '\\') {
+					sb.append(input, run, i - run);
+					i = this.unescape(i, sb, start);
+					run = i;
+				} else {
+					i++;
 				}
 			}
-			position = index + 1;
-			index = val.indexOf('\\', position);
+			this.unterminatedString(start);
 		}
-		return val;
+		// With UTF-8 bytes, ASCII characters are appended one by one and other characters are decoded
+		byte[] input = this.bytes;
+		for (int j = start + 1; j < i; j++) {
+			sb.append((char) input[j]);
+		}
+		while (i < this.limit) {
+			byte b = input[i];
+			if (b == '"') {
+				this.index = i + 1;
+				return sb.toString();
+			}
+			if (b == '\\')
+				i = this.unescape(i, sb, start);
+			else if (b < 0)
+				i = this.decodeUTF8(i, sb);
+			else {
+				sb.append((char) b);
+				i++;
+			}
+		}
+		this.unterminatedString(start);
+		return null;
+	}
+
+	private void unterminatedString(int start) throws ParseException {
+		throw new ParseException(String.format("Un-terminated string started at position %d", start - this.offset), start - this.offset);
+	}
+
+	/** decodes the escape sequence at position "i" into "sb" and returns the position following the sequence */
+	private int unescape(int i, StringBuilder sb, int start) throws ParseException {
+		if (i + 1 >= this.limit)
+			this.unterminatedString(start);
+		int c = this.at(i + 1);
+		char unescaped = JSON.unescapedChar(c);
+		if (unescaped != 0) {
+			sb.append(unescaped);
+			return i + 2;
+		}
+		if (c == 'u') {
+			if (i + 6 > this.limit)
+				this.unterminatedString(start);
+			int value = JSON.hexValue(this.at(i + 2), this.at(i + 3), this.at(i + 4), this.at(i + 5));
+			if (value >= 0) {
+				sb.append((char) value);
+				return i + 6;
+			}
+		}
+		throw new ParseException(String.format("Invalid escape sequence at position %d", i - this.offset), i - this.offset);
+	}
+
+	/**
+	 * decodes the UTF-8 sequence at position "i" into "sb" and returns the position following the sequence. Like
+	 * {@link String#String(byte[], java.nio.charset.Charset)} in the fast path, malformed bytes are replaced by U+FFFD.
+	 */
+	private int decodeUTF8(int i, StringBuilder sb) {
+		int b = this.bytes[i] & 0xFF;
+		int count = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : b >= 0xC0 ? 1 : 0;
+		if (count == 0 || b >= 0xF5 || i + count >= this.limit)
+			return this.malformedUTF8(i, sb);
+		int codePoint = b & (0x3F >> count);
+		for (int j = i + 1; j <= i + count; j++) {
+			int next = this.bytes[j] & 0xFF;
+			if ((next & 0xC0) != 0x80)
+				return this.malformedUTF8(i, sb);
+			codePoint = (codePoint << 6) | (next & 0x3F);
+		}
+		// Reject overlong encodings and surrogates
+		if (codePoint < (count == 1 ? 0x80 : count == 2 ? 0x800 : 0x10000) || (codePoint >= 0xD800 && codePoint <= 0xDFFF) || codePoint > 0x10FFFF)
+			return this.malformedUTF8(i, sb);
+		sb.appendCodePoint(codePoint);
+		return i + count + 1;
+	}
+
+	private int malformedUTF8(int i, StringBuilder sb) {
+		sb.append('\uFFFD');
+		return i + 1;
 	}
 
 }
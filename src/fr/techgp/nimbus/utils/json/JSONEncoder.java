@@ -1,10 +1,14 @@
 package fr.techgp.nimbus.utils.json;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.Map;
 
 public class JSONEncoder implements JSONVisitor {
 
 	private StringBuilder sb = new StringBuilder();
+	private Output output;
 	private String indent = null;
 	private boolean spaceAfterColumn = false;
 	private boolean encodeNullProperties = true;
@@ -27,29 +31,62 @@ public class JSONEncoder implements JSONVisitor {
 
 	public String encode(JSONElement element) {
 		this.sb.setLength(0);
-		this.depth = 0;
-		JSON.checked(element).accept(this);
+		this.encode(element, new AppendableOutput(this.sb));
 		return this.sb.toString();
 	}
 
+	/** encodes "element" to "appendable" (a {@link java.io.Writer} for instance), without building the whole text first */
+	public void encode(JSONElement element, Appendable appendable) throws IOException {
+		try {
+			this.encode(element, new AppendableOutput(appendable));
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/** encodes "element" as UTF-8 bytes to "stream", in chunks of 8 KB, then flushes "stream" (but does not close it) */
+	public void encode(JSONElement element, OutputStream stream) throws IOException {
+		try {
+			this.encode(element, new JSONOutput(stream));
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/** encodes "element" as UTF-8 bytes to "output", then flushes "output" */
+	public void encode(JSONElement element, JSONOutput output) {
+		this.encode(element, new UTF8Output(output));
+		output.flush();
+	}
+
+	private void encode(JSONElement element, Output output) {
+		this.output = output;
+		this.depth = 0;
+		try {
+			JSON.checked(element).accept(this);
+		} finally {
+			this.output = null;
+		}
+	}
+
 	@Override
 	public void visit(JSONArray json) {
-		this.open("[");
+		this.open('[');
 		boolean first = true;
 		for (JSONElement e : json.iterate()) {
 			if (first)
 				first = false;
 			else
-				this.sb.append(",");
+				this.output.append(',');
 			this.indent();
 			e.accept(this);
 		}
-		this.close("]");
+		this.close(']');
 	}
 
 	@Override
 	public void visit(JSONObject json) {
-		this.open("{");
+		this.open('{');
 		boolean first = true;
 		for (Map.Entry<String, JSONElement> property : json.iterate()) {
 			JSONElement e = property.getValue();
@@ -58,59 +95,128 @@ public class JSONEncoder implements JSONVisitor {
 			if (first)
 				first = false;
 			else
-				this.sb.append(",");
+				this.output.append(',');
 			this.indent();
-			this.encode(property.getKey());
-			this.sb.append(this.spaceAfterColumn ? ": " : ":");
+			this.output.string(property.getKey());
+			this.output.append(this.spaceAfterColumn ? ": " : ":");
 			e.accept(this);
 		}
-		this.close("}");
+		this.close('}');
 	}
 
 	@Override
 	public void visit(JSONNull json) {
-		this.sb.append("null");
+		this.output.append("null");
 	}
 
 	@Override
 	public void visit(JSONBoolean json) {
-		this.sb.append(Boolean.toString(json.getValue()));
+		this.output.append(json.getValue() ? "true" : "false");
 	}
 
 	@Override
 	public void visit(JSONString json) {
-		this.encode(json.getValue());
+		this.output.string(json.getValue());
 	}
 
 	@Override
 	public void visit(JSONNumber json) {
-		this.sb.append(json.getValue().toString());
+		this.output.number(json.getValue());
 	}
 
-	private void open(String opening) {
+	private void open(char opening) {
 		this.depth++;
-		this.sb.append(opening);
+		this.output.append(opening);
 	}
 
-	private void close(String closing) {
+	private void close(char closing) {
 		this.depth--;
 		this.indent();
-		this.sb.append(closing);
+		this.output.append(closing);
 	}
 
 	private void indent() {
 		if (this.indent != null) {
-			this.sb.append("\n");
+			this.output.append('\n');
 			for (int i = 0; i < this.depth; i++) {
-				this.sb.append(this.indent);
+				this.output.append(this.indent);
 			}
 		}
 	}
 
-	private void encode(String value) {
-		this.sb.append("\"");
-		// needs escaping : this.sb.append(value);
-		JSON.escapeTo(value, this.sb);
-		this.sb.append("\"");
+	/** The destination of the encoded text, either an {@link Appendable} or a {@link JSONOutput} */
+	private static interface Output {
+		public void append(char c);
+		public void append(String text);
+		public void string(String value);
+		public void number(Number value);
 	}
+
+	private static final class AppendableOutput implements Output {
+
+		private final Appendable appendable;
+		/** the same as "appendable", when it is a {@link StringBuilder}, to append numbers without intermediate String */
+		private final StringBuilder sb;
+
+		public AppendableOutput(Appendable appendable) {
+			this.appendable = appendable;
+			this.sb = appendable instanceof StringBuilder ? (StringBuilder) appendable : null;
+		}
+
+		@Override
+		public void append(char c) {
+			try {
+				this.appendable.append(c);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		@Override
+		public void append(String text) {
+			try {
+				this.appendable.append(text);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		@Override
+		public void string(String value) {
+			try {
+				this.appendable.append('"');
+				JSON.escapeTo(value, this.appendable);
+				this.appendable.append('"');
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		@Override
+		public void number(Number value) {
+			if (this.sb != null && (value instanceof Long || value instanceof Integer))
+				this.sb.append(value.longValue());
+			else if (this.sb != null && value instanceof Double)
+				this.sb.append(value.doubleValue());
+			else
+				this.append(value.toString());
+		}
+
+	}
+
+	private static final class UTF8Output implements Output {
+
+		private final JSONOutput output;
+
+		public UTF8Output(JSONOutput output) {
+			this.output = output;
+		}
+
+		@Override public void append(char c)        { this.output.write(c); }
+		@Override public void append(String text)   { this.output.write(text); }
+		@Override public void string(String value)  { this.output.writeString(value); }
+		@Override public void number(Number value)  { this.output.writeNumber(value); }
+
+	}
+
 }
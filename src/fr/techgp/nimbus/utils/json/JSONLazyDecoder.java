@@ -0,0 +1,466 @@
+package fr.techgp.nimbus.utils.json;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This class decodes JSON text lazily. A first pass indexes the structural characters (brackets, colons and commas
+ * outside of strings) and the matching bracket of each opening bracket. Then, each {@link JSONObject} and
+ * {@link JSONArray} decodes its children only when it is accessed for the first time, using the index to skip nested
+ * objects and arrays, which are lazy too. Unused parts of the document are therefore never decoded.
+ * <br />The first pass checks that brackets are balanced and strings are terminated, but other errors are found when
+ * the values are decoded : they are then reported as {@link IllegalArgumentException} by the lazy object or array, on
+ * each access. Lazy objects and arrays can be read concurrently, like regular ones, since they load themselves once.
+ * <br />The same index is used by {@link #extract(String, String)} to decode a single value, designated by a path like
+ * "a.b[3].c", skipping other values.
+ */
+public class JSONLazyDecoder {
+
+	public JSONLazyDecoder() {
+		super();
+	}
+
+	public JSONElement decode(String json) throws ParseException {
+		char[] input = json.toCharArray();
+		return this.decode(input, 0, input.length);
+	}
+
+	public JSONElement decode(char[] json, int offset, int length) throws ParseException {
+		Objects.checkFromIndexSize(offset, length, json.length);
+		return new Index(json, null, offset, length).root();
+	}
+
+	public JSONElement decode(byte[] utf8, int offset, int length) throws ParseException {
+		Objects.checkFromIndexSize(offset, length, utf8.length);
+		return new Index(null, utf8, offset, length).root();
+	}
+
+	/**
+	 * decodes the value designated by "path" in "json", or returns null if it does not exist. The path is made of
+	 * property names separated by dots, and array indexes in brackets, for instance "a.b[3].c" or "[0].id". An empty
+	 * path designates the whole document.
+	 *
+	 * @throws IllegalArgumentException if "path" is invalid
+	 */
+	public JSONElement extract(String json, String path) throws ParseException {
+		List<Object> segments = parsePath(path);
+		char[] input = json.toCharArray();
+		return new Index(input, null, 0, input.length).extract(segments);
+	}
+
+	public JSONElement extract(byte[] utf8, int offset, int length, String path) throws ParseException {
+		List<Object> segments = parsePath(path);
+		Objects.checkFromIndexSize(offset, length, utf8.length);
+		return new Index(null, utf8, offset, length).extract(segments);
+	}
+
+	/** splits "path" into property names (String) and array indexes (Integer) */
+	private static List<Object> parsePath(String path) {
+		List<Object> segments = new ArrayList<>();
+		int length = path.length();
+		int i = 0;
+		while (i < length) {
+			if (path.charAt(i) == '[') {
+				int close = path.indexOf(']', i);
+				int index = -1;
+				try {
+					if (close > 0)
+						index = Integer.parseInt(path.substring(i + 1, close));
+				} catch (NumberFormatException ex) {
+					// invalid index, reported below
+				}
+				if (index < 0)
+					throw new IllegalArgumentException("Invalid array index in path " + path + " at position " + i);
+				segments.add(index);
+				i = close + 1;
+			} else {
+				int start = i;
+				while (i < length && path.charAt(i) != '.' && path.charAt(i) != '[')
+					i++;
+				if (i == start)
+					throw new IllegalArgumentException("Missing property name in path " + path + " at position " + i);
+				segments.add(path.substring(start, i));
+			}
+			if (i < length && path.charAt(i) == '.') {
+				i++;
+				if (i == length)
+					throw new IllegalArgumentException("Missing property name in path " + path + " at position " + i);
+			}
+		}
+		return segments;
+	}
+
+	/** The structural index of a document, shared by its lazy objects and arrays until they are loaded */
+	private static final class Index {
+
+		private final char[] chars;
+		private final byte[] bytes;
+		private final int offset;
+		private final int limit;
+		/** the positions of structural characters, in document order */
+		private int[] positions;
+		/** for each opening bracket, the index in "positions" of the matching closing bracket */
+		private int[] matches;
+		private int count = 0;
+
+		public Index(char[] chars, byte[] bytes, int offset, int length) throws ParseException {
+			this.chars = chars;
+			this.bytes = bytes;
+			this.offset = offset;
+			this.limit = offset + length;
+			this.positions = new int[Math.max(16, length / 8)];
+			this.matches = new int[this.positions.length];
+			int[] opened = new int[16];
+			int depth = 0;
+			int i = offset;
+			while (i < this.limit) {
+				int c = this.at(i);
+				if (c == '"') {
+					i = this.skipString(i);
+					if (i < 0)
+						throw this.invalid(); // un-terminated string
+					continue;
+				}
+				if (c == '{' || c == '[') {
+					if (depth == opened.length)
+						opened = Arrays.copyOf(opened, depth * 2);
+					opened[depth++] = this.count;
+					this.add(i);
+				} else if (c == '}' || c == ']') {
+					if (depth == 0 || this.at(this.positions[opened[depth - 1]]) != (c == '}' ? '{' : '['))
+						throw this.invalid(); // unbalanced bracket
+					this.matches[opened[--depth]] = this.count;
+					this.add(i);
+				} else if (c == ':' || c == ',') {
+					this.add(i);
+				}
+				i++;
+			}
+			if (depth > 0)
+				throw this.invalid(); // unexpected end of stream
+		}
+
+		private void add(int position) {
+			if (this.count == this.positions.length) {
+				this.positions = Arrays.copyOf(this.positions, this.count * 2);
+				this.matches = Arrays.copyOf(this.matches, this.count * 2);
+			}
+			this.positions[this.count++] = position;
+		}
+
+		/** returns the position following the string starting at "start", or -1 if the string is not terminated */
+		private int skipString(int start) {
+			int i = start + 1;
+			if (this.bytes != null) {
+				byte[] input = this.bytes;
+				while (i < this.limit) {
+					byte b = input[i];
+					if (b == '"')
+						return i + 1;
+					i += b == '\\' ? 2 : 1;
+				}
+			} else {
+				char[] input = this.chars;
+				while (i < this.limit) {
+					char c = input[i];
+					if (c == '"')
+						return i + 1;
+					i += c == '\\' ? 2 : 1;
+				}
+			}
+			return -1;
+		}
+
+		private int at(int i) {
+			return this.bytes != null ? this.bytes[i] & 0xFF : this.chars[i];
+		}
+
+		private int skipWhitespaces(int i, int end) {
+			while (i < end) {
+				int c = this.at(i);
+				if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+					break;
+				i++;
+			}
+			return i;
+		}
+
+		/** decodes the whole document with {@link JSONDecoder}, to decode a single value or to report errors */
+		private JSONElement decodeAll() throws ParseException {
+			if (this.bytes != null)
+				return new JSONDecoder().decode(this.bytes, this.offset, this.limit - this.offset);
+			return new JSONDecoder().decode(this.chars, this.offset, this.limit - this.offset);
+		}
+
+		/** returns the error of an invalid document, as reported by {@link JSONDecoder} for consistency */
+		private ParseException invalid() throws ParseException {
+			this.decodeAll();
+			return new ParseException("Invalid JSON document", 0);
+		}
+
+		/** returns true if the document is an object or an array, without unexpected characters around */
+		private boolean hasContainerRoot() {
+			return this.count > 0
+					&& this.skipWhitespaces(this.offset, this.limit) == this.positions[0]
+					&& this.isOpening(0)
+					&& this.matches[0] == this.count - 1
+					&& this.skipWhitespaces(this.positions[this.count - 1] + 1, this.limit) == this.limit;
+		}
+
+		private boolean isOpening(int structural) {
+			int c = this.at(this.positions[structural]);
+			return c == '{' || c == '[';
+		}
+
+		private JSONElement container(int structural) {
+			return this.at(this.positions[structural]) == '{' ? new LazyObject(this, structural) : new LazyArray(this, structural);
+		}
+
+		public JSONElement root() throws ParseException {
+			return this.hasContainerRoot() ? this.container(0) : this.decodeAll();
+		}
+
+		public JSONElement extract(List<Object> segments) throws ParseException {
+			if (segments.isEmpty() || !this.hasContainerRoot())
+				return navigate(this.decodeAll(), segments);
+			int structural = 0;
+			for (int s = 0; s < segments.size(); s++) {
+				Object segment = segments.get(s);
+				Cursor cursor = new Cursor(this, structural);
+				boolean found = false;
+				if (segment instanceof String) {
+					if (this.at(this.positions[structural]) != '{')
+						return null;
+					// Like JSONObject, the last occurrence of a duplicated property wins
+					int position = 0;
+					int next = 0;
+					while (cursor.hasNext()) {
+						if (segment.equals(cursor.name())) {
+							found = true;
+							position = cursor.position;
+							next = cursor.next;
+						}
+						cursor.skip();
+					}
+					cursor.position = position;
+					cursor.next = next;
+				} else {
+					if (this.at(this.positions[structural]) != '[')
+						return null;
+					int index = (Integer) segment;
+					for (int i = 0; cursor.hasNext(); i++) {
+						if (i == index) {
+							found = true;
+							break;
+						}
+						cursor.skip();
+					}
+				}
+				if (!found)
+					return null;
+				if (s == segments.size() - 1)
+					return cursor.decode();
+				// Go down, if the value is an object or an array
+				int start = this.skipWhitespaces(cursor.position, this.limit);
+				if (start != this.positions[cursor.next] || !this.isOpening(cursor.next))
+					return null;
+				structural = cursor.next;
+			}
+			return null;
+		}
+
+		/** follows "segments" in a regular tree, for documents that can not be indexed */
+		private static JSONElement navigate(JSONElement element, List<Object> segments) {
+			for (Object segment : segments) {
+				if (segment instanceof String && element.isObject())
+					element = element.asObject().get((String) segment);
+				else if (segment instanceof Integer && element.isArray() && (Integer) segment < element.asArray().size())
+					element = element.asArray().get((Integer) segment);
+				else
+					return null;
+				if (element == null)
+					return null;
+			}
+			return element;
+		}
+
+	}
+
+	/** walks through the children of an object or an array, using the index to skip nested objects and arrays */
+	private static final class Cursor {
+
+		private final Index index;
+		private final JSONDecoder decoder = new JSONDecoder();
+		/** the index of the closing bracket */
+		private final int end;
+		/** the index of the next structural character */
+		private int next;
+		/** the current position in the document */
+		private int position;
+		private boolean started = false;
+
+		public Cursor(Index index, int opening) {
+			this.index = index;
+			this.end = index.matches[opening];
+			this.next = opening + 1;
+			this.position = index.positions[opening] + 1;
+		}
+
+		private ParseException error(String message, int position) {
+			int relative = position - this.index.offset;
+			return new ParseException(String.format(message, (char) this.index.at(position), relative), relative);
+		}
+
+		/** returns true if there is another child, after consuming the separator if needed */
+		public boolean hasNext() throws ParseException {
+			Index index = this.index;
+			if (!this.started) {
+				this.started = true;
+				return this.next != this.end || index.skipWhitespaces(this.position, index.positions[this.end]) != index.positions[this.end];
+			}
+			if (this.next == this.end)
+				return false;
+			int separator = index.positions[this.next];
+			if (index.at(separator) != ',')
+				throw this.error("Found \"%s\" but expecting \",\" or a closing bracket at position %d", separator);
+			this.position = separator + 1;
+			this.next++;
+			return true;
+		}
+
+		/** decodes the name of the next property and consumes the colon */
+		public String name() throws ParseException {
+			Index index = this.index;
+			int start = index.skipWhitespaces(this.position, index.positions[this.next]);
+			if (index.at(start) != '"')
+				throw this.error("%s is not a valid object property name at position %d", start);
+			JSONElement name = this.decoder.decodeValue(index.chars, index.bytes, index.offset, start, index.limit);
+			int colon = index.positions[this.next];
+			if (this.decoder.index() != colon || index.at(colon) != ':')
+				throw this.error("Found \"%s\" but expecting \":\" at position %d", this.decoder.index());
+			this.position = colon + 1;
+			this.next++;
+			return name.asString().getValue();
+		}
+
+		/** decodes the next value, which is lazy if it is an object or an array */
+		public JSONElement value() throws ParseException {
+			Index index = this.index;
+			int start = index.skipWhitespaces(this.position, index.positions[this.next]);
+			JSONElement result;
+			if (start == index.positions[this.next] && index.isOpening(this.next)) {
+				result = index.container(this.next);
+				this.next = index.matches[this.next] + 1;
+				this.position = index.skipWhitespaces(index.positions[this.next - 1] + 1, index.positions[this.next]);
+			} else {
+				result = this.decoder.decodeValue(index.chars, index.bytes, index.offset, start, index.limit);
+				this.position = this.decoder.index();
+			}
+			if (this.position != index.positions[this.next])
+				throw this.error("Found \"%s\" but expecting \",\" or a closing bracket at position %d", this.position);
+			return result;
+		}
+
+		/** moves after the next value, without decoding it */
+		public void skip() {
+			Index index = this.index;
+			int start = index.skipWhitespaces(this.position, index.positions[this.next]);
+			if (start == index.positions[this.next] && index.isOpening(this.next))
+				this.next = index.matches[this.next] + 1;
+			this.position = index.positions[this.next];
+		}
+
+		/** decodes the next value completely, as a regular tree */
+		public JSONElement decode() throws ParseException {
+			Index index = this.index;
+			int start = index.skipWhitespaces(this.position, index.positions[this.next]);
+			if (start == index.positions[this.next] && index.isOpening(this.next))
+				return this.decoder.decodeValue(index.chars, index.bytes, index.offset, start, index.positions[index.matches[this.next]] + 1);
+			return this.value();
+		}
+
+	}
+
+	private static final class LazyObject extends JSONObject {
+
+		/** the index of the document, until this object is loaded (volatile, to publish the children once loaded) */
+		private volatile Index index;
+		private final int opening;
+
+		public LazyObject(Index index, int opening) {
+			this.index = index;
+			this.opening = opening;
+		}
+
+		@Override
+		Map<String, JSONElement> children() {
+			Map<String, JSONElement> children = super.children();
+			if (this.index == null)
+				return children;
+			synchronized (this) {
+				Index index = this.index;
+				if (index != null) {
+					// Decode all children first, so that an error leaves this object unloaded and is reported again
+					Map<String, JSONElement> loaded = new LinkedHashMap<>();
+					try {
+						Cursor cursor = new Cursor(index, this.opening);
+						while (cursor.hasNext()) {
+							String name = cursor.name();
+							loaded.put(name, cursor.value());
+						}
+					} catch (ParseException ex) {
+						throw new IllegalArgumentException(ex.getMessage(), ex);
+					}
+					children.putAll(loaded);
+					this.index = null;
+				}
+			}
+			return children;
+		}
+
+	}
+
+	private static final class LazyArray extends JSONArray {
+
+		/** the index of the document, until this array is loaded (volatile, to publish the children once loaded) */
+		private volatile Index index;
+		private final int opening;
+
+		public LazyArray(Index index, int opening) {
+			this.index = index;
+			this.opening = opening;
+		}
+
+		@Override
+		List<JSONElement> children() {
+			List<JSONElement> children = super.children();
+			if (this.index == null)
+				return children;
+			synchronized (this) {
+				Index index = this.index;
+				if (index != null) {
+					// Decode all children first, so that an error leaves this array unloaded and is reported again
+					List<JSONElement> loaded = new ArrayList<>();
+					try {
+						Cursor cursor = new Cursor(index, this.opening);
+						while (cursor.hasNext()) {
+							loaded.add(cursor.value());
+						}
+					} catch (ParseException ex) {
+						throw new IllegalArgumentException(ex.getMessage(), ex);
+					}
+					children.addAll(loaded);
+					this.index = null;
+				}
+			}
+			return children;
+		}
+
+	}
+
+}
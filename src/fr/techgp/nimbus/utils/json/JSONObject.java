@@ -44,43 +44,48 @@ public class JSONObject implements JSONElement {
 	}
 
 	private JSONObject setChecked(String property, JSONElement element) {
-		this.children.put(property, element);
+		this.children().put(property, element);
 		return this;
 	}
 
+	/** returns the properties, which a lazily decoded object loads on first access (see {@link JSONLazyDecoder}) */
+	Map<String, JSONElement> children() {
+		return this.children;
+	}
+
 	public int size() {
-		return this.children.size();
+		return this.children().size();
 	}
 
 	public boolean isEmpty() {
-		return this.children.isEmpty();
+		return this.children().isEmpty();
 	}
 
 	public boolean has(String property) {
-		return this.children.containsKey(property);
+		return this.children().containsKey(property);
 	}
 
 	public JSONElement get(String property) {
-		return this.children.get(property);
+		return this.children().get(property);
 	}
 
 	public JSONElement remove(String property) {
-		return this.children.remove(property);
+		return this.children().remove(property);
 	}
 
 	public JSONObject clear() {
-		this.children.clear();
+		this.children().clear();
 		return this;
 	}
 
 	public Iterable<Map.Entry<String, JSONElement>> iterate() {
-		return this.children.entrySet();
+		return this.children().entrySet();
 	}
 
 	@Override
 	public JSONElement deepCopy() {
 		JSONObject copy = new JSONObject();
-		for (Map.Entry<String, JSONElement> entry : this.children.entrySet()) {
+		for (Map.Entry<String, JSONElement> entry : this.children().entrySet()) {
 			copy.children.put(entry.getKey(), entry.getValue().deepCopy());
 		}
 		return copy;
@@ -103,12 +108,12 @@ public class JSONObject implements JSONElement {
 
 	@Override
 	public int hashCode() {
-		return this.children.hashCode();
+		return this.children().hashCode();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
-		return (this == obj) || (obj instanceof JSONObject && this.children.equals(((JSONObject) obj).children));
+		return (this == obj) || (obj instanceof JSONObject && this.children().equals(((JSONObject) obj).children()));
 	}
 
 }
@@ -0,0 +1,256 @@
+package fr.techgp.nimbus.utils.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class writes JSON text as UTF-8 bytes into an internal buffer, without intermediate {@link String} :
+ * <ul>
+ * <li>without target, the buffer grows as needed and the result is available with {@link JSONOutput#toByteArray()} or {@link JSONOutput#toByteBuffer()}</li>
+ * <li>with a target {@link OutputStream}, the buffer has a fixed size and is written to the target in chunks, each time it is full</li>
+ * </ul>
+ * Strings are escaped and encoded in a single loop, with a fast path for ASCII characters, and integers are written
+ * digit by digit. Errors of the target are thrown as {@link UncheckedIOException}.
+ */
+public class JSONOutput {
+
+	/** The escape sequence of each ASCII character that must be escaped, or null */
+	private static final byte[][] ESCAPES = new byte[128][];
+	static {
+		for (int i = 0; i < 128; i++) {
+			String replacement = JSON.CHAR_REPLACEMENTS[i];
+			if (replacement != null)
+				ESCAPES[i] = replacement.getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	private final OutputStream target;
+	private byte[] buffer;
+	private int count = 0;
+	/** the number of bytes already written to the target */
+	private long flushed = 0;
+
+	/** creates an output writing into a growable buffer */
+	public JSONOutput() {
+		this(null, 4096);
+	}
+
+	/** creates an output writing to "target" in chunks of 8 KB */
+	public JSONOutput(OutputStream target) {
+		this(target, 8192);
+	}
+
+	/** creates an output writing to "target" in chunks of "chunkSize" bytes (or into a growable buffer if "target" is null) */
+	public JSONOutput(OutputStream target, int chunkSize) {
+		if (chunkSize < 32)
+			throw new IllegalArgumentException("chunkSize must be 32 bytes at least");
+		this.target = target;
+		this.buffer = new byte[chunkSize];
+	}
+
+	/** returns the number of bytes written so far, including the ones already sent to the target */
+	public long size() {
+		return this.flushed + this.count;
+	}
+
+	/** writes an ASCII character, typically a JSON structural character */
+	public JSONOutput write(char c) {
+		if (this.count == this.buffer.length)
+			this.makeRoom(1);
+		this.buffer[this.count++] = (byte) c;
+		return this;
+	}
+
+	/** writes "text" as it is, encoded in UTF-8, typically for literals and indentation */
+	public JSONOutput write(CharSequence text) {
+		return this.write(text, false);
+	}
+
+	/** writes "value" as a JSON string, with quotes and escape sequences, encoded in UTF-8 */
+	public JSONOutput writeString(CharSequence value) {
+		this.write('"');
+		this.write(value, true);
+		return this.write('"');
+	}
+
+	public JSONOutput writeBoolean(boolean value) {
+		return this.write(value ? "true" : "false");
+	}
+
+	public JSONOutput writeNull() {
+		return this.write("null");
+	}
+
+	/** writes "value" digit by digit, without intermediate {@link String} */
+	public JSONOutput writeLong(long value) {
+		if (value == Long.MIN_VALUE)
+			return this.write("-9223372036854775808");
+		if (this.buffer.length - this.count < 20)
+			this.makeRoom(20);
+		byte[] b = this.buffer;
+		if (value < 0) {
+			b[this.count++] = '-';
+			value = -value;
+		}
+		// Count digits, then write them from the end
+		int length = 1;
+		while (length < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[length])
+			length++;
+		int end = this.count + length;
+		for (int i = end - 1; i >= this.count; i--) {
+			b[i] = (byte) ('0' + (value % 10));
+			value /= 10;
+		}
+		this.count = end;
+		return this;
+	}
+
+	/** writes "value" like {@link Double#toString(double)}, without intermediate {@link String} for small integral values */
+	public JSONOutput writeDouble(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			throw new IllegalArgumentException(value + " is not supported for JSON");
+		// Double.toString writes integral values below 10^7 as "123.0", except -0.0
+		if (value != 0 && value > -1e7 && value < 1e7 && value == (long) value)
+			return this.writeLong((long) value).write('.').write('0');
+		return this.write(Double.toString(value));
+	}
+
+	/** writes "value" like {@link Number#toString()}, which is what {@link JSONEncoder#encode(JSONElement)} does */
+	public JSONOutput writeNumber(Number value) {
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+			return this.writeLong(value.longValue());
+		if (value instanceof Double)
+			return this.writeDouble(value.doubleValue());
+		return this.write(value.toString());
+	}
+
+	/** sends buffered bytes to the target, if any, and flushes the target */
+	public void flush() {
+		if (this.target == null)
+			return;
+		try {
+			this.drain();
+			this.target.flush();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/** forgets the bytes in the buffer, to reuse this output, if it has no target */
+	public void reset() {
+		this.count = 0;
+		this.flushed = 0;
+	}
+
+	/** returns a copy of the bytes in the buffer */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(this.buffer, this.count);
+	}
+
+	/** returns the bytes in the buffer, without copy, until this output is modified */
+	public ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(this.buffer, 0, this.count);
+	}
+
+	@Override
+	public String toString() {
+		return new String(this.buffer, 0, this.count, StandardCharsets.UTF_8);
+	}
+
+	private static final long[] POWERS_OF_TEN = new long[19];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	/** ensures that "length" bytes (32 at most) can be written, by sending the buffer to the target or by growing it */
+	private void makeRoom(int length) {
+		if (this.count + length <= this.buffer.length)
+			return;
+		if (this.target != null) {
+			try {
+				this.drain();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		} else {
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.count + length));
+		}
+	}
+
+	private void drain() throws IOException {
+		if (this.count > 0) {
+			this.target.write(this.buffer, 0, this.count);
+			this.flushed += this.count;
+			this.count = 0;
+		}
+	}
+
+	/** encodes "text" in UTF-8, escaping characters if needed, with a fast path for ASCII characters */
+	private JSONOutput write(CharSequence text, boolean escape) {
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			// Fast path : copy ASCII characters as long as they fit in the buffer and do not need escaping
+			byte[] b = this.buffer;
+			int j = this.count;
+			int end = Math.min(length, i + b.length - j);
+			while (i < end) {
+				char c = text.charAt(i);
+				if (c >= 0x80 || (escape && ESCAPES[c] != null))
+					break;
+				b[j++] = (byte) c;
+				i++;
+			}
+			this.count = j;
+			if (i == length)
+				break;
+			// Slow path, for one character at least 6 bytes are needed in the worst case ("\\u001f")
+			this.makeRoom(6);
+			b = this.buffer;
+			j = this.count;
+			char c = text.charAt(i++);
+			if (c < 0x80) {
+				byte[] replacement = ESCAPES[c];
+				if (replacement == null || !escape) {
+					b[j++] = (byte) c;
+				} else {
+					System.arraycopy(replacement, 0, b, j, replacement.length);
+					j += replacement.length;
+				}
+			} else if (c < 0x800) {
+				b[j++] = (byte) (0xC0 | (c >> 6));
+				b[j++] = (byte) (0x80 | (c & 0x3F));
+			} else if (escape && (c == '\u2028' || c == '\u2029')) {
+				b[j++] = '\\';
+				b[j++] = 'u';
+				b[j++] = '2';
+				b[j++] = '0';
+				b[j++] = '2';
+				b[j++] = (byte) (c == '\u2028' ? '8' : '9');
+			} else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(text.charAt(i))) {
+				int codePoint = Character.toCodePoint(c, text.charAt(i++));
+				b[j++] = (byte) (0xF0 | (codePoint >> 18));
+				b[j++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				b[j++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				b[j++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				// Like String.getBytes, a lone surrogate can not be encoded
+				b[j++] = '?';
+			} else {
+				b[j++] = (byte) (0xE0 | (c >> 12));
+				b[j++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				b[j++] = (byte) (0x80 | (c & 0x3F));
+			}
+			this.count = j;
+		}
+		return this;
+	}
+
+}
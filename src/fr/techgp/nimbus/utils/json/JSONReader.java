@@ -0,0 +1,593 @@
+package fr.techgp.nimbus.utils.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamElementRenderer;
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamRenderer;
+
+/**
+ * This class reads a JSON document token by token from a {@link Reader} or an UTF-8 {@link InputStream}, using a
+ * fixed-size buffer, so that large documents can be processed incrementally with constant memory.
+ * <pre>
+ * try (JSONReader reader = new JSONReader(inputStream)) {
+ *     reader.beginArray();
+ *     while (reader.hasNext()) {
+ *         reader.beginObject();
+ *         while (reader.hasNext()) {
+ *             if ("id".equals(reader.nextName()))
+ *                 ids.add(reader.nextLong());
+ *             else
+ *                 reader.skipValue();
+ *         }
+ *         reader.endObject();
+ *     }
+ *     reader.endArray();
+ * }
+ * </pre>
+ * Values can also be sent to a {@link JSONStreamRenderer}, using {@link JSONReader#nextValue(JSONStreamRenderer)}, or
+ * decoded as a {@link JSONElement}, using {@link JSONReader#nextElement()}.
+ */
+public class JSONReader implements Closeable {
+
+	/** The kinds of token returned by {@link JSONReader#peek()} */
+	public static enum Token {
+		BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	// The scopes, stacked while entering arrays and objects
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_ARRAY = 2;
+	private static final int NONEMPTY_ARRAY = 3;
+	private static final int EMPTY_OBJECT = 4;
+	/** inside an object, after a name and before its value */
+	private static final int DANGLING_NAME = 5;
+	private static final int NONEMPTY_OBJECT = 6;
+
+	private final Reader reader;
+	private final char[] buffer = new char[8192];
+	/** the current position in the buffer */
+	private int pos = 0;
+	/** the end of the available characters in the buffer */
+	private int limit = 0;
+	/** the number of characters consumed before the buffer, to report positions */
+	private long consumed = 0;
+	/** the buffer used for names, strings and numbers, reused between tokens */
+	private final StringBuilder builder = new StringBuilder();
+	private int[] stack = new int[32];
+	private int depth = 1;
+	/** the next token, when already peeked */
+	private Token peeked = null;
+	/** the value of the next boolean token, when already peeked */
+	private boolean peekedBoolean;
+
+	public JSONReader(Reader reader) {
+		this.reader = reader;
+		this.stack[0] = EMPTY_DOCUMENT;
+	}
+
+	public JSONReader(InputStream utf8) {
+		this(new InputStreamReader(utf8, StandardCharsets.UTF_8));
+	}
+
+	/** returns the type of the next token, without consuming it */
+	public Token peek() throws IOException {
+		if (this.peeked == null)
+			this.peeked = this.doPeek();
+		return this.peeked;
+	}
+
+	/** returns true if the current array or object has another element */
+	public boolean hasNext() throws IOException {
+		Token token = this.peek();
+		return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+	}
+
+	public void beginArray() throws IOException {
+		this.expect(Token.BEGIN_ARRAY);
+		this.push(EMPTY_ARRAY);
+	}
+
+	public void endArray() throws IOException {
+		this.expect(Token.END_ARRAY);
+		this.depth--;
+	}
+
+	public void beginObject() throws IOException {
+		this.expect(Token.BEGIN_OBJECT);
+		this.push(EMPTY_OBJECT);
+	}
+
+	public void endObject() throws IOException {
+		this.expect(Token.END_OBJECT);
+		this.depth--;
+	}
+
+	public String nextName() throws IOException {
+		this.expect(Token.NAME);
+		return this.readString();
+	}
+
+	/** returns the next string, or the text of the next number */
+	public String nextString() throws IOException {
+		Token token = this.peek();
+		if (token == Token.NUMBER) {
+			this.peeked = null;
+			return this.readNumber();
+		}
+		this.expect(Token.STRING);
+		return this.readString();
+	}
+
+	public boolean nextBoolean() throws IOException {
+		this.expect(Token.BOOLEAN);
+		return this.peekedBoolean;
+	}
+
+	public void nextNull() throws IOException {
+		this.expect(Token.NULL);
+	}
+
+	/** returns the next number as a {@link Long} if it is an integer fitting in a long, or as a {@link Double} otherwise */
+	public Number nextNumber() throws IOException {
+		this.expect(Token.NUMBER);
+		this.scanNumber();
+		if (this.isInteger() && this.builder.length() <= 18)
+			return Long.valueOf(this.parseInteger());
+		String text = this.builder.toString();
+		if (this.isInteger()) {
+			try {
+				return Long.valueOf(Long.parseLong(text));
+			} catch (NumberFormatException ex) {
+				// too large for a long, use a double
+			}
+		}
+		return Double.valueOf(Double.parseDouble(text));
+	}
+
+	/** returns the next number as a long, failing if it is not an integer or does not fit in a long */
+	public long nextLong() throws IOException {
+		this.expect(Token.NUMBER);
+		long start = this.position();
+		this.scanNumber();
+		if (this.isInteger() && this.builder.length() <= 18)
+			return this.parseInteger();
+		String text = this.builder.toString();
+		try {
+			return Long.parseLong(text);
+		} catch (NumberFormatException ex) {
+			double value = Double.parseDouble(text);
+			if ((long) value != value || value == Long.MAX_VALUE)
+				throw this.error("Expected a long but was " + text, start);
+			return (long) value;
+		}
+	}
+
+	public int nextInt() throws IOException {
+		long start = this.position();
+		long value = this.nextLong();
+		if ((int) value != value)
+			throw this.error("Expected an int but was " + value, start);
+		return (int) value;
+	}
+
+	public double nextDouble() throws IOException {
+		this.expect(Token.NUMBER);
+		this.scanNumber();
+		return this.isInteger() && this.builder.length() <= 15 ? this.parseInteger() : Double.parseDouble(this.builder.toString());
+	}
+
+	/** consumes the next value (or the next name and its value), including nested arrays and objects, without decoding it */
+	public void skipValue() throws IOException {
+		if (this.peek() == Token.NAME) {
+			this.peeked = null;
+			this.skipString();
+		}
+		int count = 0;
+		do {
+			switch (this.peek()) {
+				case BEGIN_ARRAY:
+					this.beginArray();
+					count++;
+					break;
+				case BEGIN_OBJECT:
+					this.beginObject();
+					count++;
+					break;
+				case END_ARRAY:
+					if (count == 0)
+						throw this.error("Found END_ARRAY but expecting a value", this.position());
+					this.endArray();
+					count--;
+					break;
+				case END_OBJECT:
+					if (count == 0)
+						throw this.error("Found END_OBJECT but expecting a value", this.position());
+					this.endObject();
+					count--;
+					break;
+				case NAME:
+					// only inside a nested object, whose property value will be skipped next
+					this.peeked = null;
+					this.skipString();
+					break;
+				case STRING:
+					this.peeked = null;
+					this.skipString();
+					break;
+				case NUMBER:
+					this.peeked = null;
+					this.scanNumber();
+					break;
+				case BOOLEAN:
+				case NULL:
+					this.peeked = null;
+					break;
+				case END_DOCUMENT:
+					throw this.error("Unexpected end of stream", this.position());
+			}
+		} while (count != 0);
+	}
+
+	/** reads the next value and sends the matching events to "renderer", for instance to transform a document while reading it */
+	public void nextValue(JSONStreamRenderer renderer) throws IOException {
+		switch (this.peek()) {
+			case BEGIN_ARRAY:
+				this.beginArray();
+				renderer.beginArray();
+				for (boolean first = true; this.hasNext(); first = false) {
+					if (!first)
+						renderer.separator();
+					this.nextValue(renderer);
+				}
+				this.endArray();
+				renderer.endArray();
+				break;
+			case BEGIN_OBJECT:
+				this.beginObject();
+				renderer.beginObject();
+				for (boolean first = true; this.hasNext(); first = false) {
+					if (!first)
+						renderer.separator();
+					renderer.name(this.nextName());
+					this.nextValue(renderer);
+				}
+				this.endObject();
+				renderer.endObject();
+				break;
+			case STRING:
+				renderer.value(this.nextString());
+				break;
+			case NUMBER:
+				Number number = this.nextNumber();
+				if (number instanceof Long)
+					renderer.value(number.longValue());
+				else
+					renderer.value(number.doubleValue());
+				break;
+			case BOOLEAN:
+				renderer.value(this.nextBoolean());
+				break;
+			case NULL:
+				this.nextNull();
+				renderer.nullValue();
+				break;
+			default:
+				throw this.error("Found " + this.peek() + " but expecting a value", this.position());
+		}
+	}
+
+	/** reads the next value as a {@link JSONElement} */
+	public JSONElement nextElement() throws IOException {
+		JSONStreamElementRenderer renderer = new JSONStreamElementRenderer();
+		this.nextValue(renderer);
+		return renderer.getResult();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.peeked = null;
+		this.depth = 0;
+		this.reader.close();
+	}
+
+	/** returns the position of the next character, from the start of the document */
+	private long position() {
+		return this.consumed + this.pos;
+	}
+
+	private IOException error(String message, long position) {
+		return new IOException(message + " at position " + position);
+	}
+
+	private void expect(Token expected) throws IOException {
+		Token token = this.peek();
+		if (token != expected)
+			throw this.error("Found " + token + " but expecting " + expected, this.position());
+		this.peeked = null;
+	}
+
+	private void push(int scope) {
+		if (this.depth == this.stack.length)
+			this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+		this.stack[this.depth++] = scope;
+	}
+
+	/** makes at least "count" characters available in the buffer, returning false if the stream ends before */
+	private boolean fill(int count) throws IOException {
+		if (this.limit - this.pos >= count)
+			return true;
+		// Move remaining characters at the beginning of the buffer
+		System.arraycopy(this.buffer, this.pos, this.buffer, 0, this.limit - this.pos);
+		this.consumed += this.pos;
+		this.limit -= this.pos;
+		this.pos = 0;
+		while (this.limit < count) {
+			int read = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+			if (read == -1)
+				return false;
+			this.limit += read;
+		}
+		return true;
+	}
+
+	/** skips whitespaces and returns the next character, without consuming it, or -1 at the end of the stream */
+	private int nextNonWhitespace() throws IOException {
+		while (this.pos < this.limit || this.fill(1)) {
+			char c = this.buffer[this.pos];
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+				return c;
+			this.pos++;
+		}
+		return -1;
+	}
+
+	/** reads the next token, consuming structural characters and literals, but not strings and numbers */
+	private Token doPeek() throws IOException {
+		if (this.depth == 0)
+			throw new IllegalStateException("JSONReader is closed");
+		int scope = this.stack[this.depth - 1];
+		int c = this.nextNonWhitespace();
+		switch (scope) {
+			case EMPTY_ARRAY:
+				this.stack[this.depth - 1] = NONEMPTY_ARRAY;
+				if (c == ']') {
+					this.pos++;
+					return Token.END_ARRAY;
+				}
+				break;
+			case NONEMPTY_ARRAY:
+				if (c == ']') {
+					this.pos++;
+					return Token.END_ARRAY;
+				}
+				this.consume(c, ',', "\",\" or \"]\"");
+				c = this.nextNonWhitespace();
+				break;
+			case EMPTY_OBJECT:
+			case NONEMPTY_OBJECT:
+				if (c == '}') {
+					this.pos++;
+					return Token.END_OBJECT;
+				}
+				if (scope == NONEMPTY_OBJECT) {
+					this.consume(c, ',', "\",\" or \"}\"");
+					c = this.nextNonWhitespace();
+				}
+				if (c != '"')
+					throw this.error("Found " + this.describe(c) + " but expecting a property name", this.position());
+				this.pos++;
+				this.stack[this.depth - 1] = DANGLING_NAME;
+				return Token.NAME;
+			case DANGLING_NAME:
+				this.consume(c, ':', "\":\"");
+				c = this.nextNonWhitespace();
+				this.stack[this.depth - 1] = NONEMPTY_OBJECT;
+				break;
+			case EMPTY_DOCUMENT:
+				this.stack[this.depth - 1] = NONEMPTY_DOCUMENT;
+				break;
+			case NONEMPTY_DOCUMENT:
+				if (c == -1)
+					return Token.END_DOCUMENT;
+				throw this.error("Found " + this.describe(c) + " but expecting end of stream", this.position());
+			default:
+				throw new IllegalStateException("Unexpected scope " + scope);
+		}
+		// A value is expected
+		switch (c) {
+			case -1:
+				throw this.error("Unexpected end of stream", this.position());
+			case '[':
+				this.pos++;
+				return Token.BEGIN_ARRAY;
+			case '{':
+				this.pos++;
+				return Token.BEGIN_OBJECT;
+			case '"':
+				this.pos++;
+				return Token.STRING;
+			case 't':
+				this.consumeLiteral("true");
+				this.peekedBoolean = true;
+				return Token.BOOLEAN;
+			case 'f':
+				this.consumeLiteral("false");
+				this.peekedBoolean = false;
+				return Token.BOOLEAN;
+			case 'n':
+				this.consumeLiteral("null");
+				return Token.NULL;
+			default:
+				if (c == '-' || (c >= '0' && c <= '9'))
+					return Token.NUMBER;
+				throw this.error("Found " + this.describe(c) + " but expecting a value", this.position());
+		}
+	}
+
+	private String describe(int c) {
+		return c == -1 ? "end of stream" : ("\"" + (char) c + "\"");
+	}
+
+	private void consume(int c, char expected, String description) throws IOException {
+		if (c != expected)
+			throw this.error("Found " + this.describe(c) + " but expecting " + description, this.position());
+		this.pos++;
+	}
+
+	private void consumeLiteral(String literal) throws IOException {
+		int length = literal.length();
+		boolean valid = this.fill(length);
+		for (int i = 1; valid && i < length; i++) {
+			valid = this.buffer[this.pos + i] == literal.charAt(i);
+		}
+		// The literal must not be followed by other letters or digits
+		if (valid && (this.pos + length < this.limit || this.fill(length + 1)))
+			valid = !Character.isLetterOrDigit(this.buffer[this.pos + length]);
+		if (!valid)
+			throw this.error("Found invalid literal but expecting " + literal, this.position());
+		this.pos += length;
+	}
+
+	/** reads the string whose opening quote has already been consumed */
+	private String readString() throws IOException {
+		StringBuilder sb = this.builder;
+		sb.setLength(0);
+		while (true) {
+			int start = this.pos;
+			while (this.pos < this.limit) {
+				char c = this.buffer[this.pos];
+				if (c == '"') {
+					sb.append(this.buffer, start, this.pos - start);
+					this.pos++;
+					return sb.toString();
+				}
+				if (c == '\\') {
+					sb.append(this.buffer, start, this.pos - start);
+					this.unescape(sb);
+					start = this.pos;
+					continue;
+				}
+				this.pos++;
+			}
+			sb.append(this.buffer, start, this.pos - start);
+			if (!this.fill(1))
+				throw this.error("Un-terminated string", this.position());
+		}
+	}
+
+	/** skips the string whose opening quote has already been consumed */
+	private void skipString() throws IOException {
+		while (this.pos < this.limit || this.fill(1)) {
+			char c = this.buffer[this.pos++];
+			if (c == '"')
+				return;
+			if (c == '\\') {
+				// the escaped character can not end the string, and \\uXXXX contains only hexadecimal digits
+				if (!this.fill(1))
+					break;
+				this.pos++;
+			}
+		}
+		throw this.error("Un-terminated string", this.position());
+	}
+
+	/** decodes the escape sequence at current position into "sb" */
+	private void unescape(StringBuilder sb) throws IOException {
+		long start = this.position();
+		if (!this.fill(2))
+			throw this.error("Un-terminated string", start);
+		char c = this.buffer[this.pos + 1];
+		char unescaped = JSON.unescapedChar(c);
+		if (unescaped != 0) {
+			sb.append(unescaped);
+			this.pos += 2;
+			return;
+		}
+		if (c == 'u') {
+			if (!this.fill(6))
+				throw this.error("Un-terminated string", start);
+			char[] b = this.buffer;
+			int value = JSON.hexValue(b[this.pos + 2], b[this.pos + 3], b[this.pos + 4], b[this.pos + 5]);
+			if (value >= 0) {
+				sb.append((char) value);
+				this.pos += 6;
+				return;
+			}
+		}
+		throw this.error("Invalid escape sequence", start);
+	}
+
+	/** reads the next number and returns its text */
+	private String readNumber() throws IOException {
+		this.scanNumber();
+		return this.builder.toString();
+	}
+
+	/** reads the characters of the next number into the buffer and checks its syntax */
+	private void scanNumber() throws IOException {
+		long start = this.position();
+		StringBuilder sb = this.builder;
+		sb.setLength(0);
+		while (this.pos < this.limit || this.fill(1)) {
+			char c = this.buffer[this.pos];
+			if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+				sb.append(c);
+				this.pos++;
+			} else {
+				break;
+			}
+		}
+		// -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?, with leading zeros accepted like JSONDecoder
+		int i = sb.length() > 0 && sb.charAt(0) == '-' ? 1 : 0;
+		int digits = this.skipDigits(sb, i);
+		boolean valid = digits > i;
+		if (valid && digits < sb.length() && sb.charAt(digits) == '.') {
+			i = digits + 1;
+			digits = this.skipDigits(sb, i);
+			valid = digits > i;
+		}
+		if (valid && digits < sb.length() && (sb.charAt(digits) == 'e' || sb.charAt(digits) == 'E')) {
+			i = digits + 1;
+			if (i < sb.length() && (sb.charAt(i) == '-' || sb.charAt(i) == '+'))
+				i++;
+			digits = this.skipDigits(sb, i);
+			valid = digits > i;
+		}
+		if (!valid || digits != sb.length())
+			throw this.error(sb + " is not a valid number", start);
+	}
+
+	private int skipDigits(StringBuilder sb, int i) {
+		while (i < sb.length() && sb.charAt(i) >= '0' && sb.charAt(i) <= '9')
+			i++;
+		return i;
+	}
+
+	/** returns true if the number in the buffer has neither fraction nor exponent */
+	private boolean isInteger() {
+		for (int i = 0; i < this.builder.length(); i++) {
+			char c = this.builder.charAt(i);
+			if (c == '.' || c == 'e' || c == 'E')
+				return false;
+		}
+		return true;
+	}
+
+	/** parses the integer in the buffer, which is known to fit in a long (18 digits at most) */
+	private long parseInteger() {
+		boolean negative = this.builder.charAt(0) == '-';
+		long value = 0;
+		for (int i = negative ? 1 : 0; i < this.builder.length(); i++) {
+			value = value * 10 + (this.builder.charAt(i) - '0');
+		}
+		return negative ? -value : value;
+	}
+
+}
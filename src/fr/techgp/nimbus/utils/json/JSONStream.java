@@ -1,5 +1,6 @@
 package fr.techgp.nimbus.utils.json;
 
+import java.io.OutputStream;
 import java.util.Objects;
 import java.util.Stack;
 import java.util.function.Consumer;
@@ -281,6 +282,54 @@ public class JSONStream {
 
 	}
 
+	/**
+	 * This renderer writes tokens as UTF-8 bytes to a {@link JSONOutput}, escaping strings directly in its buffer,
+	 * either into a growable buffer or to an {@link java.io.OutputStream} in chunks. Call {@link #flush()} when done.
+	 */
+	public static class JSONStreamBytesRenderer implements JSONStreamRenderer {
+
+		private final JSONOutput output;
+
+		/** creates a renderer writing into a growable buffer, available with {@link #getOutput()} */
+		public JSONStreamBytesRenderer() {
+			this(new JSONOutput());
+		}
+
+		/** creates a renderer writing to "stream" in chunks of 8 KB */
+		public JSONStreamBytesRenderer(OutputStream stream) {
+			this(new JSONOutput(stream));
+		}
+
+		public JSONStreamBytesRenderer(JSONOutput output) {
+			super();
+			this.output = Objects.requireNonNull(output);
+		}
+
+		public JSONOutput getOutput() {
+			return this.output;
+		}
+
+		/** sends the remaining bytes to the target stream, if any */
+		public void flush() {
+			this.output.flush();
+		}
+
+		@Override public void beginObject()        { this.output.write('{'); }
+		@Override public void endObject()          { this.output.write('}'); }
+		@Override public void beginArray()         { this.output.write('['); }
+		@Override public void endArray()           { this.output.write(']'); }
+		@Override public void separator()          { this.output.write(','); }
+		@Override public void name(String name)    { this.output.writeString(name).write(':'); }
+		@Override public void value(Boolean value) { if (value == null) this.output.writeNull(); else this.output.writeBoolean(value); }
+		@Override public void value(boolean value) { this.output.writeBoolean(value); }
+		@Override public void value(String value)  { if (value == null) this.output.writeNull(); else this.output.writeString(value); }
+		@Override public void value(Number value)  { if (value == null) this.output.writeNull(); else this.output.writeNumber(value); }
+		@Override public void value(long value)    { this.output.writeLong(value); }
+		@Override public void value(double value)  { this.output.writeDouble(value); }
+		@Override public void nullValue()          { this.output.writeNull(); }
+
+	}
+
 	public static class JSONStreamElementRenderer implements JSONStreamRenderer {
 
 		private Stack<JSONElement> parents = new Stack<>();
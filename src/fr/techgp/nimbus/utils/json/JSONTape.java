@@ -0,0 +1,599 @@
+package fr.techgp.nimbus.utils.json;
+
+import java.text.ParseException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamRenderer;
+
+/**
+ * This class is a compact and read-only representation of a JSON document, as an alternative to a {@link JSONElement}
+ * tree when memory matters. Values are stored in document order, one slot per value, in parallel primitive arrays :
+ * <ul>
+ * <li>"types" stores the type of each slot (object, array, property name, string, long, double, true, false or null)</li>
+ * <li>"values" stores the value of numbers, the position and length of strings in "text", and for objects and arrays,
+ * the slot following their last descendant (to skip them) and their size</li>
+ * <li>"text" stores the characters of all strings and property names, one after the other</li>
+ * </ul>
+ * An object is a flat sequence of property name and value slots, searched linearly when it is small. Larger objects and
+ * arrays get an index on first access. Values are accessed with {@link Node}, a lightweight view implementing
+ * {@link JSONElement}, which builds regular {@link JSONArray}, {@link JSONObject}, ... only when asked.
+ * <br />An instance can be read concurrently.
+ */
+public final class JSONTape {
+
+	private static final byte OBJECT = 1;
+	private static final byte ARRAY = 2;
+	private static final byte NAME = 3;
+	private static final byte STRING = 4;
+	private static final byte LONG = 5;
+	private static final byte DOUBLE = 6;
+	private static final byte TRUE = 7;
+	private static final byte FALSE = 8;
+	private static final byte NULL = 9;
+
+	/** objects and arrays above this size get an index instead of being searched linearly */
+	private static final int INDEX_THRESHOLD = 8;
+
+	private final byte[] types;
+	private final long[] values;
+	private final char[] text;
+	/** indexes of large objects (hash table of name slots) and large arrays (value slots), built on first access */
+	private final Map<Integer, int[]> indexes = new ConcurrentHashMap<>();
+
+	private JSONTape(byte[] types, long[] values, char[] text) {
+		this.types = types;
+		this.values = values;
+		this.text = text;
+	}
+
+	public static final JSONTape decode(String json) throws ParseException {
+		Builder builder = new Builder();
+		new JSONDecoder().decode(json, builder);
+		return builder.build();
+	}
+
+	public static final JSONTape decode(byte[] utf8, int offset, int length) throws ParseException {
+		Builder builder = new Builder();
+		new JSONDecoder().decode(utf8, offset, length, builder);
+		return builder.build();
+	}
+
+	/** returns the root value of the document */
+	public Node root() {
+		return new Node(this, 0);
+	}
+
+	/** returns the number of slots, which is the number of values and property names in the document */
+	public int slots() {
+		return this.types.length;
+	}
+
+	/** returns the slot following "slot" and its descendants */
+	private int next(int slot) {
+		byte type = this.types[slot];
+		return type == OBJECT || type == ARRAY ? (int) (this.values[slot] >>> 32) : slot + 1;
+	}
+
+	/** returns the number of properties of an object or elements of an array */
+	private int size(int slot) {
+		return (int) this.values[slot];
+	}
+
+	private String string(int slot) {
+		long value = this.values[slot];
+		return new String(this.text, (int) (value >>> 32), (int) value);
+	}
+
+	/** returns true if the name at "slot" is "name", without building a String */
+	private boolean matches(int slot, String name) {
+		long value = this.values[slot];
+		int length = (int) value;
+		if (length != name.length())
+			return false;
+		int start = (int) (value >>> 32);
+		for (int i = 0; i < length; i++) {
+			if (this.text[start + i] != name.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	/** returns true if the names at "slot1" and "slot2" are equal */
+	private boolean sameName(int slot1, int slot2) {
+		long value1 = this.values[slot1];
+		long value2 = this.values[slot2];
+		int length = (int) value1;
+		if (length != (int) value2)
+			return false;
+		return Arrays.equals(this.text, (int) (value1 >>> 32), (int) (value1 >>> 32) + length, this.text, (int) (value2 >>> 32), (int) (value2 >>> 32) + length);
+	}
+
+	/** returns the same hash code as {@link String#hashCode()} for the name at "slot" */
+	private int hash(int slot) {
+		long value = this.values[slot];
+		int start = (int) (value >>> 32);
+		int end = start + (int) value;
+		int h = 0;
+		for (int i = start; i < end; i++) {
+			h = 31 * h + this.text[i];
+		}
+		return h;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/** returns the slot of the value of property "name" in the object at "slot", or -1. If "name" is duplicated, the last one wins, like {@link JSONObject} */
+	private int find(int slot, String name) {
+		if (this.size(slot) <= INDEX_THRESHOLD) {
+			int found = -1;
+			int end = this.next(slot);
+			for (int i = slot + 1; i < end; i = this.next(i + 1)) {
+				if (this.matches(i, name))
+					found = i + 1;
+			}
+			return found;
+		}
+		int[] table = this.indexes.computeIfAbsent(slot, this::indexObject);
+		int mask = table.length - 1;
+		for (int i = spread(name.hashCode()) & mask; table[i] != 0; i = (i + 1) & mask) {
+			if (this.matches(table[i] - 1, name))
+				return table[i];
+		}
+		return -1;
+	}
+
+	/** builds an open-addressing table of the name slots (plus one, so that 0 means empty) of the object at "slot" */
+	private int[] indexObject(int slot) {
+		int[] table = new int[Integer.highestOneBit(this.size(slot)) * 4];
+		int mask = table.length - 1;
+		int end = this.next(slot);
+		for (int name = slot + 1; name < end; name = this.next(name + 1)) {
+			int i = spread(this.hash(name)) & mask;
+			while (table[i] != 0 && !this.sameName(table[i] - 1, name))
+				i = (i + 1) & mask;
+			table[i] = name + 1;
+		}
+		return table;
+	}
+
+	/** returns the slot of the element at "index" in the array at "slot" */
+	private int element(int slot, int index) {
+		Objects.checkIndex(index, this.size(slot));
+		if (this.size(slot) > INDEX_THRESHOLD)
+			return this.indexes.computeIfAbsent(slot, this::indexArray)[index];
+		int i = slot + 1;
+		for (int j = 0; j < index; j++) {
+			i = this.next(i);
+		}
+		return i;
+	}
+
+	private int[] indexArray(int slot) {
+		int[] elements = new int[this.size(slot)];
+		int i = slot + 1;
+		for (int j = 0; j < elements.length; j++) {
+			elements[j] = i;
+			i = this.next(i);
+		}
+		return elements;
+	}
+
+	/** builds a regular {@link JSONElement} tree for the value at "slot" */
+	private JSONElement toElement(int slot) {
+		switch (this.types[slot]) {
+			case OBJECT: {
+				JSONObject result = new JSONObject();
+				int end = this.next(slot);
+				for (int i = slot + 1; i < end; i = this.next(i + 1)) {
+					result.set(this.string(i), this.toElement(i + 1));
+				}
+				return result;
+			}
+			case ARRAY: {
+				JSONArray result = new JSONArray();
+				int end = this.next(slot);
+				for (int i = slot + 1; i < end; i = this.next(i)) {
+					result.add(this.toElement(i));
+				}
+				return result;
+			}
+			case STRING:
+				return new JSONString(this.string(slot));
+			case LONG:
+				return new JSONNumber(this.values[slot]);
+			case DOUBLE:
+				return new JSONNumber(Double.longBitsToDouble(this.values[slot]));
+			case TRUE:
+				return JSONBoolean.TRUE_INSTANCE;
+			case FALSE:
+				return JSONBoolean.FALSE_INSTANCE;
+			default:
+				return JSONNull.INSTANCE;
+		}
+	}
+
+	/** encodes the value at "slot" like {@link JSONEncoder#encode(JSONElement)} */
+	private void encode(int slot, StringBuilder sb) {
+		switch (this.types[slot]) {
+			case OBJECT: {
+				sb.append('{');
+				int end = this.next(slot);
+				for (int i = slot + 1; i < end; i = this.next(i + 1)) {
+					if (i > slot + 1)
+						sb.append(',');
+					this.encode(i, sb);
+					sb.append(':');
+					this.encode(i + 1, sb);
+				}
+				sb.append('}');
+				break;
+			}
+			case ARRAY: {
+				sb.append('[');
+				int end = this.next(slot);
+				for (int i = slot + 1; i < end; i = this.next(i)) {
+					if (i > slot + 1)
+						sb.append(',');
+					this.encode(i, sb);
+				}
+				sb.append(']');
+				break;
+			}
+			case NAME:
+			case STRING:
+				sb.append('"');
+				JSON.escapeTo(this.string(slot), sb);
+				sb.append('"');
+				break;
+			case LONG:
+				sb.append(this.values[slot]);
+				break;
+			case DOUBLE:
+				sb.append(Double.longBitsToDouble(this.values[slot]));
+				break;
+			case TRUE:
+				sb.append("true");
+				break;
+			case FALSE:
+				sb.append("false");
+				break;
+			default:
+				sb.append("null");
+				break;
+		}
+	}
+
+	/**
+	 * A value of a {@link JSONTape}. Accessors read the tape directly and the "as" methods ({@link #asObject()},
+	 * {@link #asArray()}, ...) return a regular copy of the value, so that it can be used wherever a
+	 * {@link JSONElement} is expected.
+	 * <p>
+	 * A node is equal to any node with the same content, but never to a regular element, because regular elements
+	 * only compare with their own class and equality has to stay symmetric. Use {@link #toElement()} to compare a
+	 * node with a regular element.
+	 */
+	public static final class Node implements JSONElement {
+
+		private final JSONTape tape;
+		private final int slot;
+
+		private Node(JSONTape tape, int slot) {
+			this.tape = tape;
+			this.slot = slot;
+		}
+
+		private byte type() {
+			return this.tape.types[this.slot];
+		}
+
+		/** returns the JSON type of this value, as used in error messages */
+		private String typeName() {
+			switch (this.type()) {
+				case OBJECT: return "object";
+				case ARRAY: return "array";
+				case STRING: return "string";
+				case LONG:
+				case DOUBLE: return "number";
+				case TRUE:
+				case FALSE: return "boolean";
+				default: return "null";
+			}
+		}
+
+		private IllegalStateException invalidType(String expected) {
+			return new IllegalStateException("JSON " + this.typeName() + " is not a JSON " + expected);
+		}
+
+		@Override public boolean isArray()   { return this.type() == ARRAY; }
+		@Override public boolean isObject()  { return this.type() == OBJECT; }
+		@Override public boolean isNull()    { return this.type() == NULL; }
+		@Override public boolean isBoolean() { return this.type() == TRUE || this.type() == FALSE; }
+		@Override public boolean isString()  { return this.type() == STRING; }
+		@Override public boolean isNumber()  { return this.type() == LONG || this.type() == DOUBLE; }
+
+		/** returns the number of properties of an object or elements of an array */
+		public int size() {
+			if (!this.isArray() && !this.isObject())
+				throw this.invalidType("array or object");
+			return this.tape.size(this.slot);
+		}
+
+		public boolean isEmpty() {
+			return this.size() == 0;
+		}
+
+		/** returns true if this object has a property "property" */
+		public boolean has(String property) {
+			if (!this.isObject())
+				throw this.invalidType("object");
+			return this.tape.find(this.slot, property) >= 0;
+		}
+
+		/** returns the value of property "property" of this object, or null */
+		public Node get(String property) {
+			if (!this.isObject())
+				throw this.invalidType("object");
+			int found = this.tape.find(this.slot, property);
+			return found >= 0 ? new Node(this.tape, found) : null;
+		}
+
+		/** returns the element at "index" of this array */
+		public Node get(int index) {
+			if (!this.isArray())
+				throw this.invalidType("array");
+			return new Node(this.tape, this.tape.element(this.slot, index));
+		}
+
+		/** iterates over the elements of this array */
+		public Iterable<Node> elements() {
+			if (!this.isArray())
+				throw this.invalidType("array");
+			return () -> new SlotIterator<>(this.tape, this.slot, (i) -> new Node(this.tape, i));
+		}
+
+		/** iterates over the properties of this object, in document order */
+		public Iterable<Map.Entry<String, Node>> properties() {
+			if (!this.isObject())
+				throw this.invalidType("object");
+			return () -> new SlotIterator<>(this.tape, this.slot, (i) -> new AbstractMap.SimpleImmutableEntry<>(this.tape.string(i), new Node(this.tape, i + 1)));
+		}
+
+		public String getString() {
+			if (!this.isString())
+				throw this.invalidType("string");
+			return this.tape.string(this.slot);
+		}
+
+		/** returns the value of this number, as a {@link Long} or a {@link Double} like {@link JSONDecoder} */
+		public Number getNumber() {
+			if (this.type() == LONG)
+				return this.tape.values[this.slot];
+			return this.getDouble();
+		}
+
+		public long getLong() {
+			if (this.type() == LONG)
+				return this.tape.values[this.slot];
+			return (long) this.getDouble();
+		}
+
+		public double getDouble() {
+			if (this.type() == LONG)
+				return this.tape.values[this.slot];
+			if (this.type() != DOUBLE)
+				throw this.invalidType("number");
+			return Double.longBitsToDouble(this.tape.values[this.slot]);
+		}
+
+		public boolean getBoolean() {
+			if (!this.isBoolean())
+				throw this.invalidType("boolean");
+			return this.type() == TRUE;
+		}
+
+		/** returns a regular and mutable copy of this value */
+		public JSONElement toElement() {
+			return this.tape.toElement(this.slot);
+		}
+
+		@Override
+		public JSONElement deepCopy() {
+			return this.toElement();
+		}
+
+		/** visits a regular copy of this value, since {@link JSONVisitor} expects regular elements */
+		@Override
+		public void accept(JSONVisitor visitor) {
+			this.toElement().accept(visitor);
+		}
+
+		@Override
+		public String toJSON() {
+			StringBuilder sb = new StringBuilder();
+			this.tape.encode(this.slot, sb);
+			return sb.toString();
+		}
+
+		@Override public JSONArray asArray()     { if (this.isArray()) return this.toElement().asArray(); throw this.invalidType("array"); }
+		@Override public JSONObject asObject()   { if (this.isObject()) return this.toElement().asObject(); throw this.invalidType("object"); }
+		@Override public JSONNull asNull()       { if (this.isNull()) return JSONNull.INSTANCE; throw this.invalidType("null"); }
+		@Override public JSONBoolean asBoolean() { if (this.isBoolean()) return this.toElement().asBoolean(); throw this.invalidType("boolean"); }
+		@Override public JSONString asString()   { if (this.isString()) return this.toElement().asString(); throw this.invalidType("string"); }
+		@Override public JSONNumber asNumber()   { if (this.isNumber()) return this.toElement().asNumber(); throw this.invalidType("number"); }
+
+		/** returns the hash code of the content, consistent with {@link #equals(Object)} between nodes */
+		@Override
+		public int hashCode() {
+			return this.toElement().hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Node))
+				return false;
+			Node other = (Node) obj;
+			return (this.tape == other.tape && this.slot == other.slot) || this.toElement().equals(other.toElement());
+		}
+
+		@Override
+		public String toString() {
+			return this.toJSON();
+		}
+
+	}
+
+	/** iterates over the children of an array (value slots) or an object (name slots) */
+	private static final class SlotIterator<T> implements Iterator<T> {
+
+		private final JSONTape tape;
+		private final boolean object;
+		private final int end;
+		private final IntFunction<T> factory;
+		private int slot;
+
+		public SlotIterator(JSONTape tape, int parent, IntFunction<T> factory) {
+			this.tape = tape;
+			this.object = tape.types[parent] == OBJECT;
+			this.end = tape.next(parent);
+			this.factory = factory;
+			this.slot = parent + 1;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.slot < this.end;
+		}
+
+		@Override
+		public T next() {
+			if (this.slot >= this.end)
+				throw new NoSuchElementException();
+			T result = this.factory.apply(this.slot);
+			this.slot = this.object ? this.tape.next(this.slot + 1) : this.tape.next(this.slot);
+			return result;
+		}
+
+	}
+
+	/**
+	 * This renderer builds a {@link JSONTape}, from {@link JSONDecoder}, {@link JSONReader#nextValue(JSONStreamRenderer)}
+	 * or {@link JSON#stream(JSONStreamRenderer)} for instance. Other numbers than {@link Long}, {@link Integer},
+	 * {@link Short} and {@link Byte} are stored as double.
+	 */
+	public static final class Builder implements JSONStreamRenderer {
+
+		private byte[] types = new byte[256];
+		private long[] values = new long[256];
+		private char[] text = new char[1024];
+		private int count = 0;
+		private int textLength = 0;
+		/** the slots of the objects and arrays being built, and their size so far */
+		private int[] parents = new int[16];
+		private int[] sizes = new int[16];
+		private int depth = 0;
+
+		public Builder() {
+			super();
+		}
+
+		/** returns the tape, with arrays trimmed to their exact size */
+		public JSONTape build() {
+			if (this.depth != 0 || this.count == 0)
+				throw new IllegalStateException("The document is not complete");
+			return new JSONTape(Arrays.copyOf(this.types, this.count), Arrays.copyOf(this.values, this.count), Arrays.copyOf(this.text, this.textLength));
+		}
+
+		private void add(byte type, long value) {
+			if (this.count == this.types.length) {
+				this.types = Arrays.copyOf(this.types, this.count * 2);
+				this.values = Arrays.copyOf(this.values, this.count * 2);
+			}
+			// Values of an array are counted here, properties of an object are counted with their name
+			if (this.depth > 0 && type != NAME && this.types[this.parents[this.depth - 1]] == ARRAY)
+				this.sizes[this.depth - 1]++;
+			this.types[this.count] = type;
+			this.values[this.count] = value;
+			this.count++;
+		}
+
+		private void addText(byte type, String value) {
+			int length = value.length();
+			if (this.textLength + length > this.text.length)
+				this.text = Arrays.copyOf(this.text, Math.max(this.text.length * 2, this.textLength + length));
+			value.getChars(0, length, this.text, this.textLength);
+			this.add(type, ((long) this.textLength << 32) | length);
+			this.textLength += length;
+		}
+
+		private void begin(byte type) {
+			int slot = this.count;
+			this.add(type, 0);
+			if (this.depth == this.parents.length) {
+				this.parents = Arrays.copyOf(this.parents, this.depth * 2);
+				this.sizes = Arrays.copyOf(this.sizes, this.depth * 2);
+			}
+			this.parents[this.depth] = slot;
+			this.sizes[this.depth] = 0;
+			this.depth++;
+		}
+
+		private void end() {
+			this.depth--;
+			this.values[this.parents[this.depth]] = ((long) this.count << 32) | this.sizes[this.depth];
+		}
+
+		@Override public void beginObject()        { this.begin(OBJECT); }
+		@Override public void endObject()          { this.end(); }
+		@Override public void beginArray()         { this.begin(ARRAY); }
+		@Override public void endArray()           { this.end(); }
+		@Override public void separator()          { /**/ }
+		@Override public void value(Boolean value) { this.add(value == null ? NULL : value.booleanValue() ? TRUE : FALSE, 0); }
+		@Override public void value(boolean value) { this.add(value ? TRUE : FALSE, 0); }
+		@Override public void value(long value)    { this.add(LONG, value); }
+		@Override public void nullValue()          { this.add(NULL, 0); }
+
+		@Override
+		public void name(String name) {
+			this.sizes[this.depth - 1]++;
+			this.addText(NAME, name);
+		}
+
+		@Override
+		public void value(String value) {
+			if (value == null)
+				this.add(NULL, 0);
+			else
+				this.addText(STRING, value);
+		}
+
+		@Override
+		public void value(Number value) {
+			if (value == null)
+				this.add(NULL, 0);
+			else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+				this.add(LONG, value.longValue());
+			else
+				this.value(value.doubleValue());
+		}
+
+		@Override
+		public void value(double value) {
+			if (Double.isNaN(value) || Double.isInfinite(value))
+				throw new IllegalArgumentException(value + " is not supported for JSON");
+			this.add(DOUBLE, Double.doubleToRawLongBits(value));
+		}
+
+	}
+
+}
@@ -0,0 +1,201 @@
+package fr.techgp.nimbus.server.test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import fr.techgp.nimbus.server.Render;
+import fr.techgp.nimbus.server.Router;
+import fr.techgp.nimbus.server.WebSocketJSON;
+import fr.techgp.nimbus.server.WebSocketTopics;
+import fr.techgp.nimbus.server.impl.BinaryClientSession;
+import fr.techgp.nimbus.server.impl.JSONClientSession;
+import fr.techgp.nimbus.server.impl.JWTClientSession;
+import fr.techgp.nimbus.server.impl.JettyServer;
+import fr.techgp.nimbus.server.impl.ServletRequest;
+import fr.techgp.nimbus.server.impl.SessionConfig;
+import fr.techgp.nimbus.utils.json.JSONElement;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Micro-benchmarks for the server API, executed on a single thread (i.e. results are "per core").
+ */
+public final class Perf {
+
+	/** A callable that can throw, measured by {@link Perf#measure(String, int, Step)} */
+	@FunctionalInterface
+	public static interface Step {
+		public void run() throws Exception;
+	}
+
+	public static void main(String[] args) {
+		try {
+			webSocketJSON();
+			webSocketTopics();
+			serverSessions();
+			jwtClientSession();
+			clientSessionFormats();
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/** runs "step" for "loops" iterations, twice to warm up first, and prints the number of operations per second */
+	public static void measure(String name, int loops, Step step) throws Exception {
+		for (int pass = 0; pass < 2; pass++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < loops; i++) {
+				step.run();
+			}
+			long time = System.nanoTime() - start;
+			if (pass == 1)
+				System.out.println(String.format("%-40s %12d ops/s", name, loops * 1_000_000_000L / Math.max(1, time)));
+		}
+	}
+
+	/** compares JSON WebSocket messages per second, as text with Gson and as binary with each WebSocketJSON.Codec */
+	public static void webSocketJSON() throws Exception {
+		String message = "{\"type\":\"message\",\"username\":\"User12\",\"message\":\"Hello \\\"world\\\" ! \u00e9\u20ac\uD83D\uDE00\",\"time\":1700000000000,"
+				+ "\"userlist\":[\"User1\",\"User2\",\"User3\",\"User12\"],\"position\":{\"x\":12.5,\"y\":-3.25},\"read\":false}";
+		byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+		int loops = 200_000;
+		measure("WebSocket.json (text, Gson)", loops, () -> {
+			JsonElement input = JsonParser.parseString(new String(payload, StandardCharsets.UTF_8));
+			ByteBuffer.wrap(input.toString().getBytes(StandardCharsets.UTF_8));
+		});
+		measure("WebSocket.json (binary, GSON)", loops, () -> {
+			JsonElement input = WebSocketJSON.GSON.decode(payload, 0, payload.length);
+			WebSocketJSON.encode(WebSocketJSON.GSON, input);
+		});
+		measure("WebSocket.json (binary, NIMBUS)", loops, () -> {
+			JSONElement input = WebSocketJSON.NIMBUS.decode(payload, 0, payload.length);
+			WebSocketJSON.encode(WebSocketJSON.NIMBUS, input);
+		});
+	}
+
+	/** measures WebSocketTopics with 100k subscriptions spread over 1000 topics, plus one topic with 100k subscribers */
+	public static void webSocketTopics() throws Exception {
+		LongAdder sent = new LongAdder();
+		WebSocketTopics topics = new WebSocketTopics();
+		Test.FakeSession[] sessions = new Test.FakeSession[100_000];
+		for (int i = 0; i < sessions.length; i++) {
+			sessions[i] = new Test.FakeSession(sent);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < sessions.length; i++) {
+			topics.subscribe(sessions[i], "topic" + (i % 1000));
+			topics.subscribe(sessions[i], "all");
+		}
+		System.out.println(String.format("%-40s %12d ms", "WebSocketTopics.subscribe (200k)", (System.nanoTime() - start) / 1_000_000));
+		measure("WebSocketTopics.publish (100 subscribers)", 100_000, () -> topics.publish("topic42", "message"));
+		measure("WebSocketTopics.publish (100k subscribers)", 100, () -> topics.publish("all", "message"));
+		start = System.nanoTime();
+		for (Test.FakeSession session : sessions) {
+			topics.unsubscribeAll(session);
+		}
+		System.out.println(String.format("%-40s %12d ms", "WebSocketTopics.unsubscribeAll (100k)", (System.nanoTime() - start) / 1_000_000));
+	}
+
+	/** compares HTTP requests per second on a pure JSON API, with and without server sessions, sending a session cookie each time */
+	public static void serverSessions() throws Exception {
+		Router router = new Router();
+		router.get("/api", (req, res) -> {
+			JsonObject o = new JsonObject();
+			o.addProperty("session", req.session(false) != null);
+			o.addProperty("time", System.currentTimeMillis());
+			return Render.json(o);
+		});
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		for (boolean enabled : new boolean[] { true, false }) {
+			JettyServer server = new JettyServer(8081).serverSessions(enabled).start(router);
+			try {
+				HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:8081/api"))
+						.header("Cookie", "nimbus-server-session=node0unknown0")
+						.build();
+				measure("JettyServer.serverSessions(" + enabled + ")", 10_000, () -> client.send(request, HttpResponse.BodyHandlers.ofString()));
+			} finally {
+				server.stop();
+			}
+		}
+	}
+
+	/** compares the JWT load+save done for each request, building the key and parser each time or using those cached in SessionConfig */
+	public static void jwtClientSession() throws Exception {
+		SessionConfig config = new SessionConfig();
+		config.setSecretKey(JWTClientSession.generateClientSessionSecretKey());
+		String token = Jwts.builder().claims().id("id").expiration(new Date(System.currentTimeMillis() + 3600_000)).add("user", "User12").and()
+				.signWith(config.getJwtSigningKey()).compact();
+		measure("JWTClientSession load+save (uncached)", 50_000, () -> {
+			Jwts.parser().verifyWith(Keys.hmacShaKeyFor(config.getSecretKey())).build().parseSignedClaims(token);
+			Jwts.builder().claims().id("id").add("user", "User12").and().signWith(Keys.hmacShaKeyFor(config.getSecretKey())).compact();
+		});
+		measure("JWTClientSession load+save (cached)", 50_000, () -> {
+			config.getJwtParser().parseSignedClaims(token);
+			Jwts.builder().claims().id("id").add("user", "User12").and().signWith(config.getJwtSigningKey()).compact();
+		});
+	}
+
+	/** compares cookie size and encode+decode time of a typical client session, stored with each format */
+	@SuppressWarnings("deprecation")
+	public static void clientSessionFormats() throws Exception {
+		SessionConfig config = new SessionConfig();
+		config.setSecretKey(JWTClientSession.generateClientSessionSecretKey());
+		long now = System.currentTimeMillis();
+		JsonObject attributes = new JsonObject();
+		attributes.addProperty("userId", 123456L);
+		attributes.addProperty("login", "user12@example.com");
+		attributes.addProperty("roles", "admin,editor,viewer");
+		attributes.addProperty("admin", true);
+		attributes.addProperty("locale", "fr-FR");
+
+		// JWT
+		Supplier<String> jwtEncode = () -> Jwts.builder().claims().id("0123456789abcdef0123456789abcdef").expiration(new Date(now + 3600_000)).issuer("Nimbus")
+				.issuedAt(new Date(now)).add("maxInactiveInterval", "3600").add("userId", 123456L).add("login", "user12@example.com")
+				.add("roles", "admin,editor,viewer").add("admin", true).add("locale", "fr-FR").and().signWith(config.getJwtSigningKey()).compact();
+		String jwt = jwtEncode.get();
+		measure("ClientSession JWT encode+decode", 50_000, () -> {
+			jwtEncode.get();
+			config.getJwtParser().parseSignedClaims(jwt);
+		});
+
+		// JSON (deprecated)
+		JsonObject o = new JsonObject();
+		o.addProperty("id", "0123456789abcdef0123456789abcdef");
+		o.addProperty("creationTime", now);
+		o.addProperty("lastAccessedTime", now);
+		o.addProperty("maxInactiveInterval", 3600);
+		o.add("attributes", attributes);
+		String json = JSONClientSession.encrypt(config.getSecretKey(), o.toString().getBytes(StandardCharsets.UTF_8));
+		measure("ClientSession JSON encode+decode", 50_000, () -> {
+			JSONClientSession.encrypt(config.getSecretKey(), o.toString().getBytes(StandardCharsets.UTF_8));
+			JsonParser.parseString(new String(JSONClientSession.decrypt(config.getSecretKey(), json), StandardCharsets.UTF_8));
+		});
+
+		// Binary
+		ServletRequest request = new ServletRequest(null, config);
+		BinaryClientSession session = new BinaryClientSession(request);
+		session.attribute("userId", 123456L).attribute("login", "user12@example.com").attribute("roles", "admin,editor,viewer")
+				.attribute("admin", true).attribute("locale", "fr-FR");
+		String binary = session.encode(config.getSecretKey());
+		measure("ClientSession BINARY encode+decode", 50_000, () -> {
+			session.encode(config.getSecretKey());
+			BinaryClientSession.decode(request, binary);
+		});
+
+		System.out.println(String.format("%-40s %12d bytes", "ClientSession JWT cookie", jwt.length()));
+		System.out.println(String.format("%-40s %12d bytes", "ClientSession JSON cookie", json.length()));
+		System.out.println(String.format("%-40s %12d bytes", "ClientSession BINARY cookie", binary.length()));
+	}
+
+}
@@ -1,18 +1,46 @@
 package fr.techgp.nimbus.server.test;
 
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.InvalidParameterException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.imageio.ImageIO;
+
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.server.session.SessionData;
 
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 
 import fr.techgp.nimbus.server.Cookie;
+import fr.techgp.nimbus.server.Metrics;
 import fr.techgp.nimbus.server.MimeTypes;
 import fr.techgp.nimbus.server.Render;
 import fr.techgp.nimbus.server.Request;
@@ -22,16 +50,35 @@ import fr.techgp.nimbus.server.Session;
 import fr.techgp.nimbus.server.Session.ClientSession;
 import fr.techgp.nimbus.server.Session.ServerSession;
 import fr.techgp.nimbus.server.Upload;
+import fr.techgp.nimbus.server.WebSocket;
+import fr.techgp.nimbus.server.WebSocketJSON;
+import fr.techgp.nimbus.server.WebSocketTopics;
+import fr.techgp.nimbus.server.impl.BinaryClientSession;
+import fr.techgp.nimbus.server.impl.JSONClientSession;
+import fr.techgp.nimbus.server.impl.JWTClientSession;
+import fr.techgp.nimbus.server.impl.JettyFileSessionDataStore;
 import fr.techgp.nimbus.server.impl.JettyServer;
 import fr.techgp.nimbus.server.impl.MethodRoute;
+import fr.techgp.nimbus.server.impl.ServletRequest;
+import fr.techgp.nimbus.server.impl.SessionConfig;
+import fr.techgp.nimbus.utils.ConversionUtils;
 import fr.techgp.nimbus.utils.FunctionalUtils.ConsumerWithException;
 import fr.techgp.nimbus.utils.IOUtils;
+import fr.techgp.nimbus.utils.ThumbnailCache;
+import fr.techgp.nimbus.utils.ThumbnailService;
 import fr.techgp.nimbus.utils.WebUtils.MultiPartAdapter;
+import fr.techgp.nimbus.utils.json.JSON;
+import fr.techgp.nimbus.utils.json.JSONElement;
+import fr.techgp.nimbus.utils.json.JSONObject;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
 
 public class Test {
 
 	private static final int PORT = 8080;
 	private static String cookieLine = null;
+	private static String thumbnailEtag = null;
+	private static CompletableFuture<Throwable> lateWriteError = new CompletableFuture<>();
 
 	private final String request;
 	private String method = "GET";
@@ -93,7 +140,7 @@ public class Test {
 			throw new Exception("Mauvais After1 " + connection.getHeaderField("After1"));
 		if (!this.headers.isEmpty()) {
 			for (Map.Entry<String, String> header : this.headers.entrySet()) {
-				if (!header.getValue().equals(connection.getHeaderField(header.getKey())))
+				if (!Objects.equals(header.getValue(), connection.getHeaderField(header.getKey())))
 					throw new Exception("Mauvais header " + connection.getHeaderField(header.getKey()));
 			}
 		}
@@ -147,6 +194,43 @@ public class Test {
 		}
 	}
 
+	/** A session attribute counting how many times it has been deserialized */
+	public static class CountedValue implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private static final AtomicInteger reads = new AtomicInteger();
+		private final String value;
+
+		public CountedValue(String value) {
+			this.value = value;
+		}
+
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+			in.defaultReadObject();
+			reads.incrementAndGet();
+		}
+	}
+
+	/** A fake WebSocket session, counting messages instead of sending them */
+	static final class FakeSession implements WebSocket.Session {
+
+		private final LongAdder sent;
+		private volatile boolean opened = true;
+
+		public FakeSession(LongAdder sent) {
+			this.sent = sent;
+		}
+
+		@Override public Duration idleTimeout() { return Duration.ZERO; }
+		@Override public void idleTimeout(Duration timeout) { /* */ }
+		@Override public boolean opened() { return this.opened; }
+		@Override public void close(int statusCode, String reason) { this.opened = false; }
+		@Override public void sendText(String text) { this.sent.increment(); }
+		@Override public void sendTextAsync(String text, Runnable success, Consumer<Throwable> error) { this.sent.increment(); success.run(); }
+		@Override public void sendBinary(ByteBuffer binary) { this.sent.increment(); }
+		@Override public void sendBinaryAsync(ByteBuffer binary, Runnable success, Consumer<Throwable> error) { this.sent.increment(); success.run(); }
+
+	}
+
 	public static void main(String[] args) {
 		try {
 			Router r = new Router();
@@ -166,6 +250,13 @@ public class Test {
 				o.addProperty("id", req.queryParameterInteger("id", null));
 				return Render.json(o);
 			});
+			r.post("/json/element", (req, res) -> {
+				JSONObject o = JSON.object();
+				o.set("name", req.queryParameter("name"));
+				o.set("id", req.queryParameterInteger("id", null));
+				o.set("text", "\"é\"\n\u2028");
+				return Render.json(o);
+			});
 			r.get("/redirect", (req, res) -> Render.redirect("/hello"));
 			r.redirect("/redirect2", "/redirect");
 			r.get("/samepage", (req, res) -> Render.samePage());
@@ -182,8 +273,10 @@ public class Test {
 					boolean client = req.queryParameterBoolean("client", true);
 					Session currentSession = client ? req.clientSession(false) : req.session(false);
 					String currentValue = currentSession == null ? null : currentSession.attribute("value");
-					Session updatedSession = client ? req.clientSession() : req.session();
-					updatedSession.attribute("value", req.queryParameter("value"));
+					if (req.queryParameter("value") != null) {
+						Session updatedSession = client ? req.clientSession() : req.session();
+						updatedSession.attribute("value", req.queryParameter("value"));
+					}
 					return Render.string(currentValue == null ? "" : currentValue);
 				} catch (RuntimeException ex) {
 					ex.printStackTrace();
@@ -191,6 +284,22 @@ public class Test {
 				}
 			});
 
+			File image = File.createTempFile("nimbus-image", ".png");
+			image.deleteOnExit();
+			ImageIO.write(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), "png", image);
+			MimeTypes.register("image/png", "png");
+			ThumbnailService thumbnails = new ThumbnailService(1, 1);
+			r.get("/thumbnail", (req, res) -> Render.thumbnail(image, 100, 100, req.queryParameterBoolean("pool", true) ? thumbnails : null));
+			ThumbnailCache cache = new ThumbnailCache(Files.createTempDirectory("nimbus-thumbnails").toFile(), 1024 * 1024, thumbnails);
+			thumbnailEtag = cache.key(image, 100, 100, true);
+			r.get("/thumbnail/cached", (req, res) -> Render.thumbnail(image, 100, 100, true, cache));
+
+			r.websocket("/ws/echo", WebSocket.text((session, message) -> "echo:" + message));
+			r.websocket("/ws/late", new WebSocket().onConnect((session) -> {
+				session.close(1000, "bye");
+				session.sendTextAsync("late", () -> lateWriteError.complete(null), lateWriteError::complete);
+			}));
+
 			r.after("/*", (req, res) -> { res.header("After1", "After1"); return null; });
 
 			JettyServer s = new JettyServer(PORT);
@@ -201,6 +310,31 @@ public class Test {
 
 			try {
 				runAllTests();
+				assertThat(s.metrics().counter("http.requests").value() > 0 && s.metrics().histogram("http.latency").count() > 0);
+				runWebSocketTests(s.metrics());
+				runClientSessionFormatTests();
+				runWebSocketJSONTests();
+				runWebSocketTopicsTests();
+				s.stop();
+				s.clientSession(SessionConfig.ClientSessionFormat.BINARY).start(r);
+				runClientSessionTests();
+				s.stop();
+				File folder = Files.createTempDirectory("nimbus-sessions").toFile();
+				s.sessionStore(new JettyFileSessionDataStore(folder), SessionCache.EVICT_ON_SESSION_EXIT, true).start(r);
+				runServerSessionTests();
+				get("/session?client=false&value=toto").cookie(false, true).length(0).run(); // new cookie, nothing in session, store toto
+				s.stop();
+				// Unrelated files and folders are ignored on restart
+				Files.write(new File(folder, "foo_bar").toPath(), new byte[0]);
+				Files.write(new File(folder, "notes.tmp").toPath(), new byte[0]);
+				Files.createDirectories(new File(folder, "subfolder").toPath());
+				s.sessionStore(new JettyFileSessionDataStore(folder), SessionCache.EVICT_ON_SESSION_EXIT, true).start(r);
+				get("/session?client=false").cookie(true, false).length(4).body("toto").run(); // send cookie, get toto after restart
+				assertThat(new File(folder, "foo_bar").exists() && new File(folder, "notes.tmp").exists() && new File(folder, "subfolder").isDirectory());
+				runSessionStoreTests(Files.createTempDirectory("nimbus-sessions").toFile());
+				s.stop();
+				s.serverSessions(false).start(r);
+				get("/session?client=false").cookie(true, false).length(0).run(); // send cookie, ignored when server sessions are disabled
 				System.out.println("OK");
 			} finally {
 				s.stop();
@@ -227,6 +361,7 @@ public class Test {
 		new Test("/anymethod").method("PUT").body("OK").run();
 		// Checking JSON response
 		post("/json?name=aaa&id=12").mimetype(MimeTypes.JSON).body("{\"name\":\"aaa\",\"id\":12}").run();
+		post("/json/element?name=aaa&id=12").mimetype(MimeTypes.JSON).body("{\"name\":\"aaa\",\"id\":12,\"text\":\"\\\"é\\\"\\n\\u2028\"}").run();
 		// Checking redirection from "/redirect" to "/world"
 		get("/redirect").length(5).body("world").filters(true, true, true).run();
 		// Checking helper method Router.redirect
@@ -251,16 +386,206 @@ public class Test {
 		get("/reflect2?" + p).length(2).body("OK").run();
 		get("/reflect3?" + p).length(3).body("abc").run();
 
+		// Checking thumbnails, created on the pool or on the current thread
+		get("/thumbnail").mimetype("image/png").run();
+		get("/thumbnail?pool=false").mimetype("image/png").run();
+		get("/thumbnail/cached").mimetype("image/png").header("Etag", thumbnailEtag).run();
+		get("/thumbnail/cached").mimetype("image/png").header("Etag", thumbnailEtag).run();
+		get("/thumbnail/cached").customize(c -> c.addRequestProperty("If-None-Match", thumbnailEtag)).status(304).mimetype("image/png").run();
+
 		// Check client session
-		get("/session?value=toto").cookie(false, true).length(0).run(); // new cookie, nothing in session, store toto
-		get("/session?value=titi").cookie(true, true).length(4).body("toto").run(); // send cookie, get toto, store titi
-		get("/session?value=tutu").cookie(true, true).length(4).body("titi").run(); // send cookie, get titi, store tutu
-		get("/session?value=tata").cookie(false, true).length(0).run(); // don't send cookie, nothing in session, store tata
-		get("/session?value=tata").cookie(true, true).length(4).body("tata").run(); // send cookie, get tata, store tata
-		Thread.sleep(3000); // wait for session timeout
-		get("/session?value=tata").cookie(true, true).length(0).run(); // send cookie, expired session, no result
+		runClientSessionTests();
 
 		// Check server session
+		runServerSessionTests();
+
+		// to continue...
+	}
+
+	private static final void runWebSocketTests(Metrics metrics) throws Exception {
+		// A round trip on "/ws/echo" should count 1 connection, 1 text message in and out, 1 close and no error
+		CompletableFuture<String> answer = new CompletableFuture<>();
+		java.net.http.WebSocket ws = HttpClient.newHttpClient().newWebSocketBuilder()
+				.buildAsync(URI.create("ws://localhost:" + PORT + "/ws/echo"), new java.net.http.WebSocket.Listener() {
+					@Override
+					public CompletionStage<?> onText(java.net.http.WebSocket webSocket, CharSequence data, boolean last) {
+						answer.complete(data.toString());
+						return null;
+					}
+				}).get(5, TimeUnit.SECONDS);
+		ws.sendText("hello", true).get(5, TimeUnit.SECONDS);
+		assertThat("echo:hello".equals(answer.get(5, TimeUnit.SECONDS)));
+		ws.sendClose(java.net.http.WebSocket.NORMAL_CLOSURE, "bye").get(5, TimeUnit.SECONDS);
+		String prefix = "websocket./ws/echo.";
+		for (int i = 0; i < 50 && metrics.counter(prefix + "close").value() == 0; i++) {
+			Thread.sleep(100); // wait for the server to handle the close frame
+		}
+		assertThat(metrics.counter(prefix + "connect").value() == 1 && metrics.counter(prefix + "close").value() == 1
+				&& metrics.counter(prefix + "textIn").value() == 1 && metrics.counter(prefix + "textOut").value() == 1
+				&& metrics.counter(prefix + "bytesIn").value() == 5 && metrics.counter(prefix + "bytesOut").value() == 10
+				&& metrics.counter(prefix + "opened").value() == 0 && metrics.counter(prefix + "error").value() == 0);
+
+		// A write failing after close on "/ws/late" should count 1 error, even if Jetty also reports it to onWebSocketError
+		CompletableFuture<Integer> closed = new CompletableFuture<>();
+		HttpClient.newHttpClient().newWebSocketBuilder()
+				.buildAsync(URI.create("ws://localhost:" + PORT + "/ws/late"), new java.net.http.WebSocket.Listener() {
+					@Override
+					public CompletionStage<?> onClose(java.net.http.WebSocket webSocket, int statusCode, String reason) {
+						closed.complete(statusCode);
+						return null;
+					}
+				}).get(5, TimeUnit.SECONDS);
+		assertThat(closed.get(5, TimeUnit.SECONDS) == 1000 && lateWriteError.get(5, TimeUnit.SECONDS) != null);
+		prefix = "websocket./ws/late.";
+		for (int i = 0; i < 50 && metrics.counter(prefix + "close").value() == 0; i++) {
+			Thread.sleep(100); // wait for the server to handle the close frame
+		}
+		Thread.sleep(200); // let Jetty report the failure to onWebSocketError too, if it does
+		assertThat(metrics.counter(prefix + "connect").value() == 1 && metrics.counter(prefix + "close").value() == 1
+				&& metrics.counter(prefix + "error").value() == 1);
+	}
+
+	private static final void runWebSocketJSONTests() throws Exception {
+		// Small messages reuse the buffer of the thread, large ones get their own so that it is not kept by the thread
+		JSONElement small = JSON.of("small");
+		JSONElement large = JSON.of("x".repeat(100_000));
+		assertThat(WebSocketJSON.encode(WebSocketJSON.NIMBUS, small).array() == WebSocketJSON.encode(WebSocketJSON.NIMBUS, small).array());
+		byte[] largeArray = WebSocketJSON.encode(WebSocketJSON.NIMBUS, large).array();
+		assertThat(largeArray != WebSocketJSON.encode(WebSocketJSON.NIMBUS, large).array());
+		assertThat(WebSocketJSON.encode(WebSocketJSON.NIMBUS, small).array().length < largeArray.length);
+		// Each codec gives back the same message
+		String message = "{\"type\":\"message\",\"username\":\"User12\",\"message\":\"Hello \\\"world\\\" ! \u00e9\u20ac\uD83D\uDE00\",\"time\":1700000000000,"
+				+ "\"userlist\":[\"User1\",\"User2\",\"User3\",\"User12\"],\"position\":{\"x\":12.5,\"y\":-3.25},\"read\":false}";
+		byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+		assertThat(message.equals(StandardCharsets.UTF_8.decode(WebSocketJSON.encode(WebSocketJSON.GSON, WebSocketJSON.GSON.decode(payload, 0, payload.length))).toString()));
+		assertThat(message.equals(StandardCharsets.UTF_8.decode(WebSocketJSON.encode(WebSocketJSON.NIMBUS, WebSocketJSON.NIMBUS.decode(payload, 0, payload.length))).toString()));
+		// GSON rejects trailing content and malformed UTF-8, like NIMBUS does
+		for (byte[] invalid : new byte[][] { "{} x".getBytes(StandardCharsets.UTF_8), "[1] [2]".getBytes(StandardCharsets.UTF_8),
+				{ '"', (byte) 0xC0, (byte) 0xAF, '"' }, { '"', (byte) 0xE0, (byte) 0x80, (byte) 0xAF, '"' },
+				{ '"', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '"' }, { '"', (byte) 0xF5, (byte) 0x80, (byte) 0x80, (byte) 0x80, '"' } }) {
+			try {
+				WebSocketJSON.GSON.decode(invalid, 0, invalid.length);
+				assertThat(false);
+			} catch (IOException | JsonParseException ex) {
+				// expected
+			}
+		}
+	}
+
+	private static final void runWebSocketTopicsTests() throws Exception {
+		LongAdder sent = new LongAdder();
+		WebSocketTopics topics = new WebSocketTopics();
+		FakeSession first = new FakeSession(sent);
+		FakeSession second = new FakeSession(sent);
+		topics.subscribe(first, "topic1");
+		topics.subscribe(first, "all");
+		topics.subscribe(second, "all");
+		topics.publish("all", "message");
+		topics.publish("topic1", "message");
+		assertThat(sent.sum() == 3 && topics.count("all") == 2 && topics.count("topic1") == 1);
+		topics.unsubscribeAll(first);
+		topics.unsubscribeAll(second);
+		assertThat(topics.count("all") == 0 && topics.count("topic1") == 0 && topics.topics(first).isEmpty());
+		// Sessions closed while subscribing must not stay in any topic
+		for (int i = 0; i < 1000; i++) {
+			FakeSession session = new FakeSession(sent);
+			Thread subscriber = new Thread(() -> {
+				for (int n = 0; n < 100; n++) {
+					topics.subscribe(session, "topic" + n);
+				}
+			});
+			subscriber.start();
+			session.close(1000, "closed");
+			topics.unsubscribeAll(session);
+			subscriber.join();
+			assertThat(topics.topics(session).isEmpty());
+		}
+		for (int n = 0; n < 100; n++) {
+			assertThat(topics.count("topic" + n) == 0);
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private static final void runClientSessionFormatTests() throws Exception {
+		SessionConfig config = new SessionConfig();
+		config.setSecretKey(JWTClientSession.generateClientSessionSecretKey());
+		ServletRequest request = new ServletRequest(null, config);
+		// Binary sessions are compressed only when enabled explicitly, and can be read back either way
+		BinaryClientSession session = new BinaryClientSession(request).attribute("text", "abc".repeat(100));
+		String plain = session.encode(config.getSecretKey());
+		config.setClientSessionCompression(true);
+		String deflated = session.encode(config.getSecretKey());
+		assertThat(deflated.length() < plain.length() / 2);
+		assertThat("abc".repeat(100).equals(BinaryClientSession.decode(request, plain).attribute("text")));
+		assertThat("abc".repeat(100).equals(BinaryClientSession.decode(request, deflated).attribute("text")));
+		config.setClientSessionCompression(false);
+
+		// Binary sessions give back their id and typed attributes
+		session = new BinaryClientSession(request);
+		session.attribute("userId", 123456L).attribute("login", "user12@example.com").attribute("admin", true);
+		String binary = session.encode(config.getSecretKey());
+		BinaryClientSession decoded = BinaryClientSession.decode(request, binary);
+		assertThat(decoded != null && decoded.id().equals(session.id()) && Long.valueOf(123456L).equals(decoded.attribute("userId"))
+				&& "user12@example.com".equals(decoded.attribute("login")) && Boolean.TRUE.equals(decoded.attribute("admin")));
+		// Unsupported attribute types are rejected as arguments
+		try {
+			decoded.attribute("date", new Date());
+			assertThat(false);
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+
+		// JSON cookies created before base64url encoding should still be accepted
+		String json = JSONClientSession.encrypt(config.getSecretKey(), "{\"id\":\"id\"}".getBytes(StandardCharsets.UTF_8));
+		String legacy = Arrays.stream(json.split("\\.")).map((s) -> ConversionUtils.bytes2hex(Base64.getUrlDecoder().decode(s))).collect(Collectors.joining("|"));
+		assertThat(Arrays.equals(JSONClientSession.decrypt(config.getSecretKey(), json), JSONClientSession.decrypt(config.getSecretKey(), legacy)));
+
+		// Setting an attribute to an equal value, or removing a missing one, keeps the JWT session unchanged
+		JWTClientSession jwtSession = new JWTClientSession(request, "id", 0L, 0L, 3600, Map.of("user", "User12"));
+		assertThat(!jwtSession.attribute("user", new String("User12")).attribute("other", null).removeAttribute("other").isDirty());
+		assertThat(jwtSession.attribute("user", "User13").isDirty());
+
+		// Key rotation : previous keys are still accepted, unknown keys are not
+		String token = Jwts.builder().claims().id("id").add("user", "User12").and().signWith(config.getJwtSigningKey()).compact();
+		byte[] previousKey = config.getSecretKey();
+		config.setSecretKey(JWTClientSession.generateClientSessionSecretKey());
+		try {
+			config.getJwtParser().parseSignedClaims(token);
+			assertThat(false);
+		} catch (JwtException ex) {
+			// expected, the cached parser has been invalidated
+		}
+		assertThat(BinaryClientSession.decode(request, binary) == null);
+		config.setPreviousSecretKeys(List.of(previousKey));
+		decoded = BinaryClientSession.decode(request, binary);
+		assertThat(decoded != null && decoded.isDirty());
+		// Previous keys are validated like the current one
+		try {
+			new JettyServer(0).clientSession(SessionConfig.ClientSessionFormat.BINARY, "abcd");
+			assertThat(false);
+		} catch (InvalidParameterException ex) {
+			// expected
+		}
+	}
+
+	private static final void runSessionStoreTests(File folder) throws Exception {
+		// Attributes are deserialized on first access only, and written back as they were read otherwise
+		JettyFileSessionDataStore store = new JettyFileSessionDataStore(folder);
+		long now = System.currentTimeMillis();
+		SessionData data = new SessionData("lazy", "/", "0.0.0.0", now, now, now, 60_000L);
+		data.setExpiry(now + 60_000L);
+		data.setAttribute("a", new CountedValue("a"));
+		data.setAttribute("b", new CountedValue("b"));
+		store.doStore("lazy", data, 0);
+		CountedValue.reads.set(0);
+		SessionData loaded = store.doLoad("lazy");
+		assertThat("a".equals(((CountedValue) loaded.getAttribute("a")).value) && CountedValue.reads.get() == 1);
+		store.doStore("lazy", loaded, now);
+		assertThat(CountedValue.reads.get() == 1 && !store.isPassivating()); // "b" was stored without being deserialized
+		assertThat("b".equals(((CountedValue) store.doLoad("lazy").getAttribute("b")).value) && CountedValue.reads.get() == 2);
+	}
+
+	private static final void runServerSessionTests() throws Exception {
 		get("/session?client=false&value=toto").cookie(false, true).length(0).run(); // new cookie, nothing in session, store toto
 		get("/session?client=false&value=titi").cookie(true, false).length(4).body("toto").run(); // send cookie, get toto, store titi
 		get("/session?client=false&value=tutu").cookie(true, false).length(4).body("titi").run(); // send cookie, get titi, store tutu
@@ -268,7 +593,16 @@ public class Test {
 		get("/session?client=false&value=tata").cookie(true, false).length(4).body("tata").run(); // send cookie, get tata, store tata
 		Thread.sleep(3000); // wait for session timeout
 		get("/session?client=false&value=tata").cookie(true, false).length(0).run(); // send cookie, expired session, no result
+	}
 
-		// to continue...
+	private static final void runClientSessionTests() throws Exception {
+		get("/session?value=toto").cookie(false, true).length(0).run(); // new cookie, nothing in session, store toto
+		get("/session?value=titi").cookie(true, true).length(4).body("toto").run(); // send cookie, get toto, store titi
+		get("/session?value=tutu").cookie(true, true).length(4).body("titi").run(); // send cookie, get titi, store tutu
+		get("/session?value=tata").cookie(false, true).length(0).run(); // don't send cookie, nothing in session, store tata
+		get("/session?value=tata").cookie(true, false).length(4).body("tata").header("Set-Cookie", null).run(); // send cookie, get tata, store tata, unchanged so not issued again
+		get("/session").cookie(true, false).length(4).body("tata").header("Set-Cookie", null).run(); // send cookie, get tata, unchanged so not issued again
+		Thread.sleep(3000); // wait for session timeout
+		get("/session?value=tata").cookie(true, true).length(0).run(); // send cookie, expired session, no result
 	}
 }
\ No newline at end of file
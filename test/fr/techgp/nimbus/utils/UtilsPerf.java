@@ -0,0 +1,473 @@
+package fr.techgp.nimbus.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.SecretKeyFactory;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.crypto.spec.PBEKeySpec;
+
+import fr.techgp.nimbus.utils.CryptoUtils.PasswordHasher;
+import fr.techgp.nimbus.utils.CryptoUtils.StoredPassword;
+import fr.techgp.nimbus.utils.GraphicsUtils.ExifOrientation;
+import fr.techgp.nimbus.utils.GraphicsUtils.ImageInfo;
+import fr.techgp.nimbus.utils.GraphicsUtils.ResampleFilter;
+import fr.techgp.nimbus.utils.RandomUtils.TokenGenerator;
+
+/**
+ * Micro-benchmarks for the utility classes, executed on a single thread (i.e. results are "per core").
+ */
+public final class UtilsPerf {
+
+	/** A callable that can throw, measured by {@link UtilsPerf#measure(String, int, Step)} */
+	@FunctionalInterface
+	public static interface Step {
+		public void run() throws Exception;
+	}
+
+	public static void main(String[] args) {
+		try {
+			passwordHasher();
+			passwordService();
+			conversionUtils();
+			tokenGenerator();
+			thumbnails();
+			probeImages();
+			resampleImage();
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/** runs "step" for "loops" iterations, twice to warm up first, and prints the number of operations per second */
+	public static void measure(String name, int loops, Step step) throws Exception {
+		for (int pass = 0; pass < 2; pass++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < loops; i++) {
+				step.run();
+			}
+			long time = System.nanoTime() - start;
+			if (pass == 1)
+				System.out.println(String.format("%-40s %12d ops/s", name, loops * 1_000_000_000L / Math.max(1, time)));
+		}
+	}
+
+	/** runs "step" for "loops" iterations on each of "threads" threads, twice to warm up first, and prints the total number of operations per second */
+	public static void measureConcurrent(String name, int threads, int loops, Step step) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int pass = 0; pass < 2; pass++) {
+				long start = System.nanoTime();
+				Future<?>[] futures = new Future<?>[threads];
+				for (int t = 0; t < threads; t++) {
+					futures[t] = executor.submit(() -> {
+						for (int i = 0; i < loops; i++) {
+							step.run();
+						}
+						return null;
+					});
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+				long time = System.nanoTime() - start;
+				if (pass == 1)
+					System.out.println(String.format("%-40s %12d ops/s", name, threads * loops * 1_000_000_000L / Math.max(1, time)));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/** compares session-id-like tokens per second, using randomAscii on a shared SecureRandom or a TokenGenerator, on 1 to N threads */
+	public static void tokenGenerator() throws Exception {
+		SecureRandom shared = new SecureRandom();
+		TokenGenerator generator = RandomUtils.tokenGenerator(RandomUtils.ALPHANUMERIC, 32);
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads : new int[] { 1, Math.max(2, cores) }) {
+			measureConcurrent("randomAscii (shared) x" + threads, threads, 100_000, () -> RandomUtils.randomAscii(shared, 32, true, true, true, null));
+			measureConcurrent("tokenGenerator x" + threads, threads, 100_000, () -> generator.next());
+		}
+
+		// Check length, alphabet and (roughly) uniqueness and distribution
+		int[] counts = new int[128];
+		ConcurrentHashMap<String, Boolean> tokens = new ConcurrentHashMap<>();
+		boolean ok = true;
+		for (int i = 0; i < 100_000; i++) {
+			String token = generator.next();
+			ok &= token.length() == 32 && tokens.put(token, Boolean.TRUE) == null;
+			for (int j = 0; j < token.length(); j++) {
+				counts[token.charAt(j)]++;
+			}
+		}
+		int expected = 100_000 * 32 / RandomUtils.ALPHANUMERIC.length();
+		for (int c = 0; c < counts.length; c++) {
+			ok &= RandomUtils.ALPHANUMERIC.indexOf(c) >= 0 ? Math.abs(counts[c] - expected) < expected / 20 : counts[c] == 0;
+		}
+		System.out.println(ok + " for TokenGenerator");
+	}
+
+	/** returns the number of bytes allocated by the current thread so far */
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
+	/** compares a 200x200 thumbnail of a 4000x3000 JPEG, decoded at full resolution or subsampled, and run on a bounded pool */
+	public static void thumbnails() throws Exception {
+		File file = File.createTempFile("nimbus-thumbnail", ".jpg");
+		try {
+			Random random = new Random(42);
+			BufferedImage source = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+			for (int y = 0; y < source.getHeight(); y++) {
+				for (int x = 0; x < source.getWidth(); x++) {
+					source.setRGB(x, y, (x * 255 / 4000) << 16 | (y * 255 / 3000) << 8 | random.nextInt(64));
+				}
+			}
+			ImageIO.write(source, "jpg", file);
+			source = null;
+
+			long before = allocatedBytes();
+			measure("thumbnail (full decode)", 5, () -> {
+				BufferedImage image = ImageIO.read(file);
+				GraphicsUtils.scaleImageWithMaxDimensions(image, 200, 200);
+			});
+			long fullDecode = (allocatedBytes() - before) / 10;
+			before = allocatedBytes();
+			measure("thumbnail (subsampled, streamed)", 5, () -> GraphicsUtils.writeThumbnail(file, 200, 200, OutputStream.nullOutputStream()));
+			long subsampled = (allocatedBytes() - before) / 10;
+			System.out.println(String.format("%-40s %12d KB/op", "allocated (full decode)", fullDecode / 1024));
+			System.out.println(String.format("%-40s %12d KB/op", "allocated (subsampled, streamed)", subsampled / 1024));
+
+			int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+			try (ThumbnailService service = new ThumbnailService(threads, 100)) {
+				// Twice as many "request" threads as workers, waiting for their thumbnail
+				measureConcurrent("thumbnail (pool x" + threads + ")", threads * 2, 5,
+						() -> service.write(file, 200, 200, OutputStream::nullOutputStream).get());
+			}
+
+			BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(GraphicsUtils.scaleImageWithMaxDimensions(file, 200, 200)));
+			boolean ok = thumbnail.getWidth() == 200 && thumbnail.getHeight() == 150;
+
+			// Concurrent requests of the same thumbnail should create it once, then read it from the cache
+			File folder = Files.createTempDirectory("nimbus-thumbnails").toFile();
+			try (ThumbnailService service = new ThumbnailService(threads, 100)) {
+				ThumbnailCache cache = new ThumbnailCache(folder, 1024 * 1024, service);
+				ExecutorService executor = Executors.newFixedThreadPool(8);
+				try {
+					Future<?>[] futures = new Future<?>[8];
+					for (int i = 0; i < futures.length; i++) {
+						futures[i] = executor.submit(() -> cache.get(file, 200, 200, true));
+					}
+					for (Future<?> future : futures) {
+						ok &= future.get().equals(futures[0].get());
+					}
+				} finally {
+					executor.shutdown();
+				}
+				ok &= folder.list().length == 1;
+				measureConcurrent("thumbnail (cache, hit)", threads * 2, 10_000, () -> cache.get(file, 200, 200, true));
+				// A 1 KB cache keeps the most recent thumbnail only
+				ThumbnailCache small = new ThumbnailCache(folder, 1024, null);
+				small.get(file, 100, 100, true);
+				ok &= folder.list().length == 1 && small.getTotalBytes() == new File(folder, small.key(file, 100, 100, true)).length();
+			} finally {
+				for (File f : folder.listFiles()) {
+					f.delete();
+				}
+				folder.delete();
+			}
+			System.out.println(ok + " for thumbnails");
+		} finally {
+			file.delete();
+		}
+	}
+
+	/** returns a 640x480 JPEG with an EXIF segment containing orientation 6 (RightTop) and DateTimeOriginal "2021:06:30 14:25:00" */
+	private static byte[] createJPEGWithExif() throws Exception {
+		ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), "jpg", jpeg);
+		byte[] bytes = jpeg.toByteArray();
+
+		// TIFF header, IFD0 (Orientation, ExifIFD) at 8, Exif IFD (DateTimeOriginal) at 38, date at 56
+		ByteBuffer tiff = ByteBuffer.allocate(76).order(ByteOrder.LITTLE_ENDIAN);
+		tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+		tiff.putShort((short) 2);
+		tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) 6).putShort((short) 0);
+		tiff.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(38);
+		tiff.putInt(0);
+		tiff.putShort((short) 1);
+		tiff.putShort((short) 0x9003).putShort((short) 2).putInt(20).putInt(56);
+		tiff.putInt(0);
+		tiff.put("2021:06:30 14:25:00\0".getBytes(StandardCharsets.US_ASCII));
+
+		// Insert APP1 after APP0 (JFIF)
+		int app0End = 4 + ((bytes[4] & 0xFF) << 8 | (bytes[5] & 0xFF));
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		result.write(bytes, 0, app0End);
+		int length = 2 + 6 + tiff.capacity();
+		result.write(new byte[] { (byte) 0xFF, (byte) 0xE1, (byte) (length >> 8), (byte) length, 'E', 'x', 'i', 'f', 0, 0 });
+		result.write(tiff.array());
+		result.write(bytes, app0End, bytes.length - app0End);
+		return result.toByteArray();
+	}
+
+	/** compares reading the EXIF orientation with ImageIO metadata or the header probe, then probes a folder of 2000 images in parallel */
+	public static void probeImages() throws Exception {
+		File folder = Files.createTempDirectory("nimbus-probe").toFile();
+		try {
+			byte[] jpeg = createJPEGWithExif();
+			File file = new File(folder, "image.jpg");
+			Files.write(file.toPath(), jpeg);
+
+			measure("orientation (ImageIO metadata)", 5_000, () -> {
+				try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+					ImageReader reader = ImageIO.getImageReaders(stream).next();
+					reader.setInput(stream);
+					GraphicsUtils.getJPEGExifOrientation(reader, 0);
+					reader.dispose();
+				}
+			});
+			measure("orientation (probeImage)", 50_000, () -> GraphicsUtils.probeImage(file));
+
+			ImageInfo info = GraphicsUtils.probeImage(file);
+			boolean ok = info.getWidth() == 640 && info.getHeight() == 480 && info.getOrientation() == ExifOrientation.RightTop
+					&& LocalDateTime.of(2021, 6, 30, 14, 25).equals(info.getCaptureDate());
+			try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+				ImageReader reader = ImageIO.getImageReaders(stream).next();
+				reader.setInput(stream);
+				ok &= GraphicsUtils.getJPEGExifOrientation(reader, 0) == ExifOrientation.RightTop;
+				reader.dispose();
+			}
+
+			// 2000 images in 20 sub-folders
+			for (int i = 0; i < 20; i++) {
+				File subfolder = new File(folder, "folder" + i);
+				subfolder.mkdir();
+				for (int j = 0; j < 100; j++) {
+					Files.write(new File(subfolder, "image" + j + ".jpg").toPath(), jpeg);
+				}
+			}
+			int cores = Runtime.getRuntime().availableProcessors();
+			for (int parallelism : new int[] { 1, Math.max(2, cores) }) {
+				LongAdder found = new LongAdder();
+				measure("probeImages x" + parallelism + " (2001 files)", 10, () -> GraphicsUtils.probeImages(folder, parallelism, null, (f, i) -> found.increment()));
+				ok &= found.sum() == 2001 * 20;
+			}
+			System.out.println(ok + " for probeImages");
+		} finally {
+			Files.walk(folder.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/** returns the PSNR, in dB, of "image" compared to "reference" (higher is closer) */
+	private static double psnr(BufferedImage reference, BufferedImage image) {
+		double sum = 0;
+		for (int y = 0; y < reference.getHeight(); y++) {
+			for (int x = 0; x < reference.getWidth(); x++) {
+				int p1 = reference.getRGB(x, y);
+				int p2 = image.getRGB(x, y);
+				for (int shift = 0; shift < 24; shift += 8) {
+					int d = ((p1 >> shift) & 0xFF) - ((p2 >> shift) & 0xFF);
+					sum += d * d;
+				}
+			}
+		}
+		double mse = sum / (reference.getWidth() * reference.getHeight() * 3);
+		return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255 * 255 / mse);
+	}
+
+	/** compares speed and quality of a 4000x3000 to 400x300 reduction, using Graphics2D (one or several steps) or the int[] resampler */
+	public static void resampleImage() throws Exception {
+		Random random = new Random(42);
+		BufferedImage source = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < source.getHeight(); y++) {
+			for (int x = 0; x < source.getWidth(); x++) {
+				// gradient, fine stripes (aliasing-prone) and noise
+				int stripes = ((x / 3 + y / 5) & 1) * 64;
+				source.setRGB(x, y, (x * 191 / 4000 + stripes) << 16 | (y * 191 / 3000 + stripes) << 8 | random.nextInt(64));
+			}
+		}
+
+		// The reference is the exact average of each 10x10 block
+		BufferedImage reference = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < 300; y++) {
+			for (int x = 0; x < 400; x++) {
+				int r = 0, g = 0, b = 0;
+				for (int j = 0; j < 10; j++) {
+					for (int i = 0; i < 10; i++) {
+						int p = source.getRGB(x * 10 + i, y * 10 + j);
+						r += (p >> 16) & 0xFF;
+						g += (p >> 8) & 0xFF;
+						b += p & 0xFF;
+					}
+				}
+				reference.setRGB(x, y, Math.round(r / 100f) << 16 | Math.round(g / 100f) << 8 | Math.round(b / 100f));
+			}
+		}
+
+		measure("scaleImage (bicubic, 1 step)", 10, () -> GraphicsUtils.scaleImage(source, 400, 300));
+		measure("scaleImage (bicubic, multi-step)", 10, () -> GraphicsUtils.scaleImage(source, 400, 300, false));
+		measure("scaleImage (bicubic, super quality)", 3, () -> GraphicsUtils.scaleImage(source, 400, 300, true));
+		measure("resampleImage (AREA)", 10, () -> GraphicsUtils.resampleImage(source, 400, 300, ResampleFilter.AREA));
+		measure("resampleImage (LANCZOS3)", 10, () -> GraphicsUtils.resampleImage(source, 400, 300, ResampleFilter.LANCZOS3));
+		System.out.println(String.format("%-40s %12.1f dB", "PSNR (bicubic, 1 step)", psnr(reference, GraphicsUtils.scaleImage(source, 400, 300))));
+		System.out.println(String.format("%-40s %12.1f dB", "PSNR (bicubic, multi-step)", psnr(reference, GraphicsUtils.scaleImage(source, 400, 300, false))));
+		System.out.println(String.format("%-40s %12.1f dB", "PSNR (bicubic, super quality)", psnr(reference, GraphicsUtils.scaleImage(source, 400, 300, true))));
+		double area = psnr(reference, GraphicsUtils.resampleImage(source, 400, 300, ResampleFilter.AREA));
+		double lanczos = psnr(reference, GraphicsUtils.resampleImage(source, 400, 300, ResampleFilter.LANCZOS3));
+		System.out.println(String.format("%-40s %12.1f dB", "PSNR (resampleImage AREA)", area));
+		System.out.println(String.format("%-40s %12.1f dB", "PSNR (resampleImage LANCZOS3)", lanczos));
+
+		// Transparent images keep their alpha, and fully transparent pixels do not darken their neighbours
+		BufferedImage transparent = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < 100; y++) {
+			for (int x = 0; x < 100; x++) {
+				transparent.setRGB(x, y, x < 50 ? 0x00000000 : 0xFFFFFFFF);
+			}
+		}
+		BufferedImage scaled = GraphicsUtils.resampleImage(transparent, 10, 10, ResampleFilter.AREA);
+		boolean ok = area > 40 && scaled.getRGB(0, 0) == 0 && scaled.getRGB(9, 0) == 0xFFFFFFFF && (scaled.getRGB(5, 5) & 0xFFFFFF) == 0xFFFFFF;
+		System.out.println(ok + " for resampleImage");
+	}
+
+	/** compares hex and base64 codecs writing into caller buffers with HexFormat and java.util.Base64, for 32 bytes (a key) and 4 KB */
+	public static void conversionUtils() throws Exception {
+		Random random = new Random(42);
+		HexFormat hexFormat = HexFormat.of();
+		Base64.Encoder base64url = Base64.getUrlEncoder().withoutPadding();
+		Base64.Decoder base64urlDecoder = Base64.getUrlDecoder();
+		for (int size : new int[] { 32, 4096 }) {
+			byte[] bytes = RandomUtils.randomBytes(random, size);
+			String hex = hexFormat.formatHex(bytes);
+			String base64 = base64url.encodeToString(bytes);
+			char[] chars = new char[size * 2];
+			byte[] buffer = new byte[size * 2];
+			ByteBuffer byteBuffer = ByteBuffer.allocate(size * 2);
+			int loops = 20_000_000 / size;
+			measure("hex encode (HexFormat) " + size, loops, () -> hexFormat.formatHex(bytes));
+			measure("hex encode (bytes2hex) " + size, loops, () -> ConversionUtils.bytes2hex(bytes));
+			measure("hex encode (char[]) " + size, loops, () -> ConversionUtils.bytes2hex(bytes, 0, size, chars, 0));
+			measure("hex encode (ByteBuffer) " + size, loops, () -> ConversionUtils.bytes2hex(ByteBuffer.wrap(bytes), byteBuffer.clear()));
+			measure("hex decode (HexFormat) " + size, loops, () -> hexFormat.parseHex(hex));
+			measure("hex decode (hex2bytes) " + size, loops, () -> ConversionUtils.hex2bytes(hex));
+			measure("hex decode (byte[]) " + size, loops, () -> ConversionUtils.hex2bytes(hex, 0, hex.length(), buffer, 0));
+			measure("base64url encode (Base64) " + size, loops, () -> base64url.encodeToString(bytes));
+			measure("base64url encode (char[]) " + size, loops, () -> ConversionUtils.bytes2base64(bytes, 0, size, chars, 0, true, false));
+			measure("base64url encode (ByteBuffer) " + size, loops, () -> ConversionUtils.bytes2base64(ByteBuffer.wrap(bytes), byteBuffer.clear(), true, false));
+			measure("base64url decode (Base64) " + size, loops, () -> base64urlDecoder.decode(base64));
+			measure("base64url decode (byte[]) " + size, loops, () -> ConversionUtils.base642bytes(base64, 0, base64.length(), buffer, 0));
+		}
+
+		// Compare results with the JDK for every length from 0 to 100
+		boolean ok = true;
+		for (int size = 0; size <= 100; size++) {
+			byte[] bytes = RandomUtils.randomBytes(random, size);
+			char[] chars = new char[ConversionUtils.base64Length(size, true) + size * 2];
+			byte[] decoded = new byte[size];
+			ok &= hexFormat.formatHex(bytes).equals(ConversionUtils.bytes2hex(bytes));
+			ok &= Arrays.equals(bytes, ConversionUtils.hex2bytes(hexFormat.formatHex(bytes).toUpperCase()));
+			for (Base64.Encoder encoder : new Base64.Encoder[] { Base64.getEncoder(), Base64.getEncoder().withoutPadding(), Base64.getUrlEncoder(), base64url }) {
+				String expected = encoder.encodeToString(bytes);
+				boolean url = encoder.encodeToString(new byte[] { (byte) 0xFB, (byte) 0xFF }).startsWith("-");
+				boolean padding = encoder.encodeToString(new byte[1]).endsWith("=");
+				int length = ConversionUtils.bytes2base64(bytes, 0, size, chars, 0, url, padding);
+				ok &= length == ConversionUtils.base64Length(size, padding) && expected.equals(new String(chars, 0, length));
+				ok &= ConversionUtils.base642bytes(expected, 0, expected.length(), decoded, 0) == size && Arrays.equals(bytes, decoded);
+				ByteBuffer encoded = ByteBuffer.allocate(length);
+				ConversionUtils.bytes2base64(ByteBuffer.wrap(bytes), encoded, url, padding);
+				ByteBuffer result = ByteBuffer.allocate(size);
+				ConversionUtils.base642bytes(encoded.flip(), result);
+				ok &= Arrays.equals(bytes, result.array());
+			}
+		}
+		System.out.println(ok + " for ConversionUtils");
+	}
+
+	/** compares password validations per second, parsing the stored password and creating the factory each time or not */
+	public static void passwordHasher() throws Exception {
+		for (int iterations : new int[] { 1_000, CryptoUtils.PASSWORD_HASH_CURRENT_ITERATIONS }) {
+			PasswordHasher hasher = new PasswordHasher(CryptoUtils.PASSWORD_HASH_ALGORITHM, iterations, CryptoUtils.PASSWORD_HASH_CURRENT_SALT_BYTES, CryptoUtils.PASSWORD_HASH_BYTES);
+			String stored = hasher.hash("P4ssw0rd!").toString();
+			StoredPassword parsed = StoredPassword.parse(stored, null);
+			int loops = iterations < 10_000 ? 5_000 : 20;
+			measure("validate (split, getInstance) " + iterations, loops, () -> {
+				String[] parts = stored.split(":");
+				byte[] salt = ConversionUtils.hex2bytes(parts[1]);
+				byte[] hash = ConversionUtils.hex2bytes(parts[2]);
+				PBEKeySpec spec = new PBEKeySpec("P4ssw0rd!".toCharArray(), salt, Integer.parseInt(parts[0]), hash.length * 8);
+				SecretKeyFactory.getInstance(CryptoUtils.PASSWORD_HASH_ALGORITHM).generateSecret(spec).getEncoded();
+			});
+			measure("validate (PasswordHasher) " + iterations, loops, () -> hasher.validate("P4ssw0rd!", StoredPassword.parse(stored, null)));
+			measure("validate (cached StoredPassword) " + iterations, loops, () -> hasher.validate("P4ssw0rd!", parsed));
+			System.out.println((hasher.validate("P4ssw0rd!", parsed) && !hasher.validate("p4ssw0rd!", parsed)
+					&& CryptoUtils.validatePassword("P4ssw0rd!", stored, null, null)) + " for PasswordHasher " + iterations);
+		}
+	}
+
+	/** checks PasswordService validation, rehashing of outdated hashes and rejection once the queue is full */
+	public static void passwordService() throws Exception {
+		try (PasswordService service = new PasswordService(1, 1)) {
+			String stored = service.hash("P4ssw0rd!").get();
+			boolean ok = service.validate("P4ssw0rd!", stored, null, null).get() && !service.validate("p4ssw0rd!", stored, null, null).get();
+			// Outdated hashes are replaced when the password is valid only
+			PasswordHasher outdated = new PasswordHasher(CryptoUtils.PASSWORD_HASH_ALGORITHM, 1_000, CryptoUtils.PASSWORD_HASH_CURRENT_SALT_BYTES, CryptoUtils.PASSWORD_HASH_BYTES);
+			String old = outdated.hash("P4ssw0rd!").toString();
+			String[] rehashed = new String[1];
+			ok &= !service.validate("p4ssw0rd!", old, null, (hash) -> rehashed[0] = hash).get() && rehashed[0] == null;
+			ok &= service.validate("P4ssw0rd!", old, null, (hash) -> rehashed[0] = hash).get() && rehashed[0] != null;
+			ok &= !StoredPassword.parse(rehashed[0], null).isOutdated() && service.validate("P4ssw0rd!", rehashed[0], null, null).get();
+			// With 1 thread busy (blocked in the rehash handler) and a queue of 1, the next request is rejected immediately
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			CompletableFuture<Boolean> running = service.validate("P4ssw0rd!", old, null, (hash) -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			started.await();
+			CompletableFuture<String> queued = service.hash("P4ssw0rd!");
+			CompletableFuture<String> rejected = service.hash("P4ssw0rd!");
+			ok &= service.queueDepth() == 1 && rejected.isCompletedExceptionally();
+			release.countDown();
+			try {
+				rejected.get();
+				ok = false;
+			} catch (ExecutionException ex) {
+				ok &= ex.getCause() instanceof RejectedExecutionException;
+			}
+			ok &= running.get() && queued.get() != null && service.rejectedCount() == 1;
+			System.out.println(ok + " for PasswordService");
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package fr.techgp.nimbus.utils.json;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+public class JSONLazyTest {
+
+	public static void execute() {
+		try {
+			String json = JSONPerf.generate(256 * 1024);
+			byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+			JSONElement expected = JSON.decode(json);
+
+			// Same document as the regular decoder, once loaded, from text or from UTF-8 bytes
+			boolean ok = JSON.decodeLazy(json).equals(expected) && JSON.decodeLazy(utf8).toJSON().equals(expected.toJSON());
+			ok &= expected.equals(JSON.decodeLazy(json)) && JSON.format(JSON.decodeLazy(json)).equals(JSON.format(expected));
+			JSONArray lazy = JSON.decodeLazy(json).asArray();
+			ok &= lazy.size() == expected.asArray().size() && lazy.get(42).asObject().get("bio").equals(expected.asArray().get(42).asObject().get("bio"));
+			ok &= JSON.decodeLazy(" 12 ").equals(JSON.of(12L)) && JSON.decodeLazy("[]").asArray().isEmpty() && JSON.decodeLazy("{ }").asObject().isEmpty();
+			ok &= JSON.decodeLazy("[ 1 , [ ] , { \"a\" : [ null ] } , \"]\" ]").toJSON().equals("[1,[],{\"a\":[null]},\"]\"]");
+			System.out.println(ok + " for " + JSONLazyDecoder.class.getName() + " decode");
+
+			// Values are decoded when accessed only, so that errors in unused values are not reported
+			JSONObject object = JSON.decodeLazy("{\"ok\":1,\"bad\":{\"x\":tru},\"list\":[1,2 3]}").asObject();
+			ok = object.get("ok").asNumber().getValue().equals(1L) && object.get("bad").isObject();
+			ok &= lazyError(() -> object.get("bad").asObject().get("x"), "tru is not a valid value");
+			ok &= lazyError(() -> object.get("list").asArray().size(), "Found \"3\" but expecting \",\" or a closing bracket at position 36");
+			// A failed load leaves the object unloaded, so that the error is reported on each access
+			JSONObject partial = JSON.decodeLazy("{\"a\":1,\"b\":tru}").asObject();
+			ok &= lazyError(() -> partial.get("a"), "tru is not a valid value") && lazyError(() -> partial.size(), "tru is not a valid value");
+			// Concurrent readers see fully loaded children
+			int size = expected.asArray().size();
+			for (int i = 0; i < 20; i++) {
+				JSONArray shared = JSON.decodeLazy(json).asArray();
+				Thread[] threads = new Thread[4];
+				boolean[] results = new boolean[threads.length];
+				for (int t = 0; t < threads.length; t++) {
+					int n = t;
+					threads[t] = new Thread(() -> results[n] = shared.size() == size && shared.get(size - 1).asObject().size() == 9);
+					threads[t].start();
+				}
+				for (int t = 0; t < threads.length; t++) {
+					threads[t].join();
+					ok &= results[t];
+				}
+			}
+			// Structural errors are reported while indexing, like the regular decoder does
+			for (String invalid : new String[] { "[1,2", "[1}", "{\"a\":\"b}", "}", "[1] 2", "", "[1,]" }) {
+				ok &= decodeError(invalid);
+			}
+			System.out.println(ok + " for " + JSONLazyDecoder.class.getName() + " errors");
+
+			// Extraction of single values
+			JSONArray records = expected.asArray();
+			ok = JSON.extract(json, "[1000].name").equals(records.get(1000).asObject().get("name"));
+			ok &= JSON.extract(utf8, "[1000].tags[1]").equals(records.get(1000).asObject().get("tags").asArray().get(1));
+			ok &= JSON.extract(json, "[7]").equals(records.get(7)) && JSON.extract(json, "").equals(expected);
+			ok &= JSON.extract(json, "[" + records.size() + "].id") == null && JSON.extract(json, "[0].unknown") == null;
+			ok &= JSON.extract(json, "[0].name.x") == null && JSON.extract(json, "[0][1]") == null && JSON.extract(json, "name") == null;
+			String nested = "{\"a\":{\"b\":[0,1,2,{\"c\":\"found\",\"d\":[{\"e\":1}]}]},\"a\":{\"b\":[{},{},{},{\"c\":\"last\"}]}}";
+			ok &= JSON.extract(nested, "a.b[3].c").equals(JSON.of("last")) && JSON.extract("[{\"c\": true}]", "[0].c").equals(JSON.of(true));
+			ok &= JSON.extract("12", "").equals(JSON.of(12L)) && JSON.extract("12", "a") == null;
+			for (String invalid : new String[] { ".a", "a.", "a..b", "a[", "a[x]", "a[-1]" }) {
+				try {
+					JSON.extract(nested, invalid);
+					ok = false;
+				} catch (IllegalArgumentException ex) {
+					// expected
+				}
+			}
+			System.out.println(ok + " for " + JSONLazyDecoder.class.getName() + " extract");
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	private static final boolean lazyError(Runnable access, String message) {
+		try {
+			access.run();
+			return false;
+		} catch (IllegalArgumentException ex) {
+			return message.equals(ex.getMessage());
+		}
+	}
+
+	private static final boolean decodeError(String json) {
+		String expected;
+		try {
+			JSON.decode(json);
+			return false;
+		} catch (ParseException ex) {
+			expected = ex.getMessage();
+		}
+		try {
+			JSON.decodeLazy(json).toJSON();
+			return false;
+		} catch (ParseException ex) {
+			return expected.equals(ex.getMessage());
+		} catch (IllegalArgumentException ex) {
+			return json.equals("[1,]") && expected.equals(ex.getMessage());
+		}
+	}
+
+}
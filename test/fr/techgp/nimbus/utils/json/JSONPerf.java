@@ -1,7 +1,14 @@
 package fr.techgp.nimbus.utils.json;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.Reference;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.List;
@@ -9,6 +16,12 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamArrayContext;
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamBytesRenderer;
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamEndContext;
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamRenderer;
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamStringRenderer;
+
 /**
  * http://blog.takipi.com/the-ultimate-json-library-json-simple-vs-gson-vs-jackson-vs-json/
  */
@@ -126,6 +139,18 @@ public final class JSONPerf {
 		JSONElement::isObject,
 		(o) -> o.isNull() || o.isBoolean() || o.isString() || o.isString());
 
+	/** runs every benchmark, including the heavy ones on generated documents of several megabytes */
+	public static void main(String[] args) {
+		execute();
+		executeLarge();
+		executeEscapes();
+		executeEncoding();
+		executeStreaming();
+		executeMemory();
+		executeLazy();
+		executeInterning();
+	}
+
 	public static void execute() {
 		try (BufferedReader reader = new BufferedReader(new InputStreamReader(JSONPerf.class.getResourceAsStream("test.json"), StandardCharsets.UTF_8))) {
 			List<String> strings = reader.lines().collect(Collectors.toList());
@@ -151,4 +176,242 @@ public final class JSONPerf {
 		}
 	}
 
+	/** compares decoders on generated documents of several megabytes, in MB/s, best of 3 runs */
+	public static void executeLarge() {
+		for (int megabytes : new int[] { 1, 4 }) {
+			String json = generate(megabytes * 1024 * 1024);
+			byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+			System.out.println(String.format("Document of %d bytes", utf8.length));
+			measureLarge("Google GSON", utf8.length, () -> com.google.gson.JsonParser.parseString(json));
+			if (megabytes == 1) // the previous decoder is quadratic, skip the largest documents
+				measureLarge("Nimbus 1.5", utf8.length, () -> new JSONLegacyDecoder().decode(json));
+			measureLarge("Nimbus (String)", utf8.length, () -> new JSONDecoder().decode(json));
+			measureLarge("Nimbus (UTF-8)", utf8.length, () -> new JSONDecoder().decode(utf8, 0, utf8.length));
+		}
+		System.out.println();
+	}
+
+	/** compares decoders on a document made of escape-heavy strings (embedded HTML and log lines), in MB/s, best of 3 runs */
+	public static void executeEscapes() {
+		String html = "<div class=\"item\" data-id='42'>\n\t<p>Tom &amp; \"Jerry\" \u2192 <b>\u00e9t\u00e9</b></p>\n</div>\n";
+		String log = "2024-01-01 12:00:00\tINFO\t[main] \"GET /api/items?id=42&sort=name\" 200 \\ C:\\logs\\app.log\r\n";
+		com.google.gson.JsonArray array = new com.google.gson.JsonArray();
+		for (int i = 0; i < 2000; i++) {
+			com.google.gson.JsonObject o = new com.google.gson.JsonObject();
+			o.addProperty("html", html.repeat(1 + i % 5));
+			o.addProperty("log", log.repeat(1 + i % 5));
+			array.add(o);
+		}
+		// Gson escapes HTML characters by default, so that this document contains many unicode escape sequences too
+		String json = array.toString();
+		byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+		System.out.println(String.format("Escape-heavy document of %d bytes", utf8.length));
+		measureLarge("Google GSON", utf8.length, () -> com.google.gson.JsonParser.parseString(json));
+		measureLarge("Nimbus 1.5", utf8.length, () -> new JSONLegacyDecoder().decode(json));
+		measureLarge("Nimbus (String)", utf8.length, () -> new JSONDecoder().decode(json));
+		measureLarge("Nimbus (UTF-8)", utf8.length, () -> new JSONDecoder().decode(utf8, 0, utf8.length));
+		measureLarge("Nimbus (Reader)", utf8.length, () -> new JSONReader(new java.io.StringReader(json)).nextElement());
+		System.out.println();
+	}
+
+	/** compares the ways to send a large tree as UTF-8 bytes, in MB/s, best of 3 runs */
+	public static void executeEncoding() {
+		try {
+			String json = generate(4 * 1024 * 1024);
+			JSONElement element = JSON.decode(json);
+			com.google.gson.JsonElement gson = com.google.gson.JsonParser.parseString(json);
+			int bytes = json.getBytes(StandardCharsets.UTF_8).length;
+			OutputStream stream = OutputStream.nullOutputStream();
+			System.out.println(String.format("Encoding a tree of %d bytes", bytes));
+			measureLarge("Google GSON", bytes, () -> { stream.write(gson.toString().getBytes(StandardCharsets.UTF_8)); return null; });
+			measureLarge("Nimbus (String)", bytes, () -> { stream.write(element.toJSON().getBytes(StandardCharsets.UTF_8)); return null; });
+			measureLarge("Nimbus (Writer)", bytes, () -> { Writer w = new OutputStreamWriter(stream, StandardCharsets.UTF_8); JSON.encode(element, w); w.flush(); return null; });
+			measureLarge("Nimbus (UTF-8)", bytes, () -> { JSON.encode(element, stream); return null; });
+			System.out.println();
+		} catch (ParseException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/** compares ways to read 3 fields of a large document, in MB/s, best of 3 runs */
+	public static void executeLazy() {
+		String json = generate(4 * 1024 * 1024);
+		byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+		int last = com.google.gson.JsonParser.parseString(json).getAsJsonArray().size() - 1;
+		System.out.println(String.format("Reading 3 fields of a document of %d bytes", utf8.length));
+		measureLarge("Google GSON", utf8.length, () -> {
+			com.google.gson.JsonArray array = com.google.gson.JsonParser.parseString(json).getAsJsonArray();
+			return array.get(10).getAsJsonObject().get("name").getAsString() + array.get(5000).getAsJsonObject().get("id") + array.get(last).getAsJsonObject().get("score");
+		});
+		measureLarge("Nimbus (decode)", utf8.length, () -> {
+			JSONArray array = JSON.decode(utf8).asArray();
+			return array.get(10).asObject().get("name").asString().getValue() + array.get(5000).asObject().get("id") + array.get(last).asObject().get("score");
+		});
+		measureLarge("Nimbus (lazy)", utf8.length, () -> {
+			JSONArray array = JSON.decodeLazy(utf8).asArray();
+			return array.get(10).asObject().get("name").asString().getValue() + array.get(5000).asObject().get("id") + array.get(last).asObject().get("score");
+		});
+		measureLarge("Nimbus (extract)", utf8.length, () -> {
+			return JSON.extract(utf8, "[10].name").asString().getValue() + JSON.extract(utf8, "[5000].id") + JSON.extract(utf8, "[" + last + "].score");
+		});
+		System.out.println();
+	}
+
+	/** compares decoding with and without the cache of property names : heap retained, speed and lookups */
+	public static void executeInterning() {
+		try {
+			String json = generate(16 * 1024 * 1024);
+			byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+			System.out.println(String.format("Interning property names of a document of %d bytes", utf8.length));
+			measureMemory("Nimbus", utf8.length, () -> new JSONDecoder().decode(utf8, 0, utf8.length));
+			measureMemory("Nimbus (intern)", utf8.length, () -> new JSONDecoder().internKeys().decode(utf8, 0, utf8.length));
+			measureLarge("Nimbus", utf8.length, () -> new JSONDecoder().decode(utf8, 0, utf8.length));
+			measureLarge("Nimbus (intern)", utf8.length, () -> new JSONDecoder().internKeys().decode(utf8, 0, utf8.length));
+			measureLookups("Nimbus", new JSONDecoder().decode(utf8, 0, utf8.length).asArray());
+			measureLookups("Nimbus (intern)", new JSONDecoder().internKeys().decode(utf8, 0, utf8.length).asArray());
+			System.out.println();
+		} catch (ParseException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	private static final void measureLookups(String name, JSONArray array) {
+		long best = Long.MAX_VALUE;
+		long sum = 0;
+		for (int i = 0; i < 3; i++) {
+			long start = System.nanoTime();
+			for (JSONElement e : array.iterate()) {
+				JSONObject o = e.asObject();
+				sum += o.get("id").hashCode() + o.get("name").hashCode() + o.get("bio").hashCode();
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		blackhole = sum;
+		System.out.println(String.format("Name=%15s, Lookup=%6.1f ns", name, best / (3.0 * array.size())));
+	}
+
+	/** the result of measured loops, so that they can not be optimized away */
+	private static volatile long blackhole;
+
+	/** compares the heap retained by each tree model, per MB of JSON (UTF-8), for a generated document of 16 MB */
+	public static void executeMemory() {
+		String json = generate(16 * 1024 * 1024);
+		byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+		System.out.println(String.format("Heap retained by a document of %d bytes", utf8.length));
+		measureMemory("Google GSON", utf8.length, () -> com.google.gson.JsonParser.parseString(json));
+		measureMemory("Nimbus (tree)", utf8.length, () -> JSON.decode(utf8));
+		measureMemory("Nimbus (tape)", utf8.length, () -> JSON.tape(utf8));
+		System.out.println();
+	}
+
+	private static final void measureMemory(String name, int bytes, Operation operation) {
+		try {
+			long before = usedMemory();
+			Object result = operation.run();
+			long after = usedMemory();
+			System.out.println(String.format("Name=%15s, Heap=%6.1f MB per MB of JSON", name, (after - before) / (double) bytes));
+			// Keep the result reachable until the measure is done
+			Reference.reachabilityFence(result);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	private static final long usedMemory() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/** compares stream renderers serializing 1M records to an OutputStream, in MB/s, best of 3 runs */
+	public static void executeStreaming() {
+		int records = 1_000_000;
+		OutputStream stream = OutputStream.nullOutputStream();
+		JSONStreamBytesRenderer sizer = new JSONStreamBytesRenderer(stream);
+		render(sizer, records);
+		int bytes = (int) sizer.getOutput().size();
+		System.out.println(String.format("Streaming %d records (%d bytes)", records, bytes));
+		measureLarge("String", bytes, () -> {
+			Writer w = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+			render(new JSONStreamStringRenderer((s) -> {
+				try {
+					w.write(s);
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			}), records);
+			w.flush();
+			return null;
+		});
+		measureLarge("Bytes", bytes, () -> {
+			JSONStreamBytesRenderer renderer = new JSONStreamBytesRenderer(stream);
+			render(renderer, records);
+			renderer.flush();
+			return null;
+		});
+		System.out.println();
+	}
+
+	/** renders "records" records similar to those of {@link #generate(int)} */
+	private static final void render(JSONStreamRenderer renderer, int records) {
+		JSONStreamArrayContext<JSONStreamEndContext> array = JSON.stream(renderer).arrayValue();
+		for (int i = 0; i < records; i++) {
+			array.addObject()
+				.name("id").value(i)
+				.name("name").value("User " + i)
+				.name("email").value("user" + i + "@example.com")
+				.name("score").value(i % 1000 / 8.0)
+				.name("active").value(i % 3 == 0)
+				.name("manager").nullValue()
+				.name("tags").arrayValue().add("tag" + (i % 7)).add("tag" + (i % 11)).end()
+				.name("bio").value("Ligne 1\nLigne \"2\" \u00e9t\u00e9 \u2192 \\fin")
+				.end();
+		}
+		array.end();
+	}
+
+	@FunctionalInterface
+	private static interface Operation {
+		public Object run() throws Exception;
+	}
+
+	private static final void measureLarge(String name, int bytes, Operation operation) {
+		try {
+			long best = Long.MAX_VALUE;
+			for (int i = 0; i < 3; i++) {
+				long start = System.nanoTime();
+				operation.run();
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			System.out.println(String.format("Name=%15s, Speed=%7.1f MB/s", name, bytes / 1.048576 / (best / 1000.0)));
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/** generates an array of records with strings, escape sequences, non-ASCII characters and numbers */
+	public static final String generate(int minLength) {
+		StringBuilder sb = new StringBuilder(minLength + 256);
+		sb.append('[');
+		for (int i = 0; sb.length() < minLength; i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append("{\"id\":").append(i)
+				.append(",\"name\":\"User ").append(i).append('"')
+				.append(",\"email\":\"user").append(i).append("@example.com\"")
+				.append(",\"score\":").append(i % 1000 / 8.0)
+				.append(",\"ratio\":").append(i * 0.001234567)
+				.append(",\"active\":").append(i % 3 == 0)
+				.append(",\"manager\":null")
+				.append(",\"tags\":[\"tag").append(i % 7).append("\",\"tag").append(i % 11).append("\"]")
+				.append(",\"bio\":\"Ligne 1\\nLigne \\\"2\\\" \\u00e9t\u00e9 \u2192 \\\\fin\"")
+				.append('}');
+		}
+		sb.append(']');
+		return sb.toString();
+	}
+
 }
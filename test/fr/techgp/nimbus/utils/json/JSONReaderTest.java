@@ -0,0 +1,112 @@
+package fr.techgp.nimbus.utils.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import fr.techgp.nimbus.utils.json.JSONReader.Token;
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamStringRenderer;
+
+public class JSONReaderTest {
+
+	public static void execute() {
+		try {
+			String json = JSONPerf.generate(1024 * 1024);
+
+			// Tokens, with a reader returning a few characters at a time to test buffer boundaries
+			try (JSONReader reader = new JSONReader(new ChunkedReader(new StringReader("{\"a\": [1, -2.5e1, \"x\\u0041\\n\", true, null, {}], \"b\": 12345678901234567890}")))) {
+				boolean ok = reader.peek() == Token.BEGIN_OBJECT;
+				reader.beginObject();
+				ok &= "a".equals(reader.nextName());
+				reader.beginArray();
+				ok &= reader.nextLong() == 1L;
+				ok &= reader.nextDouble() == -25.0;
+				ok &= "xA\n".equals(reader.nextString());
+				ok &= reader.nextBoolean();
+				ok &= reader.peek() == Token.NULL;
+				reader.nextNull();
+				reader.skipValue();
+				ok &= !reader.hasNext();
+				reader.endArray();
+				ok &= "b".equals(reader.nextName());
+				ok &= reader.nextNumber() instanceof Double;
+				reader.endObject();
+				ok &= reader.peek() == Token.END_DOCUMENT;
+				System.out.println(ok + " for " + JSONReader.class.getName() + " tokens");
+			}
+
+			// Selective reading, skipping everything but "id"
+			try (JSONReader reader = new JSONReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
+				long sum = 0;
+				int count = 0;
+				reader.beginArray();
+				while (reader.hasNext()) {
+					reader.beginObject();
+					while (reader.hasNext()) {
+						if ("id".equals(reader.nextName()))
+							sum += reader.nextLong();
+						else
+							reader.skipValue();
+					}
+					reader.endObject();
+					count++;
+				}
+				reader.endArray();
+				JSONArray array = JSON.decode(json).asArray();
+				long expected = 0;
+				for (JSONElement e : array.iterate()) {
+					expected += e.asObject().get("id").asNumber().getValue().longValue();
+				}
+				System.out.println((count == array.size() && sum == expected) + " for " + JSONReader.class.getName() + " skipValue");
+			}
+
+			// Transform pipeline, from the reader to a renderer, and decoding to a JSONElement
+			try (JSONReader reader = new JSONReader(new ChunkedReader(new StringReader(json)))) {
+				StringBuilder sb = new StringBuilder();
+				reader.nextValue(new JSONStreamStringRenderer(sb::append));
+				System.out.println(sb.toString().equals(JSON.decode(json).toJSON()) + " for " + JSONReader.class.getName() + " nextValue");
+			}
+			try (JSONReader reader = JSON.reader(new StringReader(json))) {
+				System.out.println(reader.nextElement().equals(JSON.decode(json)) + " for " + JSONReader.class.getName() + " nextElement");
+			}
+
+			// Expected errors
+			expectError("[1 2]", "Found \"2\" but expecting \",\" or \"]\" at position 3");
+			expectError("{\"a\" 1}", "Found \"1\" but expecting \":\" at position 5");
+			expectError("[tru]", "Found invalid literal but expecting true at position 1");
+			expectError("[\"abc", "Un-terminated string at position 5");
+			expectError("[1.]", "1. is not a valid number at position 1");
+			expectError("1 2", "Found \"2\" but expecting end of stream at position 2");
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	private static final void expectError(String json, String message) {
+		try (JSONReader reader = new JSONReader(new StringReader(json))) {
+			reader.nextElement();
+			reader.peek();
+			System.out.println("false for " + json + " (no error)");
+		} catch (IOException ex) {
+			System.out.println(message.equals(ex.getMessage()) + " for " + json + (message.equals(ex.getMessage()) ? "" : " (" + ex.getMessage() + ")"));
+		}
+	}
+
+	/** A {@link Reader} returning at most 7 characters at a time */
+	private static final class ChunkedReader extends FilterReader {
+
+		public ChunkedReader(Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return super.read(cbuf, off, Math.min(len, 7));
+		}
+
+	}
+
+}
@@ -1,8 +1,14 @@
 package fr.techgp.nimbus.utils.json;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
 import com.google.gson.JsonElement;
 
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamArrayContext;
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamBytesRenderer;
 import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamElementRenderer;
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamEndContext;
 import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamGSONRenderer;
 import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamIndentedRenderer;
 import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamRenderer;
@@ -33,6 +39,31 @@ public class JSONStreamTest {
 		JSONStreamIndentedRenderer renderer4 = new JSONStreamIndentedRenderer(sb::append, " ", true);
 		test(renderer4);
 		System.out.println(indented.equals(sb.toString()) + " for " + JSONStreamIndentedRenderer.class.getName());
+
+		JSONStreamBytesRenderer renderer5 = new JSONStreamBytesRenderer();
+		test(renderer5);
+		boolean bytesOk = compressed.equals(renderer5.getOutput().toString());
+		// Same with an OutputStream and small chunks, with non-ASCII characters and escape sequences crossing chunk boundaries
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		JSONStreamBytesRenderer renderer6 = new JSONStreamBytesRenderer(new JSONOutput(stream, 32));
+		sb.setLength(0);
+		JSONStreamStringRenderer renderer7 = new JSONStreamStringRenderer(sb::append);
+		for (JSONStreamRenderer r : new JSONStreamRenderer[] { renderer6, renderer7 }) {
+			JSONStreamArrayContext<JSONStreamEndContext> array = JSON.stream(r).arrayValue();
+			for (int i = 0; i < 20; i++) {
+				array.addObject()
+					.name("id").value(i - 10)
+					.name("text").value("\u00e9t\u00e9 \"\u20ac\" \ud83d\ude00\n\u2028")
+					.name("ratio").value(i / 3.0)
+					.name("empty").value((String) null)
+					.end();
+			}
+			array.end();
+		}
+		renderer6.flush();
+		bytesOk &= sb.toString().equals(new String(stream.toByteArray(), StandardCharsets.UTF_8));
+		System.out.println(bytesOk + " for " + JSONStreamBytesRenderer.class.getName());
+
 		JSONStreamRenderer renderer = new JSONStreamStringRenderer(System.out::print);
 		JSON.stream(renderer).objectValue()
 			.name("text").value("value")
@@ -44,6 +75,7 @@ public class JSONStreamTest {
 				.add(2)
 				.end()
 			.end();
+		System.out.println();
 	}
 
 	private static final void test(JSONStreamRenderer renderer) {
@@ -0,0 +1,100 @@
+package fr.techgp.nimbus.utils.json;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import fr.techgp.nimbus.utils.json.JSONStream.JSONStreamBytesRenderer;
+
+public class JSONTapeTest {
+
+	public static void execute() {
+		try {
+			String json = JSONPerf.generate(256 * 1024);
+			JSONElement expected = JSON.decode(json);
+
+			// Same document as the regular tree, from text or from UTF-8 bytes
+			JSONTape.Node root = JSON.tape(json).root();
+			JSONTape.Node rootUTF8 = JSON.tape(json.getBytes(StandardCharsets.UTF_8)).root();
+			boolean ok = root.toJSON().equals(expected.toJSON()) && root.toElement().equals(expected) && rootUTF8.toJSON().equals(expected.toJSON());
+			System.out.println(ok + " for " + JSONTape.class.getName() + " decode");
+
+			// Accessors, on a large array (indexed) and on small objects (linear)
+			ok = root.isArray() && root.size() == expected.asArray().size();
+			JSONTape.Node record = root.get(42);
+			ok &= record.isObject() && record.size() == 9 && record.get("id").getLong() == 42L;
+			ok &= "User 42".equals(record.get("name").getString()) && record.get("score").getDouble() == 42 / 8.0;
+			ok &= record.get("active").getBoolean() && record.get("manager").isNull() && record.get("unknown") == null;
+			ok &= record.get("tags").size() == 2 && "tag9".equals(record.get("tags").get(1).getString());
+			ok &= record.get("bio").getString().equals(expected.asArray().get(42).asObject().get("bio").asString().getValue());
+			ok &= record.get("id").getNumber() instanceof Long && record.get("ratio").getNumber() instanceof Double;
+			int count = 0;
+			for (JSONTape.Node e : root.elements()) {
+				ok &= e.get("id").getLong() == count++;
+			}
+			ok &= count == root.size();
+			System.out.println(ok + " for " + JSONTape.class.getName() + " accessors");
+
+			// Large objects (indexed), duplicated properties (the last one wins, like JSONObject), empty containers and nested values
+			StringBuilder sb = new StringBuilder("{");
+			for (int i = 0; i < 100; i++) {
+				sb.append("\"p").append(i).append("\":").append(i).append(',');
+			}
+			sb.append("\"p7\":\"last\",\"empty\":{},\"list\":[],\"nested\":{\"a\":[1,[2,{\"b\":null}]],\"c\":\"\\u00e9\\n\"}}");
+			JSONTape.Node object = JSON.tape(sb.toString()).root();
+			JSONObject regular = JSON.decode(sb.toString()).asObject();
+			ok = object.get("p0").getLong() == 0 && object.get("p99").getLong() == 99 && "last".equals(object.get("p7").getString());
+			ok &= object.has("empty") && !object.has("p100") && object.get("empty").isEmpty() && object.get("list").isEmpty();
+			ok &= object.get("nested").get("a").get(1).get(1).get("b").isNull() && "é\n".equals(object.get("nested").get("c").getString());
+			ok &= object.asObject().equals(regular) && object.deepCopy().equals(regular);
+			int properties = 0;
+			for (Map.Entry<String, JSONTape.Node> property : object.properties()) {
+				ok &= property.getKey().equals("p" + properties) || properties >= 100;
+				properties++;
+			}
+			ok &= properties == object.size();
+			System.out.println(ok + " for " + JSONTape.class.getName() + " objects");
+
+			// Compatibility with code expecting a JSONElement
+			ok = JSON.encode(object).equals(JSON.encode(regular)) && JSON.format(object).equals(JSON.format(regular));
+			ok &= object.get("p1").asNumber().getValue().equals(1L) && object.get("nested").get("c").asString().getValue().equals("é\n");
+			// Nodes are compared by content with other nodes only, to keep equality symmetric with regular elements
+			ok &= object.equals(JSON.tape(sb.toString()).root()) && object.hashCode() == JSON.tape(sb.toString()).root().hashCode();
+			ok &= !object.equals(regular) && !regular.equals(object) && object.toElement().equals(regular);
+			try {
+				object.asArray();
+				ok = false;
+			} catch (IllegalStateException ex) {
+				ok &= "JSON object is not a JSON array".equals(ex.getMessage());
+			}
+			try {
+				object.get("p1").getString();
+				ok = false;
+			} catch (IllegalStateException ex) {
+				ok &= "JSON number is not a JSON string".equals(ex.getMessage());
+			}
+			System.out.println(ok + " for " + JSONTape.class.getName() + " compatibility");
+
+			// Builder used as a renderer, from JSON.stream and JSONReader
+			JSONTape.Builder builder = new JSONTape.Builder();
+			JSON.stream(builder).objectValue()
+				.name("text").value("value")
+				.name("number").value(2.5)
+				.name("array").arrayValue().add(1).addNull().add(true).end()
+				.end();
+			ok = "{\"text\":\"value\",\"number\":2.5,\"array\":[1,null,true]}".equals(builder.build().root().toJSON());
+			builder = new JSONTape.Builder();
+			try (JSONReader reader = JSON.reader(new StringReader(json))) {
+				reader.nextValue(builder);
+			}
+			ok &= builder.build().root().toElement().equals(expected);
+			JSONStreamBytesRenderer bytes = new JSONStreamBytesRenderer();
+			new JSONDecoder().decode(json, bytes);
+			ok &= bytes.getOutput().toString().equals(expected.toJSON());
+			System.out.println(ok + " for " + JSONTape.Builder.class.getName());
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+}
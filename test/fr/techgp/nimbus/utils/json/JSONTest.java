@@ -1,10 +1,16 @@
 package fr.techgp.nimbus.utils.json;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class JSONTest {
@@ -13,10 +19,16 @@ public class JSONTest {
 		try {
 			JSONTest t = new JSONTest();
 			t.testEncoder();
+			t.testEncoderOutputs();
 			t.testDecoder();
+			t.testInternKeys();
+			t.testUnescape();
 			t.testMoreComplexContent();
 			t.testPerformance();
 			t.testStream();
+			t.testReader();
+			t.testTape();
+			t.testLazy();
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
@@ -51,6 +63,44 @@ public class JSONTest {
 		encodeEquals(encoder.beautify("  ", false, false), JSON.object().set("a", 12).setNull("b"), "{\n  \"a\":12\n}");
 	}
 
+	public void testEncoderOutputs() {
+		JSONArray numbers = JSON.array().add(0).add(-1).add(Long.MAX_VALUE).add(Long.MIN_VALUE).add(999999999999999999L).add(1000000000000000000L)
+				.add(0.0).add(-0.0).add(123.0).add(-9999999.0).add(1e7).add(0.1).add(1.5e-10).add(Float.valueOf(1.5f)).add(Integer.valueOf(42))
+				.add(new BigDecimal("1.50"));
+		JSONArray strings = JSON.array().add("").add("ascii").add("\"\\/\b\f\n\r\t\u0000\u001f").add("\u00e9\u20ac\ud83d\ude00\u2028\u2029").add("x".repeat(100));
+		JSONElement generated = null;
+		try {
+			generated = JSON.decode(JSONPerf.generate(100000));
+		} catch (ParseException ex) {
+			throw new RuntimeException(ex);
+		}
+		for (JSONElement element : new JSONElement[] { numbers, strings, generated }) {
+			for (JSONEncoder encoder : new JSONEncoder[] { new JSONEncoder(), new JSONEncoder().beautify() }) {
+				String expected = encoder.encode(element);
+				try {
+					// Appendable
+					StringWriter writer = new StringWriter();
+					encoder.encode(element, writer);
+					// OutputStream, with the default chunk size and with small chunks
+					ByteArrayOutputStream stream = new ByteArrayOutputStream();
+					encoder.encode(element, stream);
+					ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+					encoder.encode(element, new JSONOutput(chunks, 32));
+					// Growable buffer
+					JSONOutput output = new JSONOutput();
+					encoder.encode(element, output);
+					String[] results = { writer.toString(), stream.toString(StandardCharsets.UTF_8), chunks.toString(StandardCharsets.UTF_8), output.toString() };
+					for (String result : results) {
+						if (!expected.equals(result))
+							throw new RuntimeException("Encodage JSON échoué (" + result + " <> " + expected + ")");
+					}
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		}
+	}
+
 	public void testDecoder() {
 		// Values
 		decodeSuccess("null", JSON.ofNull());
@@ -76,6 +126,69 @@ public class JSONTest {
 		decodeFailure(" { \"toto\": abcd}",  "abcd is not a valid value");
 	}
 
+	public void testInternKeys() {
+		try {
+			String json = JSONPerf.generate(64 * 1024).replace("\"email\"", "\"e\\u006dail\"").replace("\"bio\"", "\"bi\u00f6\"");
+			byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+			boolean ok = true;
+			// The cache is kept between documents, from characters or bytes
+			JSONDecoder decoder = new JSONDecoder().internKeys();
+			for (JSONElement element : new JSONElement[] { decoder.decode(json), decoder.decode(utf8, 0, utf8.length) }) {
+				ok &= element.equals(JSON.decode(json));
+				JSONArray array = element.asArray();
+				for (String name : new String[] { "id", "email", "bi\u00f6" }) {
+					ok &= key(array.get(0), name) == key(array.get(array.size() - 1), name);
+				}
+				// Cached names are not interned, the cache is local to the decoder
+				ok &= key(array.get(1), "id") != "id";
+			}
+			// Names are decoded correctly when the cache is full
+			decoder = new JSONDecoder().internKeys(1);
+			ok &= decoder.decode("{\"a\":1,\"b\":2,\"a\\u0062\":3}").equals(JSON.object().set("a", 1L).set("b", 2L).set("ab", 3L));
+			System.out.println(ok + " for " + JSONDecoder.class.getName() + " internKeys");
+		} catch (ParseException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/** returns the instance of property name "name" in "object" */
+	private static final String key(JSONElement object, String name) {
+		for (Map.Entry<String, JSONElement> entry : object.asObject().iterate()) {
+			if (entry.getKey().equals(name))
+				return entry.getKey();
+		}
+		return null;
+	}
+
+	public void testUnescape() {
+		// Simple escape sequences, unicode escapes (lower and upper case, surrogate pairs) and runs between them
+		unescapeEquals("", "");
+		unescapeEquals("no escape", "no escape");
+		unescapeEquals("\\\"\\\\\\/\\b\\f\\n\\r\\t", "\"\\/\b\f\n\r\t");
+		unescapeEquals("\\u0000\\u001f\\u0041\\u00e9\\u00E9\\u2028\\uFFFF", "\u0000\u001fA\u00e9\u00e9\u2028\uffff");
+		unescapeEquals("\\ud83d\\ude00 smile", "\ud83d\ude00 smile");
+		unescapeEquals("a\\\\fin", "a\\fin"); // an escaped backslash followed by "f" is not a form feed
+		unescapeEquals("\\\\u0041", "\\u0041"); // nor an escaped backslash followed by "u0041"
+		unescapeEquals("<div class=\\\"a\\\">\\n\\t<p>\\u003cb\\u003e \\u0026amp;</p>\\n</div>", "<div class=\"a\">\n\t<p><b> &amp;</p>\n</div>");
+		unescapeEquals("2024-01-01\\tINFO\\t[main] \\\"GET /api?id=1\\\" 200\\r\\n\\tat C:\\\\path\\\\file", "2024-01-01\tINFO\t[main] \"GET /api?id=1\" 200\r\n\tat C:\\path\\file");
+		// Invalid or truncated escape sequences
+		unescapeFailure("\\x");
+		unescapeFailure("\\u12G4");
+		unescapeFailure("\\u12");
+		unescapeFailure("end\\");
+		// Round trip of every char (but lone surrogates, invalid in UTF-8) through JSON.escape, and through Gson's HTML-safe escaping
+		StringBuilder sb = new StringBuilder();
+		for (char c = 0; c < Character.MAX_VALUE; c++) {
+			if (!Character.isSurrogate(c))
+				sb.append(c);
+		}
+		String all = sb.toString();
+		if (!all.equals(JSON.unescape(JSON.escape(all))))
+			throw new RuntimeException("JSON.unescape(JSON.escape(all chars)) a échoué");
+		String gson = new com.google.gson.Gson().toJson(all);
+		unescapeEquals(gson.substring(1, gson.length() - 1), all);
+	}
+
 	public void testMoreComplexContent() {
 		try (BufferedReader reader = new BufferedReader(new InputStreamReader(JSONTest.class.getResourceAsStream("test.json"), StandardCharsets.UTF_8))) {
 			List<String> strings = reader.lines().collect(Collectors.toList());
@@ -97,6 +210,18 @@ public class JSONTest {
 		JSONStreamTest.execute();
 	}
 
+	public void testReader() {
+		JSONReaderTest.execute();
+	}
+
+	public void testTape() {
+		JSONTapeTest.execute();
+	}
+
+	public void testLazy() {
+		JSONLazyTest.execute();
+	}
+
 	private static final void encodeEquals(JSONEncoder encoder, JSONElement element, String json) {
 		try {
 			String result = encoder.encode(element);
@@ -119,6 +244,37 @@ public class JSONTest {
 		}
 	}
 
+	private static final void unescapeEquals(String escaped, String expected) {
+		String json = "\"" + escaped + "\"";
+		try {
+			String[] results = {
+				JSON.unescape(escaped),
+				new JSONDecoder().decode(json).asString().getValue(),
+				JSON.decode(json.getBytes(StandardCharsets.UTF_8)).asString().getValue(),
+				new JSONReader(new StringReader(json)).nextString()
+			};
+			for (String result : results) {
+				if (!expected.equals(result))
+					throw new RuntimeException("Décodage JSON échoué (" + result + " <> " + expected + ")");
+			}
+		} catch (ParseException | IOException ex) {
+			throw new RuntimeException(escaped + " n'a pas pû être décodée", ex);
+		}
+	}
+
+	private static final void unescapeFailure(String escaped) {
+		try {
+			JSON.unescape(escaped);
+		} catch (IllegalArgumentException ex) {
+			try {
+				new JSONDecoder().decode("\"" + escaped + "\"");
+			} catch (ParseException ex2) {
+				return;
+			}
+		}
+		throw new RuntimeException(escaped + " aurait dû planter");
+	}
+
 	private static final void decodeFailure(String expression, String error) {
 		try {
 			new JSONDecoder().decode(expression);